@@ -0,0 +1,58 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio.bench;
+
+/**
+ * A single benchmarked operation. setup() prepares its fixture (temp files,
+ * synthetic cubes), run() performs one operation and is timed repeatedly,
+ * teardown() removes the fixture.
+ */
+public abstract class Bench {
+
+	private String name;
+
+	public Bench(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name printed for this benchmark
+	 * 
+	 * @return String name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public void setup() throws Exception {
+	}
+
+	/**
+	 * Performs one operation of this benchmark
+	 * 
+	 * @throws Exception
+	 */
+	public abstract void run() throws Exception;
+
+	public void teardown() throws Exception {
+	}
+}
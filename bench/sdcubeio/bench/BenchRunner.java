@@ -0,0 +1,172 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Runs the SDCube_API benchmarks against temp files and prints the average
+ * time per operation of each, in the format of a JMH report. Every
+ * benchmark is warmed up for a number of timed iterations before the
+ * measured ones, an iteration repeating the operation until the iteration
+ * time is used up. Run with the native HDF5 library on the library path:
+ * 
+ * <pre>
+ * ant -f etc/build.xml bench -Dbench.args="-f load -i 10"
+ * </pre>
+ * 
+ * Options: -wi warmupIterations, -i measurementIterations, -t
+ * iterationMillis, -f nameFilter, -samples 96,384,1536, -dir tempDir, -o
+ * resultFile. The cubes are written to a new directory under tempDir (the
+ * system temporary directory by default), removed when the run ends.
+ */
+public class BenchRunner {
+
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationMillis = 1000;
+	private String filter;
+	private int[] sampleCounts = { 96, 384, 1536 };
+	private File dir;
+	private PrintStream out = System.out;
+
+	public static void main(String[] args) throws Exception {
+		BenchRunner runner = new BenchRunner();
+		runner.parseArgs(args);
+		runner.runAll();
+	}
+
+	private void parseArgs(String[] args) throws Exception {
+		for (int i = 0; i < args.length - 1; i += 2) {
+			String opt = args[i];
+			String val = args[i + 1];
+			if (opt.equals("-wi"))
+				warmupIterations = Integer.parseInt(val);
+			else if (opt.equals("-i"))
+				iterations = Integer.parseInt(val);
+			else if (opt.equals("-t"))
+				iterationMillis = Long.parseLong(val);
+			else if (opt.equals("-f"))
+				filter = val;
+			else if (opt.equals("-dir"))
+				dir = new File(val);
+			else if (opt.equals("-o"))
+				out = new PrintStream(new FileOutputStream(val), true);
+			else if (opt.equals("-samples")) {
+				String[] toks = val.split(",");
+				sampleCounts = new int[toks.length];
+				for (int j = 0; j < toks.length; j++)
+					sampleCounts[j] = Integer.parseInt(toks[j].trim());
+			} else
+				throw new IllegalArgumentException("Unknown option: " + opt);
+		}
+		if (dir != null)
+			dir.mkdirs();
+	}
+
+	private void runAll() throws Exception {
+		// Only ever deleting what this run created, never the -dir itself
+		File work = File.createTempFile("sdcube_bench", "", dir);
+		work.delete();
+		if (!work.mkdirs())
+			throw new IOException("Cannot create " + work);
+		try {
+			ArrayList<Bench> benches = new ArrayList<Bench>();
+			benches.addAll(H5IO_Bench.create(work));
+			benches.addAll(SDCube_Bench.create(work, sampleCounts));
+
+			out.println(String.format(Locale.US, "%-40s %5s %12s %10s  %s",
+					"Benchmark", "Cnt", "Score", "Error", "Units"));
+			for (int i = 0; i < benches.size(); i++) {
+				Bench b = benches.get(i);
+				if (filter != null && b.getName().indexOf(filter) < 0)
+					continue;
+				run(b);
+			}
+		} finally {
+			delete(work);
+		}
+	}
+
+	/**
+	 * Sets up, warms up, measures and tears down the given benchmark
+	 * 
+	 * @param Bench
+	 *            bench
+	 * @throws Exception
+	 */
+	private void run(Bench b) throws Exception {
+		b.setup();
+		try {
+			for (int i = 0; i < warmupIterations; i++)
+				iterate(b);
+			double[] scores = new double[iterations];
+			for (int i = 0; i < iterations; i++)
+				scores[i] = iterate(b);
+
+			double mean = 0;
+			for (int i = 0; i < scores.length; i++)
+				mean += scores[i];
+			mean /= scores.length;
+			double var = 0;
+			for (int i = 0; i < scores.length; i++)
+				var += (scores[i] - mean) * (scores[i] - mean);
+			double err = scores.length > 1 ? Math.sqrt(var
+					/ (scores.length - 1)) : 0;
+			out.println(String.format(Locale.US,
+					"%-40s %5d %12.3f %10.3f  ms/op", b.getName(),
+					scores.length, mean, err));
+		} finally {
+			b.teardown();
+		}
+	}
+
+	/**
+	 * Repeats the operation until the iteration time is used up, at least
+	 * once, and returns the average milliseconds per operation
+	 */
+	private double iterate(Bench b) throws Exception {
+		long start = System.nanoTime();
+		long end = start + iterationMillis * 1000000L;
+		long ops = 0;
+		long now;
+		do {
+			b.run();
+			ops++;
+			now = System.nanoTime();
+		} while (now < end);
+		return (now - start) / 1e6 / ops;
+	}
+
+	static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null)
+			for (int i = 0; i < children.length; i++)
+				delete(children[i]);
+		f.delete();
+	}
+}
@@ -0,0 +1,195 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+
+import sdcubeio.H5IO;
+
+/**
+ * Benchmarks of the H5IO write and read paths of 1D and 2D datasets for
+ * each element type
+ */
+public class H5IO_Bench {
+
+	/** Length of the 1D datasets */
+	static public int ARRAY_LENGTH = 1 << 18;
+	/** Rows and columns of the 2D datasets */
+	static public int MATRIX_SIZE = 512;
+
+	static final String[] TYPES = { "float", "double", "int", "short", "byte" };
+
+	/**
+	 * Creates the write and read benchmarks of every element type and rank,
+	 * working on files inside the given directory
+	 * 
+	 * @param File
+	 *            tempDir
+	 * @return ArrayList<Bench>
+	 */
+	static public ArrayList<Bench> create(File dir) {
+		ArrayList<Bench> benches = new ArrayList<Bench>();
+		for (int i = 0; i < TYPES.length; i++) {
+			for (int rank = 1; rank <= 2; rank++) {
+				benches.add(new WriteBench(dir, TYPES[i], rank));
+				benches.add(new ReadBench(dir, TYPES[i], rank, false));
+				if (!TYPES[i].equals("short") && !TYPES[i].equals("byte"))
+					benches.add(new ReadBench(dir, TYPES[i], rank, true));
+			}
+		}
+		return benches;
+	}
+
+	/**
+	 * Creates the primitive array of the given type and rank filled with
+	 * random values
+	 */
+	static Object createData(String type, int rank) {
+		Random r = new Random(42);
+		int rows = rank == 1 ? 1 : MATRIX_SIZE;
+		int cols = rank == 1 ? ARRAY_LENGTH : MATRIX_SIZE;
+		if (type.equals("float")) {
+			float[][] d = new float[rows][cols];
+			for (int i = 0; i < rows; i++)
+				for (int j = 0; j < cols; j++)
+					d[i][j] = r.nextFloat();
+			return rank == 1 ? (Object) d[0] : d;
+		} else if (type.equals("double")) {
+			double[][] d = new double[rows][cols];
+			for (int i = 0; i < rows; i++)
+				for (int j = 0; j < cols; j++)
+					d[i][j] = r.nextDouble();
+			return rank == 1 ? (Object) d[0] : d;
+		} else if (type.equals("int")) {
+			int[][] d = new int[rows][cols];
+			for (int i = 0; i < rows; i++)
+				for (int j = 0; j < cols; j++)
+					d[i][j] = r.nextInt(1000);
+			return rank == 1 ? (Object) d[0] : d;
+		} else if (type.equals("short")) {
+			short[][] d = new short[rows][cols];
+			for (int i = 0; i < rows; i++)
+				for (int j = 0; j < cols; j++)
+					d[i][j] = (short) r.nextInt(1000);
+			return rank == 1 ? (Object) d[0] : d;
+		}
+		byte[][] d = new byte[rows][cols];
+		for (int i = 0; i < rows; i++)
+			r.nextBytes(d[i]);
+		return rank == 1 ? (Object) d[0] : d;
+	}
+
+	/**
+	 * Writes the given primitive array through the matching writeDataset
+	 * overload
+	 */
+	static void write(H5IO<?> io, String h5Path, String dsPath, Object data)
+			throws Exception {
+		if (data instanceof float[])
+			io.writeDataset(h5Path, dsPath, (float[]) data);
+		else if (data instanceof float[][])
+			io.writeDataset(h5Path, dsPath, (float[][]) data);
+		else if (data instanceof double[])
+			io.writeDataset(h5Path, dsPath, (double[]) data);
+		else if (data instanceof double[][])
+			io.writeDataset(h5Path, dsPath, (double[][]) data);
+		else if (data instanceof int[])
+			io.writeDataset(h5Path, dsPath, (int[]) data);
+		else if (data instanceof int[][])
+			io.writeDataset(h5Path, dsPath, (int[][]) data);
+		else if (data instanceof short[])
+			io.writeDataset(h5Path, dsPath, (short[]) data);
+		else if (data instanceof short[][])
+			io.writeDataset(h5Path, dsPath, (short[][]) data);
+		else if (data instanceof byte[])
+			io.writeDataset(h5Path, dsPath, (byte[]) data);
+		else
+			io.writeDataset(h5Path, dsPath, (byte[][]) data);
+	}
+
+	/**
+	 * Base of the H5IO benchmarks: one HDF5 file, opened for the whole run
+	 */
+	static abstract class FileBench extends Bench {
+		File dir;
+		String type;
+		int rank;
+		String h5Path;
+		String dsPath = "./Bench/data";
+		H5IO<?> io;
+		Object data;
+
+		FileBench(String op, File dir, String type, int rank) {
+			super("H5IO." + op + "_" + rank + "D_" + type);
+			this.dir = dir;
+			this.type = type;
+			this.rank = rank;
+		}
+
+		public void setup() throws Exception {
+			h5Path = new File(dir, getName() + ".h5").getAbsolutePath();
+			data = createData(type, rank);
+			io = new H5IO<Object>();
+			io.createHDF5(h5Path);
+			io.openHDF5(h5Path);
+		}
+
+		public void teardown() throws Exception {
+			io.closeHDF5();
+			new File(h5Path).delete();
+		}
+	}
+
+	static class WriteBench extends FileBench {
+		WriteBench(File dir, String type, int rank) {
+			super("write", dir, type, rank);
+		}
+
+		public void run() throws Exception {
+			write(io, h5Path, dsPath, data);
+		}
+	}
+
+	static class ReadBench extends FileBench {
+		boolean primitive;
+
+		ReadBench(File dir, String type, int rank, boolean primitive) {
+			super(primitive ? "readPrimitive" : "read", dir, type, rank);
+			this.primitive = primitive;
+		}
+
+		public void setup() throws Exception {
+			super.setup();
+			write(io, h5Path, dsPath, data);
+			data = null;
+		}
+
+		public void run() throws Exception {
+			Object result = primitive ? io.readDataset_Primitive(h5Path,
+					dsPath) : io.readDataset(h5Path, dsPath);
+			if (result == null)
+				throw new IllegalStateException("Nothing read: " + getName());
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import sdcubeio.ExpDesign_Cache;
+import sdcubeio.ExpDesign_Description;
+import sdcubeio.ExpDesign_IO;
+import sdcubeio.ExpDesign_Sample;
+import sdcubeio.FloatMatrix2D;
+import sdcubeio.H5IO;
+import sdcubeio.SDCube;
+import sdcubeio.SDCube_DataModule;
+import sdcubeio.SDCube_Sample;
+
+/**
+ * Benchmarks of the SDCube level paths: loading whole cubes, single sample
+ * lookups, parsing the experimental design and round tripping the embedded
+ * XML file, on synthetic cubes of increasing sample counts
+ */
+public class SDCube_Bench {
+
+	/** Rows and columns of the matrix stored in each synthetic sample */
+	static public int SAMPLE_ROWS = 64;
+	static public int SAMPLE_COLS = 16;
+	/** Size of the file copied in and out of the HDF5 file */
+	static public int FILE_BYTES = 4 << 20;
+
+	/**
+	 * Creates the SDCube benchmarks for each of the given sample counts
+	 * 
+	 * @param File
+	 *            tempDir, int[] sampleCounts
+	 * @return ArrayList<Bench>
+	 */
+	static public ArrayList<Bench> create(File dir, int[] sampleCounts) {
+		ArrayList<Bench> benches = new ArrayList<Bench>();
+		for (int i = 0; i < sampleCounts.length; i++) {
+			final int n = sampleCounts[i];
+			benches.add(new CubeBench("SDCube.load/" + n, dir, n) {
+				public void run() throws Exception {
+					SDCube cube = new SDCube(sdcPath);
+					cube.load(sdcPath);
+					if (cube.getExpDesigns().size() != numSamples)
+						throw new IllegalStateException("Loaded "
+								+ cube.getExpDesigns().size() + " samples");
+				}
+			});
+			// Each lookup and parse runs twice: served by ExpDesign_Cache
+			// after the first operation, and with the cache cleared first
+			for (int k = 0; k < 2; k++) {
+				final boolean cached = k == 0;
+				String suffix = (cached ? "/" : ".uncached/") + n;
+				benches.add(new CubeBench("SDCube.getSample" + suffix, dir, n) {
+					Random r = new Random(42);
+
+					public void run() throws Exception {
+						if (!cached)
+							ExpDesign_Cache.clear();
+						String id = "S" + r.nextInt(numSamples);
+						if (SDCube.getSample(sdcPath, id) == null)
+							throw new IllegalStateException("Missing sample "
+									+ id);
+					}
+				});
+				benches.add(new CubeBench("ExpDesign_IO.parseSamples" + suffix,
+						dir, n) {
+					public void run() throws Exception {
+						if (!cached)
+							ExpDesign_Cache.clear();
+						if (ExpDesign_IO.parseSamples(
+								sdcPath + "/ExpDesign.xml").size() != numSamples)
+							throw new IllegalStateException("Parse failed");
+					}
+				});
+			}
+		}
+		benches.add(new FileRoundTripBench(dir));
+		return benches;
+	}
+
+	/**
+	 * Writes a synthetic SDCube of the given number of samples
+	 * 
+	 * @param String
+	 *            sdcPath, int numSamples
+	 */
+	static public void writeCube(String sdcPath, int numSamples)
+			throws Exception {
+		Random r = new Random(42);
+		SDCube cube = new SDCube(sdcPath);
+		for (int i = 0; i < numSamples; i++) {
+			float[] data = new float[SAMPLE_ROWS * SAMPLE_COLS];
+			for (int j = 0; j < data.length; j++)
+				data[j] = r.nextFloat();
+			SDCube_DataModule m = new SDCube_DataModule(sdcPath + "/Data.h5",
+					"./Children/" + i);
+			m.addData(new FloatMatrix2D(data, SAMPLE_ROWS, SAMPLE_COLS,
+					"Data"));
+			ExpDesign_Sample es = new ExpDesign_Sample("S" + i);
+			es.addDescription(new ExpDesign_Description("Well", "" + i,
+					null, null, null, null, "Plate"));
+			es.addDescription(new ExpDesign_Description("Treatment", "Drug"
+					+ (i % 8), "" + (i % 5), "uM", null, null, "Compound"));
+			cube.addSample(new SDCube_Sample(m, es, "S" + i));
+		}
+		cube.writeIncremental();
+	}
+
+	/**
+	 * Base of the benchmarks that read a synthetic cube written in setup
+	 */
+	static abstract class CubeBench extends Bench {
+		File dir;
+		int numSamples;
+		String sdcPath;
+
+		CubeBench(String name, File dir, int numSamples) {
+			super(name);
+			this.dir = dir;
+			this.numSamples = numSamples;
+		}
+
+		public void setup() throws Exception {
+			sdcPath = new File(dir, "cube_" + numSamples + "_"
+					+ System.nanoTime()).getAbsolutePath();
+			writeCube(sdcPath, numSamples);
+		}
+
+		public void teardown() throws Exception {
+			BenchRunner.delete(new File(sdcPath));
+		}
+	}
+
+	/**
+	 * Copies a file into an HDF5 file and back out again
+	 */
+	static class FileRoundTripBench extends Bench {
+		File dir;
+		String srcPath;
+		String h5Path;
+		String outPath;
+
+		FileRoundTripBench(File dir) {
+			super("H5IO.fileRoundTrip/" + (FILE_BYTES >> 20) + "MB");
+			this.dir = dir;
+		}
+
+		public void setup() throws Exception {
+			srcPath = new File(dir, "blob.bin").getAbsolutePath();
+			h5Path = new File(dir, "blob.h5").getAbsolutePath();
+			outPath = new File(dir, "blob.out").getAbsolutePath();
+			byte[] bytes = new byte[FILE_BYTES];
+			new Random(42).nextBytes(bytes);
+			FileOutputStream out = new FileOutputStream(srcPath);
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+		}
+
+		public void run() throws Exception {
+			new File(h5Path).delete();
+			H5IO<?> io = new H5IO<Object>();
+			io.createHDF5(h5Path);
+			io.writeFileToHDF5(srcPath, h5Path, "./Files/blob.bin");
+			io.closeHDF5();
+			new H5IO<Object>().readFileFromHDF5(h5Path, "./Files/blob.bin", outPath);
+			if (new File(outPath).length() != FILE_BYTES)
+				throw new IllegalStateException("Round trip lost data");
+		}
+
+		public void teardown() throws Exception {
+			new File(srcPath).delete();
+			new File(h5Path).delete();
+			new File(outPath).delete();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import ncsa.hdf.hdf5lib.H5;
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
+
+/**
+ * One dimensional double data object backed directly by a primitive double[]
+ */
+public class DoubleArray1D extends PrimitiveDataObject {
+
+	private double[] data;
+
+	/**
+	 * Wraps the given array without copying it
+	 * 
+	 * @param double[] data, String name
+	 */
+	public DoubleArray1D(double[] data, String name) {
+		super(Data_1D.DOUBLE, HDF5Constants.H5T_NATIVE_DOUBLE, name,
+				new long[] { data.length });
+		this.data = data;
+	}
+
+	/**
+	 * Get the data array.
+	 * 
+	 * @return double[] data
+	 */
+	public double[] getData() {
+		return data;
+	}
+
+	/**
+	 * Get a single element of the data array.
+	 * 
+	 * @param int index
+	 * @return double value
+	 */
+	public double get(int i) {
+		return data[i];
+	}
+
+	void write(int dataset_id, int memspace_id, int filespace_id)
+			throws HDF5LibraryException {
+		H5.H5Dwrite_double(dataset_id, HDF5Constants.H5T_NATIVE_DOUBLE, memspace_id,
+				filespace_id, HDF5Constants.H5P_DEFAULT, data);
+	}
+
+	void read(int dataset_id, int memspace_id, int filespace_id)
+			throws HDF5LibraryException {
+		H5.H5Dread_double(dataset_id, HDF5Constants.H5T_NATIVE_DOUBLE, memspace_id,
+				filespace_id, HDF5Constants.H5P_DEFAULT, data);
+	}
+}
@@ -0,0 +1,127 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import ncsa.hdf.hdf5lib.H5;
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
+
+/**
+ * Two dimensional double data object backed by a single row-major double[]
+ * buffer, so element (i, j) lives at index i * numCols + j
+ */
+public class DoubleMatrix2D extends PrimitiveDataObject {
+
+	private double[] data;
+	private int numRows;
+	private int numCols;
+
+	/**
+	 * Wraps the given row-major buffer without copying it
+	 * 
+	 * @param double[] rowMajorData, int numRows, int numCols, String name
+	 */
+	public DoubleMatrix2D(double[] data, int numRows, int numCols, String name) {
+		super(Data_2D.DOUBLE, HDF5Constants.H5T_NATIVE_DOUBLE, name, new long[] {
+				numRows, numCols });
+		if (data.length != numRows * numCols)
+			throw new IllegalArgumentException("Buffer of length "
+					+ data.length + " does not match " + numRows + " x "
+					+ numCols);
+		this.data = data;
+		this.numRows = numRows;
+		this.numCols = numCols;
+	}
+
+	/**
+	 * Creates an empty matrix of the given size
+	 * 
+	 * @param int numRows, int numCols, String name
+	 */
+	public DoubleMatrix2D(int numRows, int numCols, String name) {
+		this(new double[numRows * numCols], numRows, numCols, name);
+	}
+
+	/**
+	 * Copies a jagged double[][] into a new row-major matrix
+	 * 
+	 * @param double[][] rows, String name
+	 * @return DoubleMatrix2D
+	 */
+	static public DoubleMatrix2D fromRows(double[][] rows, String name) {
+		int len = rows.length;
+		int len2 = rows[0].length;
+		double[] flat = new double[len * len2];
+		for (int i = 0; i < len; i++)
+			System.arraycopy(rows[i], 0, flat, i * len2, len2);
+		return new DoubleMatrix2D(flat, len, len2, name);
+	}
+
+	/**
+	 * Get the row-major data buffer.
+	 * 
+	 * @return double[] data
+	 */
+	public double[] getData() {
+		return data;
+	}
+
+	/**
+	 * Get a single element of the data matrix.
+	 * 
+	 * @param int index_0, int index_1
+	 * @return double value
+	 */
+	public double getElem(int i, int j) {
+		return data[i * numCols + j];
+	}
+
+	/**
+	 * Returns the number of rows
+	 * 
+	 * @return int numRows
+	 */
+	public int getNumRows() {
+		return numRows;
+	}
+
+	/**
+	 * Returns the number of columns
+	 * 
+	 * @return int numCols
+	 */
+	public int getNumCols() {
+		return numCols;
+	}
+
+	void write(int dataset_id, int memspace_id, int filespace_id)
+			throws HDF5LibraryException {
+		H5.H5Dwrite_double(dataset_id, HDF5Constants.H5T_NATIVE_DOUBLE, memspace_id,
+				filespace_id, HDF5Constants.H5P_DEFAULT, data);
+	}
+
+	void read(int dataset_id, int memspace_id, int filespace_id)
+			throws HDF5LibraryException {
+		H5.H5Dread_double(dataset_id, HDF5Constants.H5T_NATIVE_DOUBLE, memspace_id,
+				filespace_id, HDF5Constants.H5P_DEFAULT, data);
+	}
+}
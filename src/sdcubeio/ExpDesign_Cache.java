@@ -0,0 +1,200 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of parsed ExpDesign.xml files, so repeated requests for
+ * the design of the same cube do not go back to the disc. Entries are keyed
+ * by the canonical path of the XML file and remember the modification time
+ * and size it had when parsed; a cached design is dropped as soon as either
+ * changes, and ExpDesign_IO drops it itself whenever it writes the file.
+ * The cache holds at most MAX_CACHED_DESIGNS files and MAX_CACHED_SAMPLES
+ * samples in total, evicting the least recently used designs first. Callers
+ * always get their own copies of the cached samples.
+ */
+public class ExpDesign_Cache {
+
+	/** Maximum number of XML files whose samples are kept in memory */
+	static public int MAX_CACHED_DESIGNS = 64;
+	/** Maximum number of samples kept in memory over all cached files */
+	static public int MAX_CACHED_SAMPLES = 500000;
+
+	static private LinkedHashMap<String, ExpDesign_Cache> TheCache = new LinkedHashMap<String, ExpDesign_Cache>(
+			16, 0.75f, true);
+	static private int numCachedSamples;
+
+	/** The parsed samples, never handed out directly */
+	private ArrayList<ExpDesign_Sample> TheSamples;
+	/** XML file modification time and size the samples were parsed from */
+	private long lastModified;
+	private long length;
+	/** Descriptor index of the samples, built on first use */
+	private ExpDesign_Index TheIndex;
+
+	private ExpDesign_Cache(ArrayList<ExpDesign_Sample> samples,
+			long lastModified, long length) {
+		TheSamples = samples;
+		this.lastModified = lastModified;
+		this.length = length;
+	}
+
+	/**
+	 * Returns copies of the cached samples of the given XML file, or null if
+	 * the file is not cached or has changed since it was parsed
+	 * 
+	 * @param String
+	 *            xmlPath
+	 * @return ArrayList<ExpDesign_Sample>
+	 */
+	static public ArrayList<ExpDesign_Sample> get(String xmlPath) {
+		ArrayList<ExpDesign_Sample> samples = peek(xmlPath);
+		if (samples == null)
+			return null;
+		int len = samples.size();
+		ArrayList<ExpDesign_Sample> copy = new ArrayList<ExpDesign_Sample>(
+				len);
+		for (int i = 0; i < len; i++)
+			copy.add(samples.get(i).getCopy());
+		return copy;
+	}
+
+	/**
+	 * Returns the cached samples themselves, which must not be modified, or
+	 * null if the file is not cached or has changed since it was parsed
+	 */
+	static ArrayList<ExpDesign_Sample> peek(String xmlPath) {
+		synchronized (TheCache) {
+			ExpDesign_Cache entry = getEntry(xmlPath);
+			return entry == null ? null : entry.TheSamples;
+		}
+	}
+
+	/**
+	 * Returns the descriptor index of the cached samples of the given XML
+	 * file, building it on first use, or null if the file is not cached or
+	 * has changed since it was parsed
+	 */
+	static ExpDesign_Index getIndex(String xmlPath) {
+		synchronized (TheCache) {
+			ExpDesign_Cache entry = getEntry(xmlPath);
+			if (entry == null)
+				return null;
+			if (entry.TheIndex == null)
+				entry.TheIndex = new ExpDesign_Index(entry.TheSamples);
+			return entry.TheIndex;
+		}
+	}
+
+	/** Returns the valid entry of the given file; caller holds the lock */
+	static private ExpDesign_Cache getEntry(String xmlPath) {
+		File f = new File(xmlPath);
+		String key = getKey(f);
+		ExpDesign_Cache entry = TheCache.get(key);
+		if (entry == null)
+			return null;
+		if (entry.lastModified != f.lastModified()
+				|| entry.length != f.length()) {
+			remove(key);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Caches the samples parsed from the given XML file. The modification
+	 * time and size must be those the file had before it was parsed, so a
+	 * write racing the parse leaves a stale stamp rather than a stale
+	 * design. The cache keeps the given list, so the caller must not modify
+	 * it or its samples afterwards.
+	 * 
+	 * @param String
+	 *            xmlPath, ArrayList<ExpDesign_Sample> samples, long
+	 *            lastModified, long length
+	 */
+	static public void put(String xmlPath,
+			ArrayList<ExpDesign_Sample> samples, long lastModified,
+			long length) {
+		if (samples.size() > MAX_CACHED_SAMPLES)
+			return;
+		String key = getKey(new File(xmlPath));
+		synchronized (TheCache) {
+			remove(key);
+			TheCache.put(key, new ExpDesign_Cache(samples, lastModified,
+					length));
+			numCachedSamples += samples.size();
+			// Evicting the least recently used designs
+			Iterator<String> iter = TheCache.keySet().iterator();
+			while ((TheCache.size() > MAX_CACHED_DESIGNS || numCachedSamples > MAX_CACHED_SAMPLES)
+					&& iter.hasNext()) {
+				String eldest = iter.next();
+				if (eldest.equals(key))
+					break;
+				numCachedSamples -= TheCache.get(eldest).TheSamples.size();
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached samples of the given XML file
+	 * 
+	 * @param String
+	 *            xmlPath
+	 */
+	static public void invalidate(String xmlPath) {
+		synchronized (TheCache) {
+			remove(getKey(new File(xmlPath)));
+		}
+	}
+
+	/**
+	 * Drops all cached designs
+	 */
+	static public void clear() {
+		synchronized (TheCache) {
+			TheCache.clear();
+			numCachedSamples = 0;
+		}
+	}
+
+	/** Removes the given key, keeping the sample count; caller holds the lock */
+	static private void remove(String key) {
+		ExpDesign_Cache entry = TheCache.remove(key);
+		if (entry != null)
+			numCachedSamples -= entry.TheSamples.size();
+	}
+
+	static private String getKey(File f) {
+		try {
+			return f.getCanonicalPath();
+		} catch (IOException e) {
+			return f.getAbsolutePath();
+		}
+	}
+}
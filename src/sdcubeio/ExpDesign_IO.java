@@ -22,31 +22,33 @@
 
 package sdcubeio;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Attr;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.NodeList;
-import org.w3c.dom.Text;
-import org.xml.sax.SAXException;
 
 /**
  * This class is responsible to write and read the XML meta  of an
@@ -59,151 +61,258 @@ import org.xml.sax.SAXException;
  */
 public class ExpDesign_IO {
 
+	/** Namespaces declared on the sdcube root element */
+	static private final String SDCUBE_NAMESPACE = "http://pipeline.med.harvard.edu/imagerail-metadata-1.0";
+	static private final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+	/** Indentation of each nesting level of the written XML */
+	static private final String INDENT = "    ";
+	/** Size of the output buffer used by write() */
+	static public int WRITE_BUFFER_SIZE = 65536;
+	/** The child tags of a Descriptor element, in createDescriptor order */
+	static private final String[] DESCRIPTOR_FIELDS = { "type", "name",
+			"value", "units", "time_units", "time", "category" };
+
 	/**
-	 * Stores the changes we made to the XML file on the hard disc.
+	 * Stores the changes we made to the XML file on the hard disc. The
+	 * samples are streamed out one by one into a temporary file next to the
+	 * XML file, which then replaces it, so readers never see a half written
+	 * design and memory does not grow with the number of samples.
 	 */
 	static public void write(ExpDesign_Model model) {
 		try {
-			
-			//
-			//
-				DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-				Document doc = builder.newDocument();
-				Element root = doc.createElement("sdcube");
-				
-	
-				root.setAttribute("xsi:schemaLocation", "http://pipeline.med.harvard.edu/imagerail-metadata-1.0 imagerail-metadata-1.0.xsd");
-				root.setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
-				root.setAttribute("xmlns", "http://pipeline.med.harvard.edu/imagerail-metadata-1.0");
-				doc.appendChild(root);
-				
-
-			String xmlPath = model.getXMLpath();
-			File f = new File(xmlPath);
-			f.createNewFile();
-			
-//			FileWriter fstream = new FileWriter(xmlPath);
-//			BufferedWriter out = new BufferedWriter(fstream);
-//			String st = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n";
-//			st += "<sdcube xsi:schemaLocation='http://pipeline.med.harvard.edu/imagerail-metadata-1.0 imagerail-metadata-1.0.xsd' xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xmlns='http://pipeline.med.harvard.edu/imagerail-metadata-1.0'>\n";
+			store(model);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Like write(ExpDesign_Model), but reports a failure to the caller. The
+	 * XML file is left as it was if the new one cannot be written.
+	 * 
+	 * @param ExpDesign_Model
+	 *            model
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	static void store(ExpDesign_Model model) throws IOException,
+			XMLStreamException {
+		long t = H5IO_Metrics.start();
+		String xmlPath = model.getXMLpath();
+		File f = new File(xmlPath);
+		File tmp = new File(xmlPath + ".tmp");
+		OutputStream out = null;
+		XMLStreamWriter writer = null;
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(tmp),
+					WRITE_BUFFER_SIZE);
+			writer = XMLOutputFactory.newInstance().createXMLStreamWriter(
+					out, "UTF-8");
+			writer.writeStartDocument("UTF-8", "1.0");
+			writer.writeCharacters("\n");
+			writer.writeStartElement("sdcube");
+			writer.writeAttribute("xsi", XSI_NAMESPACE, "schemaLocation",
+					"http://pipeline.med.harvard.edu/imagerail-metadata-1.0 imagerail-metadata-1.0.xsd");
+			writer.writeNamespace("xsi", XSI_NAMESPACE);
+			writer.writeDefaultNamespace(SDCUBE_NAMESPACE);
+			writer.writeCharacters("\n");
 
 			ArrayList<ExpDesign_Sample> TheExpDesigns = model.getSamples();
 			int num = TheExpDesigns.size();
 			// Sample loop
 			for (int j = 0; j < num; j++) {
 				ExpDesign_Sample es = TheExpDesigns.get(j);
-				if (es.getDescriptions().size() > 0) {
-		            //create child element, add an attribute, and add to root
-		            Element sample = doc.createElement("Sample");
-		            sample.setAttribute("id", es.getId());
-		            root.appendChild(sample);
-		            
-	//				st += "\t<Sample id='" + es.getId() + "'>\n";
-					ArrayList<ExpDesign_Description> edu = es.getDescriptions();
-					int numU = edu.size();
-					// description loop
-					for (int k = 0; k < numU; k++) {
-						ExpDesign_Description ed = edu.get(k);
-					
-			            Element desc = doc.createElement("Descriptor");
-			            sample.appendChild(desc);
-			            
-			    
-						
-						
-						if (ed.getType() != null)
-						{
-				            Element desc2 = doc.createElement("type");
-				            desc.appendChild(desc2);
-				            Text text = doc.createTextNode(ed.getType());
-				            desc2.appendChild(text);
-						}
-							
-						if (ed.getName() != null && ed.getName().compareTo("") != 0)
-						{
-				            Element desc2 = doc.createElement("name");
-				            desc.appendChild(desc2);
-				            Text text = doc.createTextNode(ed.getName());
-				            desc2.appendChild(text);			   
-						}
-						
-						if (ed.getValue() != null
-								&& ed.getValue().compareTo("") != 0)
-						{
-						    Element desc2 = doc.createElement("value");
-				            desc.appendChild(desc2);
-				            Text text = doc.createTextNode(ed.getValue());
-				            desc2.appendChild(text);
-						}
-						
-						if (ed.getUnits() != null
-								&& ed.getUnits().compareTo("") != 0)
-						{
-						    Element desc2 = doc.createElement("units");
-				            desc.appendChild(desc2);
-				            Text text = doc.createTextNode(ed.getUnits());
-				            desc2.appendChild(text);
-						}
-						
-						if (ed.getTimeValue() != null
-								&& ed.getTimeValue().compareTo("") != 0)
-						{
-						    Element desc2 = doc.createElement("time");
-				            desc.appendChild(desc2);
-				            Text text = doc.createTextNode(ed.getTimeValue());
-				            desc2.appendChild(text);
-						}
-						
-						if (ed.getTimeUnits() != null
-								&& ed.getTimeUnits().compareTo("") != 0)
-						{
-						    Element desc2 = doc.createElement("time_units");
-				            desc.appendChild(desc2);
-				            Text text = doc.createTextNode(ed.getTimeUnits());
-				            desc2.appendChild(text);
-						}
-						
-						if (ed.getCategory() != null
-									&& ed.getCategory().compareTo("") != 0)
-						{
-						    Element desc2 = doc.createElement("category");
-				            desc.appendChild(desc2);
-				            Text text = doc.createTextNode(ed.getCategory());
-				            desc2.appendChild(text);
-						}
-							
-				}
-				}
+				if (es.getDescriptions().size() > 0)
+					writeSampleElement(writer, es, INDENT);
 			}
 
-			DOMSource domSource = new DOMSource(doc);
-			TransformerFactory tFactory = TransformerFactory.newInstance();
-
-			FileOutputStream out2 = new FileOutputStream(xmlPath);
-			Transformer transformer = tFactory.newTransformer();
-			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-			transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-			transformer.transform(domSource, new StreamResult(out2));
-			
-			
-			
-			
-			
-			// Encoding it to the HDF5 file
-			// H5IO h = new H5IO();
-			// h.writeFileToHDF5(xmlPath, model.getHDFpath(),
-			// "./Meta/ExpDesign.xml");
-			// h = null;
-
-			// h.readFileFromHDF5(model.getHDFpath(), "./Meta/ExpDesign.xml",
-			// "/Users/blm13/Desktop/xml_" + Math.random() + ".xml");
+			writer.writeEndElement();
+			writer.writeCharacters("\n");
+			writer.writeEndDocument();
+			writer.close();
+			writer = null;
+			out.close();
+			out = null;
+
+			// Swapping in the new file; if that fails the old design stays
+			replace(tmp, f);
+			H5IO_Metrics.stop(H5IO_Metrics.XML_WRITE, t, f.length());
+		} finally {
+			try {
+				if (writer != null)
+					writer.close();
+				if (out != null)
+					out.close();
+			} catch (Exception e) {
+				// Already failing, the first error is the one reported
+			}
+			if (tmp.exists())
+				tmp.delete();
+			ExpDesign_Cache.invalidate(xmlPath);
+		}
+	}
+
+	/**
+	 * Moves the file src over dst. File.renameTo replaces dst atomically on
+	 * POSIX file systems; where it refuses to replace an existing file
+	 * (Windows), dst is first renamed aside and put back if the move fails.
+	 * 
+	 * @author Bjorn Millard
+	 * @param File
+	 *            src, File dst
+	 * @throws IOException
+	 */
+	static private void replace(File src, File dst) throws IOException {
+		if (src.renameTo(dst))
+			return;
+		File old = new File(dst.getPath() + ".old");
+		old.delete();
+		if (dst.exists() && !dst.renameTo(old))
+			throw new IOException("Cannot replace " + dst);
+		if (!src.renameTo(dst)) {
+			old.renameTo(dst);
+			throw new IOException("Cannot move " + src + " to " + dst);
+		}
+		old.delete();
+	}
+
 
+	/**
+	 * Writes the XML Sample element, with all its Descriptors, for the
+	 * given ExpDesign_Sample; one element per line, starting at the given
+	 * indentation
+	 * 
+	 * @author Bjorn Millard
+	 * @param XMLStreamWriter
+	 *            writer, ExpDesign_Sample sample, String indent
+	 */
+	static private void writeSampleElement(XMLStreamWriter writer,
+			ExpDesign_Sample es, String indent) throws XMLStreamException {
+		writer.writeCharacters(indent);
+		writer.writeStartElement("Sample");
+		writer.writeAttribute("id", es.getId());
+		writer.writeCharacters("\n");
+
+		ArrayList<ExpDesign_Description> edu = es.getDescriptions();
+		int numU = edu.size();
+		// description loop
+		for (int k = 0; k < numU; k++) {
+			ExpDesign_Description ed = edu.get(k);
+
+			writer.writeCharacters(indent + INDENT);
+			writer.writeStartElement("Descriptor");
+			writer.writeCharacters("\n");
+
+			String fieldIndent = indent + INDENT + INDENT;
+			if (ed.getType() != null)
+				writeField(writer, fieldIndent, "type", ed.getType());
+			writeField(writer, fieldIndent, "name", ed.getName());
+			writeField(writer, fieldIndent, "value", ed.getValue());
+			writeField(writer, fieldIndent, "units", ed.getUnits());
+			writeField(writer, fieldIndent, "time", ed.getTimeValue());
+			writeField(writer, fieldIndent, "time_units", ed.getTimeUnits());
+			writeField(writer, fieldIndent, "category", ed.getCategory());
+
+			writer.writeCharacters(indent + INDENT);
+			writer.writeEndElement();
+			writer.writeCharacters("\n");
+		}
+		writer.writeCharacters(indent);
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
+	}
+
+	/**
+	 * Writes a Descriptor field on its own line, unless the value is empty
+	 */
+	static private void writeField(XMLStreamWriter writer, String indent,
+			String tag, String value) throws XMLStreamException {
+		if (value == null || value.compareTo("") == 0)
+			return;
+		writer.writeCharacters(indent);
+		writer.writeStartElement(tag);
+		writer.writeCharacters(value);
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
+	}
+
+	/**
+	 * Appends the given samples to the XML file without rewriting it: the
+	 * closing sdcube tag is located near the end of the file, overwritten by
+	 * the new Sample elements and written again after them. Returns the byte
+	 * offset from which the file changed, or -1 if the file cannot be
+	 * patched (missing, empty root element, or no closing tag found) and
+	 * must be rewritten with write() instead.
+	 * 
+	 * The patch is not atomic. The part past the old end of the file is
+	 * written and synced first, and only then are the few bytes of the old
+	 * closing tag overwritten. A crash in between leaves every old sample in
+	 * place, followed by trailing bytes after the closing tag.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            xmlPath, ArrayList<ExpDesign_Sample> samplesToAppend
+	 * @return long offsetOfFirstChangedByte
+	 */
+	static public long appendSamples(String xmlPath,
+			ArrayList<ExpDesign_Sample> samples) {
+		File f = new File(xmlPath);
+		if (!f.exists() || f.length() == 0)
+			return -1;
+		long t = H5IO_Metrics.start();
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(f, "rw");
+			long len = raf.length();
+			int tailLen = (int) Math.min(len, 4096);
+			byte[] tail = new byte[tailLen];
+			raf.seek(len - tailLen);
+			raf.readFully(tail);
+			int ind = new String(tail, "ISO-8859-1").lastIndexOf("</sdcube>");
+			if (ind < 0)
+				return -1;
+			long pos = len - tailLen + ind;
+
+			// Serializing just the new Sample elements, one level below the
+			// root like write() does
+			StringWriter text = new StringWriter();
+			XMLStreamWriter writer = XMLOutputFactory.newInstance()
+					.createXMLStreamWriter(text);
+			for (int i = 0; i < samples.size(); i++) {
+				ExpDesign_Sample es = samples.get(i);
+				if (es.getDescriptions().size() > 0)
+					writeSampleElement(writer, es, INDENT);
+			}
+			writer.flush();
+			text.write("</sdcube>\n");
+
+			byte[] bytes = text.toString().getBytes("UTF-8");
+			int head = (int) Math.min(bytes.length, len - pos);
+			if (bytes.length > head) {
+				raf.seek(len);
+				raf.write(bytes, head, bytes.length - head);
+				raf.getFD().sync();
+			}
+			raf.seek(pos);
+			raf.write(bytes, 0, head);
+			if (pos + bytes.length < len)
+				raf.setLength(pos + bytes.length);
+			H5IO_Metrics.stop(H5IO_Metrics.XML_WRITE, t, bytes.length);
+			return pos;
 		} catch (Exception e) {
 			e.printStackTrace();
+			return -1;
+		} finally {
+			try {
+				if (raf != null)
+					raf.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			ExpDesign_Cache.invalidate(xmlPath);
 		}
 	}
 
-
 	/**
 	 * Parses and returns All the samples contained within the given XML path
 	 * 
@@ -215,34 +324,145 @@ public class ExpDesign_IO {
 	static public ArrayList<ExpDesign_Sample> parseSamples(
 String xmlPath) {
 
-		ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>();
-		// get the factory
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		Document dom = null;
-		try {
-			// Using factory get an instance of document builder
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			// parse using builder to get DOM representation of the XML file
-			dom = db.parse(xmlPath);
-
-		} catch (Exception e) {
-			System.out.println("");
+		final ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>();
+		int num = parseSamples(xmlPath, new ExpDesign_SampleHandler() {
+			public boolean processSample(ExpDesign_Sample sample) {
+				samples.add(sample);
+				return true;
+			}
+		}, true);
+		if (num < 0)
 			return null;
-		}
+		return samples;
+	}
 
-		// get the root element
-		Element docEle = dom.getDocumentElement();
+	/**
+	 * Streams the given XML file in a single forward pass, handing each
+	 * Sample to the handler as soon as its closing tag is read. Only the
+	 * sample being parsed is held in memory, so this is the way to go
+	 * through designs too large to keep as a list. Returns the number of
+	 * samples handed over, or -1 if the file could not be parsed.
+	 * 
+	 * A cached design is served from memory, but a parse does not fill the
+	 * cache: that would keep a copy of every sample the handler streams by.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            xmlPath, ExpDesign_SampleHandler handler
+	 * @return int numSamplesParsed
+	 */
+	static public int parseSamples(String xmlPath,
+			ExpDesign_SampleHandler handler) {
+		return parseSamples(xmlPath, handler, false);
+	}
 
-		// get a nodelist of elements
-		NodeList nl = docEle.getElementsByTagName("Sample");
-		if (nl != null && nl.getLength() > 0) {
-			for (int i = 0; i < nl.getLength(); i++) {
-				Element el = (Element) nl.item(i);
-				// add it to list
-				samples.add(parseSample(el));
+	/**
+	 * Streams the samples to the handler as parseSamples(String,
+	 * ExpDesign_SampleHandler) does, and if cache is true also keeps a copy
+	 * of each for ExpDesign_Cache once the whole file has been read
+	 * 
+	 * @param String
+	 *            xmlPath, ExpDesign_SampleHandler handler, boolean cache
+	 * @return int numSamplesParsed
+	 */
+	static private int parseSamples(String xmlPath,
+			ExpDesign_SampleHandler handler, boolean cache) {
+		int counter = 0;
+		ArrayList<ExpDesign_Sample> cached = ExpDesign_Cache.peek(xmlPath);
+		if (cached != null) {
+			int len = cached.size();
+			for (int i = 0; i < len; i++) {
+				counter++;
+				if (!handler.processSample(cached.get(i).getCopy()))
+					break;
 			}
+			return counter;
 		}
-		return samples;
+
+		// Stamping before parsing, so a concurrent write makes the cached
+		// copy stale instead of hiding the change
+		File f = new File(xmlPath);
+		long lastModified = f.lastModified();
+		long length = f.length();
+		ArrayList<ExpDesign_Sample> toCache = cache ? new ArrayList<ExpDesign_Sample>()
+				: null;
+		boolean completed = false;
+		long t = H5IO_Metrics.start();
+
+		InputStream in = null;
+		XMLStreamReader reader = null;
+		try {
+			in = new BufferedInputStream(new FileInputStream(xmlPath));
+			reader = createInputFactory().createXMLStreamReader(in);
+
+			ExpDesign_Sample sample = null;
+			String[] fields = null;
+			int field = -1;
+			StringBuffer text = new StringBuffer();
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String tag = reader.getLocalName();
+					if (sample == null) {
+						if (tag.equals("Sample")) {
+							sample = new ExpDesign_Sample();
+							String id = reader.getAttributeValue(null, "id");
+							sample.setId(id == null ? "" : id);
+						}
+					} else if (fields == null) {
+						if (tag.equals("Descriptor"))
+							fields = new String[DESCRIPTOR_FIELDS.length];
+					} else if (field < 0) {
+						field = getDescriptorField(tag);
+						text.setLength(0);
+					}
+				} else if (event == XMLStreamConstants.CHARACTERS
+						|| event == XMLStreamConstants.CDATA) {
+					if (field >= 0)
+						text.append(reader.getText());
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String tag = reader.getLocalName();
+					if (field >= 0 && tag.equals(DESCRIPTOR_FIELDS[field])) {
+						// Like the DOM lookup, the first occurrence wins
+						if (fields[field] == null && text.length() > 0)
+							fields[field] = text.toString();
+						field = -1;
+					} else if (fields != null && tag.equals("Descriptor")) {
+						sample.addDescription(createDescriptor(fields));
+						fields = null;
+					} else if (sample != null && tag.equals("Sample")) {
+						counter++;
+						if (toCache != null) {
+							if (counter <= ExpDesign_Cache.MAX_CACHED_SAMPLES)
+								toCache.add(sample.getCopy());
+							else
+								toCache = null;
+						}
+						if (!handler.processSample(sample))
+							break;
+						sample = null;
+					}
+				} else if (event == XMLStreamConstants.END_DOCUMENT)
+					completed = true;
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			return -1;
+		} finally {
+			try {
+				if (reader != null)
+					reader.close();
+				if (in != null)
+					in.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		// Bytes are only known for a parse that ran to the end
+		H5IO_Metrics.stop(H5IO_Metrics.XML_PARSE, t, completed ? length : 0);
+		if (completed && toCache != null)
+			ExpDesign_Cache.put(xmlPath, toCache, lastModified, length);
+		return counter;
 	}
 
 	/**
@@ -258,40 +478,7 @@ String xmlPath) {
 	static public ArrayList<ExpDesign_Sample> parseSamplesWid(
 String xmlPath,
 			String id) {
-		ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>();
-		// Now finding all samples within the XML doc that have the given ID
-		// get the factory
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		Document dom = null;
-		try {
-			// Using factory get an instance of document builder
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			// parse using builder to get DOM representation of the XML file
-			dom = db.parse(xmlPath);
-
-		} catch (ParserConfigurationException pce) {
-			pce.printStackTrace();
-		} catch (SAXException se) {
-			se.printStackTrace();
-		} catch (IOException ioe) {
-			ioe.printStackTrace();
-		}
-
-		// get the root element
-		Element docEle = dom.getDocumentElement();
-
-		// get a nodelist of elements
-		NodeList nl = docEle.getElementsByTagName("Sample");
-		if (nl != null && nl.getLength() > 0) {
-			for (int i = 0; i < nl.getLength(); i++) {
-				// get the employee element
-				Element el = (Element) nl.item(i);
-				// check if it has a given ID
-				if (el.getAttribute("id").equals(id))
-					samples.add(parseSample(el));
-			}
-		}
-		return samples;
+		return parseSamplesWids(xmlPath, new String[] { id });
 	}
 
 	/**
@@ -305,43 +492,20 @@ String xmlPath,
 	 * @return ArrayList<ExpDesign_Sample>
 	 */
 	static public ArrayList<ExpDesign_Sample> parseSamplesWids(String xmlPath,
-			String[] ids) {
-		ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>();
-		// Now finding all samples within the XML doc that have the given ID
-		// get the factory
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		Document dom = null;
-		try {
-			// Using factory get an instance of document builder
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			// parse using builder to get DOM representation of the XML file
-			dom = db.parse(xmlPath);
-
-		} catch (ParserConfigurationException pce) {
-			pce.printStackTrace();
-		} catch (SAXException se) {
-			se.printStackTrace();
-		} catch (IOException ioe) {
-			ioe.printStackTrace();
-		}
-
-		// get the root element
-		Element docEle = dom.getDocumentElement();
-
-		// get a nodelist of elements
-		NodeList nl = docEle.getElementsByTagName("Sample");
-		if (nl != null && nl.getLength() > 0) {
-			for (int i = 0; i < nl.getLength(); i++) {
-				// get the employee element
-				Element el = (Element) nl.item(i);
+			final String[] ids) {
+		final ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>();
+		// Now finding all samples within the XML doc that have the given ID.
+		// Caching, as this is the repeated lookup behind SDCube.getSample()
+		parseSamples(xmlPath, new ExpDesign_SampleHandler() {
+			public boolean processSample(ExpDesign_Sample sample) {
 				// check if it has a given ID
 				for (int j = 0; j < ids.length; j++) {
-					if (el.getAttribute("id").equals(ids[j]))
-						samples.add(parseSample(el));
+					if (sample.getId().equals(ids[j]))
+						samples.add(sample);
 				}
-
+				return true;
 			}
-		}
+		}, true);
 		return samples;
 	}
 
@@ -357,35 +521,12 @@ String xmlPath,
 	 */
 	static public ArrayList<ExpDesign_Sample> parseSamplesWithDescriptorNames_AND(
 			String xmlInput, String[] tags) {
-		ArrayList<ExpDesign_Sample> allSamples = parseSamples(xmlInput);
-		ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>();
-		if (allSamples == null || allSamples.size() == 0)
+		ExpDesign_Index index = ExpDesign_Index.get(xmlInput);
+		if (index == null || index.size() == 0)
 			return null;
-
-		int numTags = tags.length;
-		int len = allSamples.size();
-		System.out.println("Checking " + numTags + " names against " + len
-				+ " samples");
-		for (int i = 0; i < len; i++) {
-			int counter = 0;
-			ArrayList<ExpDesign_Description> descriptors = allSamples.get(i)
-					.getDescriptions();
-			int num = descriptors.size();
-			for (int j = 0; j < num; j++) {
-				String name = descriptors.get(j).getName();
-				for (int k = 0; k < numTags; k++) {
-					if (name.equalsIgnoreCase(tags[k])) {
-						counter++;
-					}
-				}
-
-			}
-			// If we found all tages in this sample, add it to our return list
-			if (counter == numTags)
-				samples.add(allSamples.get(i));
-		}
-
-		return samples;
+		System.out.println("Checking " + tags.length + " names against "
+				+ index.size() + " samples");
+		return index.getSamples(index.matchAll(ExpDesign_Index.NAME, tags));
 	}
 
 	/**
@@ -400,35 +541,12 @@ String xmlPath,
 	 */
 	static public ArrayList<ExpDesign_Sample> parseSamplesWithDescriptorNames_OR(
 			String xmlPath, String[] tags) {
-		ArrayList<ExpDesign_Sample> allSamples = parseSamples(xmlPath);
-		ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>();
-		if (allSamples == null || allSamples.size() == 0)
+		ExpDesign_Index index = ExpDesign_Index.get(xmlPath);
+		if (index == null || index.size() == 0)
 			return null;
-
-		int numTags = tags.length;
-		int len = allSamples.size();
-		System.out.println("Checking " + numTags + " names against " + len
-				+ " samples");
-		for (int i = 0; i < len; i++) {
-			ArrayList<ExpDesign_Description> descriptors = allSamples.get(i)
-					.getDescriptions();
-			int num = descriptors.size();
-			boolean foundOne = false;
-			for (int j = 0; j < num; j++) {
-				String name = descriptors.get(j).getName();
-				for (int k = 0; k < numTags; k++) {
-					if (name.equalsIgnoreCase(tags[k])) {
-						samples.add(allSamples.get(i));
-						foundOne = true;
-						break;
-					}
-				}
-				if (foundOne)
-					break;
-			}
-		}
-
-		return samples;
+		System.out.println("Checking " + tags.length + " names against "
+				+ index.size() + " samples");
+		return index.getSamples(index.matchAny(ExpDesign_Index.NAME, tags));
 	}
 
 	/**
@@ -467,10 +585,32 @@ String xmlPath,
 	 */
 	static public ArrayList<String> parseUniqueDescriptorNames(String xmlPath) {
 
-		ArrayList<ExpDesign_Sample> samples = parseSamples(xmlPath);
-		if (samples == null || samples.size() == 0)
+		final Hashtable<String, String> hash = new Hashtable<String, String>();
+		int len = parseSamples(xmlPath, new ExpDesign_SampleHandler() {
+			public boolean processSample(ExpDesign_Sample sample) {
+				ArrayList<ExpDesign_Description> descs = sample
+						.getDescriptions();
+				int num = descs.size();
+				for (int j = 0; j < num; j++) {
+					String name = descs.get(j).getName();
+					if ((name == null || name.trim().equalsIgnoreCase(""))
+							&& descs.get(j).getType() != null
+							&& descs.get(j).getType()
+									.equalsIgnoreCase("Measurement_Time"))
+						name = "Measurement_Time";
+					if (name != null && hash.get(name) == null)
+						hash.put(name, name);
+				}
+				return true;
+			}
+		});
+		if (len <= 0)
 			return null;
-		return getUniqueDescriptorNames(samples);
+
+		ArrayList<String> names = new ArrayList<String>();
+		for (Enumeration<String> enu = hash.keys(); enu.hasMoreElements();)
+			names.add((String) enu.nextElement());
+		return names;
 	}
 
 	/**
@@ -599,6 +739,47 @@ String xmlPath,
 		return unit;
 	}
 
+	/**
+	 * Returns the index of the given Descriptor child tag within
+	 * DESCRIPTOR_FIELDS, or -1 if it is not one of them
+	 */
+	static private int getDescriptorField(String tag) {
+		for (int i = 0; i < DESCRIPTOR_FIELDS.length; i++)
+			if (DESCRIPTOR_FIELDS[i].equals(tag))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Creates the ExpDesign_Description from the streamed Descriptor field
+	 * values, indexed as DESCRIPTOR_FIELDS, the same way parseDescriptor does
+	 */
+	static private ExpDesign_Description createDescriptor(String[] fields) {
+		ExpDesign_Description unit = new ExpDesign_Description();
+		unit.setType(fields[0]);
+		unit.setName(fields[1]);
+		unit.setValue(fields[2]);
+		unit.setUnits(fields[3]);
+		unit.setTimeUnits(fields[4]);
+		unit.setTime(fields[5]);
+		unit.setCategory(fields[6]);
+		return unit;
+	}
+
+	/**
+	 * Returns a StAX factory that reads plain text: no DTDs, no external
+	 * entities, and adjacent text events coalesced
+	 */
+	static private XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(
+				XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+				Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		return factory;
+	}
+
 	/**
 	 * Takes an XML element and the tag name, look for the tag and get the text
 	 * content i.e for <employee><name>John</name></employee> xml snippet if the
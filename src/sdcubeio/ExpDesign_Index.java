@@ -0,0 +1,485 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Inverted index of a parsed experimental design: for each descriptor name,
+ * category and type (trimmed and lower case) the set of samples, by their
+ * position in the design, that have a descriptor with it. Selecting the
+ * samples that have all, any or none of a list of names is then a few
+ * BitSet operations instead of a scan over every descriptor of every
+ * sample. The index of a cached design is built once and kept with it in
+ * ExpDesign_Cache.
+ * 
+ * For ExpDesign_Query it also keeps, per descriptor field and built on
+ * first use, the descriptors sorted by their normalized text and by their
+ * numeric value, so equality, prefix and range conditions are binary
+ * searches.
+ */
+public class ExpDesign_Index {
+
+	/** Descriptor fields that can be queried */
+	static public final int NAME = 0;
+	static public final int CATEGORY = 1;
+	static public final int TYPE = 2;
+	static public final int VALUE = 3;
+	static public final int UNITS = 4;
+	static public final int TIME = 5;
+	static public final int TIME_UNITS = 6;
+	static final int NUM_FIELDS = 7;
+
+	/** The indexed samples, never handed out directly */
+	private ArrayList<ExpDesign_Sample> TheSamples;
+	/** Normalized name, category and type to the samples having it */
+	private HashMap<String, BitSet> TheNames;
+	private HashMap<String, BitSet> TheCategories;
+	private HashMap<String, BitSet> TheTypes;
+	/** All descriptors of the design, and the sample ordinal of each */
+	private ArrayList<ExpDesign_Description> TheDescriptors;
+	private int[] TheOwners;
+	/** Sorted columns of each descriptor field, built on first use */
+	private Column[] TheColumns;
+
+	/**
+	 * Builds the index of the given samples. The index keeps the list, so it
+	 * must not be modified afterwards.
+	 * 
+	 * @param ArrayList
+	 *            <ExpDesign_Sample> samples
+	 */
+	public ExpDesign_Index(ArrayList<ExpDesign_Sample> samples) {
+		TheSamples = samples;
+		TheNames = new HashMap<String, BitSet>();
+		TheCategories = new HashMap<String, BitSet>();
+		TheTypes = new HashMap<String, BitSet>();
+		TheDescriptors = new ArrayList<ExpDesign_Description>();
+		TheColumns = new Column[NUM_FIELDS];
+		int[] owners = new int[16];
+		int len = samples.size();
+		for (int i = 0; i < len; i++) {
+			ArrayList<ExpDesign_Description> descs = samples.get(i)
+					.getDescriptions();
+			int num = descs.size();
+			for (int j = 0; j < num; j++) {
+				ExpDesign_Description d = descs.get(j);
+				if (d == null)
+					continue;
+				add(TheNames, d.getName(), i);
+				add(TheCategories, d.getCategory(), i);
+				add(TheTypes, d.getType(), i);
+				if (TheDescriptors.size() == owners.length)
+					owners = Arrays.copyOf(owners, owners.length * 2);
+				owners[TheDescriptors.size()] = i;
+				TheDescriptors.add(d);
+			}
+		}
+		TheOwners = Arrays.copyOf(owners, TheDescriptors.size());
+	}
+
+	/**
+	 * Returns the index of the design in the given XML file, parsing and
+	 * caching it first if need be; null if the file cannot be parsed
+	 * 
+	 * @param String
+	 *            xmlPath
+	 * @return ExpDesign_Index
+	 */
+	static public ExpDesign_Index get(String xmlPath) {
+		ExpDesign_Index index = ExpDesign_Cache.getIndex(xmlPath);
+		if (index != null)
+			return index;
+		ArrayList<ExpDesign_Sample> samples = ExpDesign_IO
+				.parseSamples(xmlPath);
+		if (samples == null)
+			return null;
+		index = ExpDesign_Cache.getIndex(xmlPath);
+		if (index != null)
+			return index;
+		// Too large to be cached, or changed meanwhile
+		return new ExpDesign_Index(samples);
+	}
+
+	static private void add(HashMap<String, BitSet> map, String key, int ordinal) {
+		if (key == null)
+			return;
+		key = normalize(key);
+		if (key.length() == 0)
+			return;
+		BitSet bits = map.get(key);
+		if (bits == null) {
+			bits = new BitSet();
+			map.put(key, bits);
+		}
+		bits.set(ordinal);
+	}
+
+	static String normalize(String key) {
+		return key.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the numeric value of the given descriptor field text, or NaN if
+	 * it is not a number
+	 */
+	static double parseNumber(String text) {
+		if (text == null)
+			return Double.NaN;
+		try {
+			return Double.parseDouble(text.trim());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	static void checkField(int field) {
+		if (field < 0 || field >= NUM_FIELDS)
+			throw new IllegalArgumentException("Unknown descriptor field: "
+					+ field);
+	}
+
+	/**
+	 * Returns the given field of the descriptor
+	 */
+	static String getField(ExpDesign_Description d, int field) {
+		switch (field) {
+		case NAME:
+			return d.getName();
+		case CATEGORY:
+			return d.getCategory();
+		case TYPE:
+			return d.getType();
+		case VALUE:
+			return d.getValue();
+		case UNITS:
+			return d.getUnits();
+		case TIME:
+			return d.getTimeValue();
+		case TIME_UNITS:
+			return d.getTimeUnits();
+		}
+		throw new IllegalArgumentException("Unknown descriptor field: "
+				+ field);
+	}
+
+	private HashMap<String, BitSet> getMap(int field) {
+		if (field == NAME)
+			return TheNames;
+		else if (field == CATEGORY)
+			return TheCategories;
+		else if (field == TYPE)
+			return TheTypes;
+		throw new IllegalArgumentException("Not a presence indexed field: "
+				+ field);
+	}
+
+	/**
+	 * Returns the samples that have a descriptor with the given name,
+	 * category or type, as a new BitSet of sample ordinals
+	 * 
+	 * @param int field, String key
+	 * @return BitSet
+	 */
+	public BitSet match(int field, String key) {
+		BitSet bits = key == null ? null : getMap(field).get(normalize(key));
+		return bits == null ? new BitSet() : (BitSet) bits.clone();
+	}
+
+	/**
+	 * Returns the samples that have ALL of the given names, categories or
+	 * types, each at least once. No keys at all match every sample, like the
+	 * AND parse of ExpDesign_IO always did.
+	 * 
+	 * @param int field, String[] keys
+	 * @return BitSet
+	 */
+	public BitSet matchAll(int field, String[] keys) {
+		if (keys == null || keys.length == 0) {
+			BitSet all = new BitSet();
+			all.set(0, TheSamples.size());
+			return all;
+		}
+		BitSet result = match(field, keys[0]);
+		for (int i = 1; i < keys.length && !result.isEmpty(); i++)
+			result.and(match(field, keys[i]));
+		return result;
+	}
+
+	/**
+	 * Returns the samples that have ANY of the given names, categories or
+	 * types
+	 * 
+	 * @param int field, String[] keys
+	 * @return BitSet
+	 */
+	public BitSet matchAny(int field, String[] keys) {
+		BitSet result = new BitSet();
+		if (keys == null)
+			return result;
+		HashMap<String, BitSet> map = getMap(field);
+		for (int i = 0; i < keys.length; i++) {
+			BitSet bits = keys[i] == null ? null : map.get(normalize(keys[i]));
+			if (bits != null)
+				result.or(bits);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the samples that have NONE of the given names, categories or
+	 * types
+	 * 
+	 * @param int field, String[] keys
+	 * @return BitSet
+	 */
+	public BitSet matchNone(int field, String[] keys) {
+		BitSet result = matchAny(field, keys);
+		result.flip(0, TheSamples.size());
+		return result;
+	}
+
+	/**
+	 * Returns the samples that have at least one descriptor satisfying all
+	 * the conditions of the given query, as a new BitSet of sample ordinals.
+	 * Only the descriptors within the sorted range of the most selective
+	 * condition are checked against the others.
+	 * 
+	 * @param ExpDesign_Query
+	 *            query
+	 * @return BitSet
+	 */
+	public BitSet select(ExpDesign_Query query) {
+		ArrayList<ExpDesign_Query.Condition> conds = query.getConditions();
+		BitSet result = new BitSet();
+		int num = conds.size();
+		if (num == 0) {
+			result.set(0, TheSamples.size());
+			return result;
+		}
+
+		// Finding the condition with the fewest candidate descriptors
+		int best = -1;
+		int[] bestRange = null;
+		int[] bestDescs = null;
+		for (int i = 0; i < num; i++) {
+			ExpDesign_Query.Condition c = conds.get(i);
+			Column col = getColumn(c.field);
+			int[] range = col.getRange(c);
+			if (best < 0 || range[1] - range[0] < bestRange[1] - bestRange[0]) {
+				best = i;
+				bestRange = range;
+				bestDescs = c.kind == ExpDesign_Query.RANGE ? col.numberDescs
+						: col.textDescs;
+			}
+		}
+
+		for (int j = bestRange[0]; j < bestRange[1]; j++) {
+			int d = bestDescs[j];
+			int owner = TheOwners[d];
+			if (result.get(owner))
+				continue;
+			ExpDesign_Description desc = TheDescriptors.get(d);
+			boolean pass = true;
+			for (int i = 0; i < num && pass; i++)
+				if (i != best)
+					pass = conds.get(i).accept(desc);
+			if (pass)
+				result.set(owner);
+		}
+		return result;
+	}
+
+	private synchronized Column getColumn(int field) {
+		if (TheColumns[field] == null)
+			TheColumns[field] = new Column(TheDescriptors, field);
+		return TheColumns[field];
+	}
+
+	/**
+	 * One descriptor field, sorted by normalized text and, for the values
+	 * that are numbers, by numeric value
+	 */
+	static private class Column {
+		String[] texts;
+		int[] textDescs;
+		double[] numbers;
+		int[] numberDescs;
+
+		Column(ArrayList<ExpDesign_Description> descs, int field) {
+			int len = descs.size();
+			final String[] allTexts = new String[len];
+			final double[] allNumbers = new double[len];
+			int numTexts = 0;
+			int numNumbers = 0;
+			for (int i = 0; i < len; i++) {
+				String val = getField(descs.get(i), field);
+				if (val == null)
+					continue;
+				allTexts[i] = normalize(val);
+				numTexts++;
+				allNumbers[i] = parseNumber(val);
+				if (!Double.isNaN(allNumbers[i]))
+					numNumbers++;
+			}
+
+			Integer[] order = new Integer[numTexts];
+			Integer[] numOrder = new Integer[numNumbers];
+			numTexts = 0;
+			numNumbers = 0;
+			for (int i = 0; i < len; i++) {
+				if (allTexts[i] == null)
+					continue;
+				order[numTexts++] = Integer.valueOf(i);
+				if (!Double.isNaN(allNumbers[i]))
+					numOrder[numNumbers++] = Integer.valueOf(i);
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return allTexts[a.intValue()].compareTo(allTexts[b
+							.intValue()]);
+				}
+			});
+			Arrays.sort(numOrder, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return Double.compare(allNumbers[a.intValue()],
+							allNumbers[b.intValue()]);
+				}
+			});
+
+			texts = new String[order.length];
+			textDescs = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				textDescs[i] = order[i].intValue();
+				texts[i] = allTexts[textDescs[i]];
+			}
+			numbers = new double[numOrder.length];
+			numberDescs = new int[numOrder.length];
+			for (int i = 0; i < numOrder.length; i++) {
+				numberDescs[i] = numOrder[i].intValue();
+				numbers[i] = allNumbers[numberDescs[i]];
+			}
+		}
+
+		/**
+		 * Returns the [from, to) range of the sorted texts or numbers that
+		 * satisfy the given condition
+		 */
+		int[] getRange(ExpDesign_Query.Condition c) {
+			if (c.kind == ExpDesign_Query.EQUALS)
+				return new int[] { lowerBound(texts, c.text),
+						upperBound(texts, c.text) };
+			if (c.kind == ExpDesign_Query.PREFIX)
+				return new int[] { lowerBound(texts, c.text),
+						lowerBound(texts, c.text + '\uffff') };
+			if (!(c.min <= c.max))
+				return new int[] { 0, 0 };
+			return new int[] { lowerBound(numbers, c.min),
+					upperBound(numbers, c.max) };
+		}
+
+		/** Index of the first element not less than the key */
+		static int lowerBound(String[] arr, String key) {
+			int lo = 0;
+			int hi = arr.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (arr[mid].compareTo(key) < 0)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		/** Index of the first element greater than the key */
+		static int upperBound(String[] arr, String key) {
+			int lo = 0;
+			int hi = arr.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (arr[mid].compareTo(key) <= 0)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		static int lowerBound(double[] arr, double key) {
+			int lo = 0;
+			int hi = arr.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (arr[mid] < key)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		static int upperBound(double[] arr, double key) {
+			int lo = 0;
+			int hi = arr.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (arr[mid] <= key)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+	}
+
+	/**
+	 * Returns copies of the samples of the given ordinals, in design order
+	 * 
+	 * @param BitSet
+	 *            ordinals
+	 * @return ArrayList<ExpDesign_Sample>
+	 */
+	public ArrayList<ExpDesign_Sample> getSamples(BitSet ordinals) {
+		ArrayList<ExpDesign_Sample> samples = new ArrayList<ExpDesign_Sample>(
+				ordinals.cardinality());
+		int len = TheSamples.size();
+		for (int i = ordinals.nextSetBit(0); i >= 0 && i < len; i = ordinals
+				.nextSetBit(i + 1))
+			samples.add(TheSamples.get(i).getCopy());
+		return samples;
+	}
+
+	/**
+	 * Returns the number of samples in the indexed design
+	 * 
+	 * @return int
+	 */
+	public int size() {
+		return TheSamples.size();
+	}
+}
@@ -0,0 +1,147 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.util.ArrayList;
+
+/**
+ * A query for the samples that have at least one descriptor satisfying all
+ * the conditions added to it, for example
+ * 
+ * <pre>
+ * ExpDesign_Query q = new ExpDesign_Query();
+ * q.addEquals(ExpDesign_Index.TYPE, &quot;Treatment&quot;);
+ * q.addEquals(ExpDesign_Index.NAME, &quot;EGF&quot;);
+ * q.addRange(ExpDesign_Index.VALUE, 1, 100);
+ * q.addEquals(ExpDesign_Index.UNITS, &quot;ng/ml&quot;);
+ * q.addEquals(ExpDesign_Index.TIME, 30);
+ * q.addEquals(ExpDesign_Index.TIME_UNITS, &quot;min&quot;);
+ * ArrayList&lt;SDCube_Sample&gt; samples = SDCube.getSamples(sdcPath, q);
+ * </pre>
+ * 
+ * Text comparisons ignore case and surrounding white space; numeric ranges
+ * are inclusive and only match fields that parse as numbers. Queries are
+ * run by ExpDesign_Index.select over sorted columns of each field, so only
+ * the descriptors in the range of the most selective condition are looked
+ * at.
+ */
+public class ExpDesign_Query {
+
+	static final int EQUALS = 0;
+	static final int PREFIX = 1;
+	static final int RANGE = 2;
+
+	/** The conditions, all of which a descriptor must satisfy */
+	private ArrayList<Condition> TheConditions;
+
+	/**
+	 * Creates an empty query, which matches every sample
+	 */
+	public ExpDesign_Query() {
+		TheConditions = new ArrayList<Condition>();
+	}
+
+	/**
+	 * Requires the given descriptor field to equal the given text
+	 * 
+	 * @param int field, String text
+	 */
+	public void addEquals(int field, String text) {
+		TheConditions.add(new Condition(field, EQUALS, text, 0, 0));
+	}
+
+	/**
+	 * Requires the given descriptor field to be numerically equal to the given
+	 * value
+	 * 
+	 * @param int field, double value
+	 */
+	public void addEquals(int field, double value) {
+		addRange(field, value, value);
+	}
+
+	/**
+	 * Requires the given descriptor field to start with the given text
+	 * 
+	 * @param int field, String prefix
+	 */
+	public void addPrefix(int field, String prefix) {
+		TheConditions.add(new Condition(field, PREFIX, prefix, 0, 0));
+	}
+
+	/**
+	 * Requires the given descriptor field to be a number within min and max,
+	 * inclusive. Use Double.NEGATIVE_INFINITY or POSITIVE_INFINITY for an open
+	 * bound.
+	 * 
+	 * @param int field, double min, double max
+	 */
+	public void addRange(int field, double min, double max) {
+		TheConditions.add(new Condition(field, RANGE, null, min, max));
+	}
+
+	/**
+	 * Returns the conditions of this query
+	 */
+	ArrayList<Condition> getConditions() {
+		return TheConditions;
+	}
+
+	/**
+	 * One condition on one descriptor field
+	 */
+	static class Condition {
+		int field;
+		int kind;
+		/** Normalized text of EQUALS and PREFIX conditions */
+		String text;
+		double min;
+		double max;
+
+		Condition(int field, int kind, String text, double min, double max) {
+			ExpDesign_Index.checkField(field);
+			if (kind != RANGE && text == null)
+				throw new IllegalArgumentException(
+						"Cannot compare a descriptor field to null");
+			this.field = field;
+			this.kind = kind;
+			this.text = text == null ? null : ExpDesign_Index.normalize(text);
+			this.min = min;
+			this.max = max;
+		}
+
+		/**
+		 * Returns true if the given descriptor satisfies this condition
+		 */
+		boolean accept(ExpDesign_Description d) {
+			String val = ExpDesign_Index.getField(d, field);
+			if (val == null)
+				return false;
+			if (kind == EQUALS)
+				return ExpDesign_Index.normalize(val).equals(text);
+			if (kind == PREFIX)
+				return ExpDesign_Index.normalize(val).startsWith(text);
+			double num = ExpDesign_Index.parseNumber(val);
+			return num >= min && num <= max;
+		}
+	}
+}
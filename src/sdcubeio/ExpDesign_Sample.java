@@ -140,4 +140,33 @@ public class ExpDesign_Sample
 
 		return st;
 	}
+
+	/**
+	 * Returns a deep copy of this sample; the descriptions are copied field
+	 * by field, so unset (null) fields stay null
+	 * 
+	 * @author Bjorn Millard
+	 * @return ExpDesign_Sample copy
+	 */
+	public ExpDesign_Sample getCopy() {
+		ExpDesign_Sample copy = new ExpDesign_Sample(id);
+		int len = descriptions.size();
+		for (int i = 0; i < len; i++) {
+			ExpDesign_Description d = descriptions.get(i);
+			if (d == null) {
+				copy.addDescription(null);
+				continue;
+			}
+			ExpDesign_Description c = new ExpDesign_Description();
+			c.setType(d.getType());
+			c.setName(d.getName());
+			c.setValue(d.getValue());
+			c.setUnits(d.getUnits());
+			c.setTime(d.getTimeValue());
+			c.setTimeUnits(d.getTimeUnits());
+			c.setCategory(d.getCategory());
+			copy.addDescription(c);
+		}
+		return copy;
+	}
 }
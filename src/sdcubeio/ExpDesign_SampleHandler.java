@@ -0,0 +1,39 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+/**
+ * Callback for ExpDesign_IO.parseSamples, called once per Sample element as
+ * the XML file is streamed
+ */
+public interface ExpDesign_SampleHandler {
+
+	/**
+	 * Processes the next sample parsed from the XML file. The parser keeps no
+	 * reference to it once this returns.
+	 * 
+	 * @param ExpDesign_Sample
+	 *            sample
+	 * @return boolean true to continue parsing, false to stop
+	 */
+	public boolean processSample(ExpDesign_Sample sample);
+}
@@ -22,6 +22,8 @@
 
 package sdcubeio;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -29,6 +31,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +49,20 @@ import ncsa.hdf.hdf5lib.HDF5Constants;
 import ncsa.hdf.hdf5lib.exceptions.HDF5Exception;
 import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
 /**
+ * Reads and writes the HDF5 file of an SDCube. Once its file is open, the
+ * reads and writes of one H5IO may be called from several threads: each
+ * operation opens and closes its own dataset, space and type handles. Opening
+ * and closing the file, and the openGroup()/closeGroup() pair, are not meant
+ * to race with other calls on the same H5IO; a second openHDF5() or
+ * createHDF5() before closeHDF5() fails. Every operation runs as a whole while
+ * holding the monitor of the jhdf5 H5 class, which every native HDF5 call
+ * already synchronizes on, so operations on a shared H5IO (or on any other
+ * HDF5 file) never interleave and HDF5 work gains no speed-up from threads;
+ * a parallel SDCube load only overlaps the work done outside HDF5.
+ * Opens, existence checks, dimension lookups, reads and writes are reported
+ * to H5IO_Metrics, which drops them unless a sink is set. Every HDF5
+ * identifier an H5IO opens is registered with H5IO_HandleRegistry, which
+ * reports and closes those still open when closeHDF5() is called.
  * 
  * @author Bjorn Millard & Michael Menden
  * @param <T>
@@ -46,17 +72,36 @@ public class H5IO<T> {
 	
 	private static final Logger logger = Logger.getLogger("hdf.HDFConnector");
 	
-	private int file_id      = -1;
-	private int group_id     = -1;
-	private int dataspace_id = -1;
-	private int dataset_id   = -1;
-	private int attr_id      = -1;
-	private int memtype_id   = -1;
-	private int filetype_id = -1;
-	private int filespace_id = -1;
-	private int datatype_id = -1;
-	private int memspace_id  = -1;
-	private int dcpl_id      = -1;
+	/**
+	 * The HDF5 file opened by this H5IO. Every other HDF5 handle is local to
+	 * the operation that opens it, so the operations on an open H5IO can be
+	 * shared by threads.
+	 */
+	private volatile int file_id = -1;
+	/** True if the file was opened read-only, see openHDF5(String, boolean) */
+	private volatile boolean readOnly;
+	/**
+	 * The group opened by openGroup(), see closeGroup(). Only written while
+	 * holding the H5 class monitor.
+	 */
+	private volatile int group_id = -1;
+	/** Creation options of the datasets written through this H5IO */
+	private H5IO_DatasetOptions datasetOptions = new H5IO_DatasetOptions();
+	/** Chunk size in bytes of the datasets holding files copied into HDF5 */
+	static public int FILE_CHUNK_SIZE = 65536;
+	/**
+	 * Bytes moved per read or write when streaming files in and out of HDF5,
+	 * best kept a multiple of FILE_CHUNK_SIZE
+	 */
+	static public int FILE_BUFFER_SIZE = 1 << 20;
+	/** Group of the content addressed raw file blobs, see SDCube_RawFile */
+	static public final String RAW_BLOB_GROUP = "./Raw/Blobs";
+	/**
+	 * Where a raw blob is written before it is moved under its SHA-1, a name
+	 * no SHA-1 can take
+	 */
+	static private final String RAW_BLOB_STAGING = RAW_BLOB_GROUP
+			+ "/incoming";
 
 	/**
 	 * Creates an HDF5 file at the file path given.
@@ -68,17 +113,21 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public void createHDF5(String fName) throws H5IO_Exception {
-		try {
-			file_id = H5.H5Fcreate(fName, HDF5Constants.H5F_ACC_TRUNC,
-								   HDF5Constants.H5P_DEFAULT,
-								   HDF5Constants.H5P_DEFAULT);
-		}
-		catch (HDF5LibraryException ex) {
-			logger.log(Level.SEVERE, "Cannot create an HDF5file", ex);
-			throw new H5IO_Exception("Cannot create an HDF5file: " + ex.getMessage());
-		}
-		finally {
-			closeHDF5();
+		synchronized (H5.class) {
+			checkNotOpen(fName);
+			try {
+				file_id = track(H5.H5Fcreate(fName, HDF5Constants.H5F_ACC_TRUNC,
+									   HDF5Constants.H5P_DEFAULT,
+									   HDF5Constants.H5P_DEFAULT));
+				H5IO_Metrics.handleOpened();
+			}
+			catch (HDF5LibraryException ex) {
+				logger.log(Level.SEVERE, "Cannot create an HDF5file", ex);
+				throw new H5IO_Exception("Cannot create an HDF5file: " + ex.getMessage());
+			}
+			finally {
+				closeHDF5();
+			}
 		}
 	}
 
@@ -92,17 +141,59 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public void openHDF5(String fName) throws H5IO_Exception {
-		try {
-			// Open file using the default properties.
-			file_id = H5.H5Fopen(fName, HDF5Constants.H5F_ACC_RDWR,
-					HDF5Constants.H5P_DEFAULT);
-		}
-		catch (HDF5LibraryException ex) {
-			logger.log(Level.SEVERE, "Not able to open " + fName, ex);
-			throw new H5IO_Exception("Not able to open " + fName + ": ");
+		openHDF5(fName, false);
+	}
+
+	/**
+	 * Open the HDF5 file at the given file path, read-only if readOnly is
+	 * true. A read-only file takes no write lock, so it can be opened on
+	 * read-only mounts and snapshots and by many processes at once, and it is
+	 * not flushed on close. Note that HDF5 refuses to open a file read-write
+	 * while the same process holds it open read-only.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            filePath, boolean readOnly
+	 * @return void
+	 * @throws H5IO_Exception
+	 */
+	public void openHDF5(String fName, boolean readOnly)
+			throws H5IO_Exception {
+		synchronized (H5.class) {
+			checkNotOpen(fName);
+			long t = H5IO_Metrics.start();
+			try {
+				// Open file using the default properties.
+				file_id = track(H5.H5Fopen(fName,
+						readOnly ? HDF5Constants.H5F_ACC_RDONLY
+								: HDF5Constants.H5F_ACC_RDWR,
+						HDF5Constants.H5P_DEFAULT));
+				this.readOnly = readOnly;
+				H5IO_Metrics.handleOpened();
+				H5IO_Metrics.stop(H5IO_Metrics.OPEN, t);
+			}
+			catch (HDF5LibraryException ex) {
+				logger.log(Level.SEVERE, "Not able to open " + fName, ex);
+				throw new H5IO_Exception("Not able to open " + fName + ": ");
+			}
 		}
 	}
 
+	/**
+	 * Throws if this H5IO already holds an open file, which opening fName
+	 * would leak
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            fName
+	 * @throws H5IO_Exception
+	 */
+	private void checkNotOpen(String fName) throws H5IO_Exception {
+		if (file_id >= 0)
+			throw new H5IO_Exception("Cannot open " + fName
+					+ ": this H5IO already has an HDF5 file open");
+	}
+
 	/**
 	 * Returns the currently opened HDF5 file ID
 	 * 
@@ -114,10 +205,21 @@ public class H5IO<T> {
 		return file_id;
 	}
 
+	/**
+	 * Returns true if the currently opened HDF5 file was opened read-only
+	 * 
+	 * @author Bjorn Millard
+	 * @return boolean readOnly
+	 * */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
 	/**
 	 * Opens the group at the given path. The root of this path is relative the
 	 * currently opened HDF5 file path. **NOTE the parent HDF5 file must already
-	 * be opened
+	 * be opened, and the group stays open until closeGroup(), so this pair is
+	 * not meant for an H5IO shared by threads
 	 * 
 	 * @author Bjorn Millard
 	 * @param String
@@ -125,14 +227,16 @@ public class H5IO<T> {
 	 * @return void
 	 * */
 	public void openGroup(String pathToGroup) {
-		try {
-			// Open file using the default properties.
-			group_id = H5.H5Gopen(getH5F_ID(), pathToGroup);
-		}
-		// Group does not exist
-		catch (Exception e) {
-			System.out.println("Group does not exist!!!");
-			e.printStackTrace();
+		synchronized (H5.class) {
+			try {
+				// Open file using the default properties.
+				group_id = track(H5.H5Gopen(getH5F_ID(), pathToGroup));
+			}
+			// Group does not exist
+			catch (Exception e) {
+				System.out.println("Group does not exist!!!");
+				e.printStackTrace();
+			}
 		}
 	}
 
@@ -144,13 +248,16 @@ public class H5IO<T> {
 	 * @return void
 	 * */
 	public void closeGroup() {
-		try {
-			if (group_id >= 0) {
-				H5.H5Gclose(group_id);
-				group_id = -1;
-			}
-		} catch (HDF5LibraryException ex) {
+		synchronized (H5.class) {
+			try {
+				if (group_id >= 0) {
+					H5.H5Gclose(group_id);
+					H5IO_HandleRegistry.closed(group_id);
+					group_id = -1;
+				}
+			} catch (HDF5LibraryException ex) {
 
+			}
 		}
 	}
 
@@ -165,25 +272,28 @@ public class H5IO<T> {
 	 */
 	public int getGroupChildCount(String h5Path, String pathToGroup)
 			throws H5IO_Exception {
+		synchronized (H5.class) {
 
-		if (!existsGroup(h5Path, pathToGroup))
-			return 0;
-
-		openGroup(pathToGroup);
+			int gid = -1;
+			try {
+				gid = track(H5.H5Gopen(getH5F_ID(), pathToGroup));
+			}
+			// Group does not exist
+			catch (Exception e) {
+				return 0;
+			}
 
+			long[] answer = new long[1];
+			try {
+				H5.H5Gget_num_objs(gid, answer);
+			} catch (HDF5LibraryException e) {
+				e.printStackTrace();
+			} finally {
+				closeGroup(gid);
+			}
 
-		long[] answer = new long[1];
-		try {
-			H5.H5Gget_num_objs(group_id, answer);
-		} catch (HDF5LibraryException e) {
-			e.printStackTrace();
-		} catch (NullPointerException e) {
-			e.printStackTrace();
+			return (int) answer[0];
 		}
-
-		closeGroup();
-
-		return (int) answer[0];
 	}
 
 
@@ -198,30 +308,59 @@ public class H5IO<T> {
 	 */
 	public String[] getGroupChildNames(String h5Path, String pathToGroup)
 			throws H5IO_Exception {
+		synchronized (H5.class) {
 
-		int numC = getGroupChildCount(h5Path, pathToGroup);
-		if (numC == 0)
-			return null;
-
-		openGroup(pathToGroup);
+			// Opening the group once for both the count and the names
+			int gid = -1;
+			try {
+				gid = track(H5.H5Gopen(getH5F_ID(), pathToGroup));
+			}
+			// Group does not exist
+			catch (Exception e) {
+				return null;
+			}
 
-		String[] objNames = new String[numC];
-		int[] objTypes = new int[numC];
+			try {
+				long[] answer = new long[1];
+				H5.H5Gget_num_objs(gid, answer);
+				int numC = (int) answer[0];
+				if (numC == 0)
+					return null;
+
+				String[] objNames = new String[numC];
+				int[] objTypes = new int[numC];
+				H5.H5Gget_obj_info_all(gid, ".", objNames, objTypes);
+				return objNames;
+			} catch (Throwable err) {
+				err.printStackTrace();
+			} finally {
+				closeGroup(gid);
+			}
+			return null;
+		}
+	}
 
+	/**
+	 * Closes the given group identifier if it is valid
+	 * 
+	 * @author Bjorn Millard
+	 * @param int groupID
+	 * @return void
+	 * */
+	static void closeGroup(int gid) {
 		try {
-			int names_found = H5.H5Gget_obj_info_all(file_id, pathToGroup,
-					objNames, objTypes);
-		} catch (Throwable err) {
-			err.printStackTrace();
+			if (gid >= 0) {
+				H5.H5Gclose(gid);
+				H5IO_HandleRegistry.closed(gid);
+			}
+		} catch (HDF5LibraryException ex) {
+			logger.log(Level.WARNING, "Cannot close the group", ex);
 		}
-		closeGroup();
-
-
-		return objNames;
 	}
 
 	/**
-	 * Checks if the given HDF file name exists
+	 * Checks if the given HDF file name exists. The file is only probed, it
+	 * is neither opened nor locked, and the file of this H5IO is left as is.
 	 * 
 	 * @author Bjorn Millard & Michael Menden
 	 * @param String
@@ -230,14 +369,17 @@ public class H5IO<T> {
 	 * 
 	 */
 	public boolean existHDF5(String filePath) {
+		long t = H5IO_Metrics.start();
 		boolean result = false;
-		try {
-			// Open file using the default properties.
-			file_id = H5.H5Fopen(filePath, HDF5Constants.H5F_ACC_RDWR,
-					HDF5Constants.H5P_DEFAULT);
-			result = true;
-		}
-		catch (HDF5LibraryException ex) {}
+		if (new File(filePath).isFile())
+			synchronized (H5.class) {
+				try {
+					result = H5.H5Fis_hdf5(filePath);
+				}
+				catch (HDF5LibraryException ex) {
+				}
+			}
+		H5IO_Metrics.stop(H5IO_Metrics.EXISTS, t);
 		return result;
 	}
 
@@ -251,20 +393,22 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception 
 	 */
 	public boolean existsGroup(String h5FilePath, String groupPath) throws H5IO_Exception {
-		boolean result = false;
-		closeGroup();
-		try {
-			group_id = H5.H5Gopen(getH5F_ID(), groupPath);
-			if (group_id != -1)
-			{
-				closeGroup();
-				return true;
+		synchronized (H5.class) {
+			long t = H5IO_Metrics.start();
+			boolean result = false;
+			int gid = -1;
+			try {
+				gid = track(H5.H5Gopen(getH5F_ID(), groupPath));
+				if (gid != -1)
+					result = true;
+			} catch (Exception ex) {
 			}
-		} catch (Exception ex) {
-		}
-		finally{
+			finally{
+				closeGroup(gid);
+			}
+			H5IO_Metrics.stop(H5IO_Metrics.EXISTS, t);
+			return result;
 		}
-		return result;
 	}
 
 	// /**
@@ -302,16 +446,25 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public void closeHDF5() throws H5IO_Exception {
-		try {
-			if (file_id >= 0) {
-				H5.H5Fflush(file_id, HDF5Constants.H5F_SCOPE_LOCAL);
-				H5.H5Fclose(file_id);
-				file_id = -1;
+		synchronized (H5.class) {
+			try {
+				if (file_id >= 0) {
+					// Nothing to flush in a file opened read-only
+					if (!readOnly)
+						H5.H5Fflush(file_id, HDF5Constants.H5F_SCOPE_LOCAL);
+					H5.H5Fclose(file_id);
+					H5IO_HandleRegistry.closed(file_id);
+					H5IO_Metrics.handleClosed();
+					file_id = -1;
+					readOnly = false;
+				}
 			}
-		}
-		catch (HDF5LibraryException ex) {
-			logger.log(Level.SEVERE, "Not able to close the file", ex);
-			throw new H5IO_Exception("Not able to close the file: " + ex.getMessage());
+			catch (HDF5LibraryException ex) {
+				logger.log(Level.SEVERE, "Not able to close the file", ex);
+				throw new H5IO_Exception("Not able to close the file: " + ex.getMessage());
+			}
+			// Whatever this H5IO still holds has leaked
+			H5IO_HandleRegistry.checkLeaks(this);
 		}
 	}
 
@@ -328,59 +481,72 @@ public class H5IO<T> {
 	 */
 	public void writeStringDataset(String datasetPath, StringBuffer[] text)
 			throws H5IO_Exception {
-		try {
-			// delete existing dataset
-			if (existsDataset(datasetPath))
-				removeDataset(datasetPath);
+		synchronized (H5.class) {
+			long t = H5IO_Metrics.start();
+			int dataset_id = -1;
+			int memspace_id = -1;
+			int filetype_id = -1;
+			int memtype_id = -1;
+			int dcpl_id = -1;
+			try {
+				// delete existing dataset
+				if (existsDataset(datasetPath))
+					removeDataset(datasetPath);
 
-			int dim0 = text.length;
-
-			// maximal size of String
-			int maxTextSize = 0;
-			for (int i = 0; i < dim0; i++) {
-				if (text[i].length() > maxTextSize)
-					maxTextSize = text[i].length() + 1;
-			}
-			long[] dims = { dim0 };
-			byte[][] dset_data = new byte[dim0][maxTextSize];
-			// Create file and memory dataset types. We will save
-			// the strings as FORTRAN strings, therefore they do not need space
-			// for the null terminator in the file.
-			filetype_id = H5.H5Tcopy(HDF5Constants.H5T_FORTRAN_S1);
-			H5.H5Tset_size(filetype_id, maxTextSize - 1);
-			memtype_id = H5.H5Tcopy(HDF5Constants.H5T_C_S1);
-			H5.H5Tset_size(memtype_id, maxTextSize);
-			// Create memory space. Setting maximum size to NULL sets the
-			// maximum
-			// size to be the current size.
-			memspace_id = H5.H5Screate_simple(dims.length, dims, null);
-			// Create the String dataset set
-			dataset_id = H5.H5Dcreate(file_id, datasetPath, filetype_id,
-					memspace_id, HDF5Constants.H5P_DEFAULT);
-			// Write the dataset to the dataset set.
-			for (int indx = 0; indx < dim0; indx++) {
-				for (int jndx = 0; jndx < maxTextSize; jndx++) {
-					if (jndx < text[indx].length())
-						dset_data[indx][jndx] = (byte) text[indx].charAt(jndx);
-					else
-						dset_data[indx][jndx] = 0;
+				int dim0 = text.length;
+
+				// maximal size of String
+				int maxTextSize = 0;
+				for (int i = 0; i < dim0; i++) {
+					if (text[i].length() > maxTextSize)
+						maxTextSize = text[i].length() + 1;
+				}
+				long[] dims = { dim0 };
+				byte[][] dset_data = new byte[dim0][maxTextSize];
+				// Create file and memory dataset types. We will save
+				// the strings as FORTRAN strings, therefore they do not need space
+				// for the null terminator in the file.
+				filetype_id = track(H5.H5Tcopy(HDF5Constants.H5T_FORTRAN_S1));
+				H5.H5Tset_size(filetype_id, maxTextSize - 1);
+				memtype_id = track(H5.H5Tcopy(HDF5Constants.H5T_C_S1));
+				H5.H5Tset_size(memtype_id, maxTextSize);
+				// Create memory space. Setting maximum size to NULL sets the
+				// maximum
+				// size to be the current size.
+				memspace_id = track(H5.H5Screate_simple(dims.length, dims, null));
+				// Create the String dataset set
+				dcpl_id = track(datasetOptions.createPropertyList(dims, filetype_id,
+						maxTextSize, true));
+				dataset_id = track(H5.H5Dcreate(file_id, datasetPath, filetype_id,
+						memspace_id, dcpl_id));
+				// Write the dataset to the dataset set.
+				for (int indx = 0; indx < dim0; indx++) {
+					for (int jndx = 0; jndx < maxTextSize; jndx++) {
+						if (jndx < text[indx].length())
+							dset_data[indx][jndx] = (byte) text[indx].charAt(jndx);
+						else
+							dset_data[indx][jndx] = 0;
+					}
 				}
+				H5.H5Dwrite(dataset_id, memtype_id, HDF5Constants.H5S_ALL,
+						HDF5Constants.H5S_ALL, HDF5Constants.H5P_DEFAULT, dset_data);
+				H5IO_Metrics.stop(H5IO_Metrics.WRITE, t, (long) dim0
+						* maxTextSize);
+			} catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot create '" + datasetPath, ex);
+				throw new H5IO_Exception("Cannot create '" + datasetPath + "': "
+						+ ex.getMessage());
+			} finally {
+				// End access to the dataset set and release resources used by it.
+				closeDataset(dataset_id);
+				// Terminate access to the memory space.
+				closeSpace(memspace_id);
+				// Terminate access to the file type.
+				closeType(filetype_id);
+				// Terminate access to the memory type.
+				closeType(memtype_id);
+				closePropertyList(dcpl_id);
 			}
-			H5.H5Dwrite(dataset_id, memtype_id, HDF5Constants.H5S_ALL,
-					HDF5Constants.H5S_ALL, HDF5Constants.H5P_DEFAULT, dset_data);
-		} catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot create '" + datasetPath, ex);
-			throw new H5IO_Exception("Cannot create '" + datasetPath + "': "
-					+ ex.getMessage());
-		} finally {
-			// End access to the dataset set and release resources used by it.
-			closeDataset();
-			// Terminate access to the memory space.
-			closeMemSpace();
-			// Terminate access to the file type.
-			closeFileType();
-			// Terminate access to the memory type.
-			closeMemType();
 		}
 	}
 
@@ -395,56 +561,84 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public void createDataset_unlimited(String datasetName, String type, long chunk[]) throws H5IO_Exception {
-		try {
-			// delete existing dataset
-			if (existsDataset(datasetName))
-				removeDataset(datasetName);
-
-			long maxDims[] = new long[chunk.length];
-			long counts[] = new long[chunk.length];
-			long offsets[] = new long[chunk.length];
-			for (int i=0; i<chunk.length; i++) {
-				maxDims[i] = HDF5Constants.H5S_UNLIMITED;
-				counts[i] = 1;
-				offsets[i] = 0;
-			}
-			// Create the memory space with unlimited dimensions.
-			memspace_id = H5.H5Screate_simple (chunk.length, counts, maxDims);
-			// Modify dataset set creation properties and enable chunking
-			dcpl_id = H5.H5Pcreate (HDF5Constants.H5P_DATASET_CREATE);
-			H5.H5Pset_chunk ( dcpl_id, chunk.length, chunk);
-
-			// Select the HDF type. If wrong values are stored in hyper cube,
-			// this may be the reason!
-			int hdfType = -1;
-			if (type.toUpperCase().compareTo("INT") == 0 || type.toUpperCase().compareTo("INTEGER") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_INT;
-			else if (type.toUpperCase().compareTo("SHORT") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_SHORT;
-			else if (type.toUpperCase().compareTo("FLOAT") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_FLOAT;
-			else if (type.toUpperCase().compareTo("DOUBLE") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_DOUBLE;
-			else if (type.toUpperCase().compareTo("BYTE") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_CHAR;
-			// Create a new dataset set within the file using properties list.
-		    dataset_id = H5.H5Dcreate (file_id, datasetName, hdfType, memspace_id, dcpl_id);
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot create '" + datasetName, ex);
-			throw new H5IO_Exception("Cannot create '" + datasetName + "': " + ex.getMessage());
-		}
-		finally {
-			closeDataset();
-		    closeMemSpace();
-		    closeFileSpace();
-		    closePropertyList();
+		synchronized (H5.class) {
+			int dataset_id = -1;
+			int memspace_id = -1;
+			int dcpl_id = -1;
+			try {
+				// delete existing dataset
+				if (existsDataset(datasetName))
+					removeDataset(datasetName);
+
+				long maxDims[] = new long[chunk.length];
+				long counts[] = new long[chunk.length];
+				long offsets[] = new long[chunk.length];
+				for (int i=0; i<chunk.length; i++) {
+					maxDims[i] = HDF5Constants.H5S_UNLIMITED;
+					counts[i] = 1;
+					offsets[i] = 0;
+				}
+				// Create the memory space with unlimited dimensions.
+				memspace_id = track(H5.H5Screate_simple (chunk.length, counts, maxDims));
+				// Modify dataset set creation properties and enable chunking
+				dcpl_id = track(H5.H5Pcreate (HDF5Constants.H5P_DATASET_CREATE));
+				H5.H5Pset_chunk ( dcpl_id, chunk.length, chunk);
+				datasetOptions.setFilters(dcpl_id);
+
+				// Select the HDF type. If wrong values are stored in hyper cube,
+				// this may be the reason!
+				int hdfType = -1;
+				if (type.toUpperCase().compareTo("INT") == 0 || type.toUpperCase().compareTo("INTEGER") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_INT;
+				else if (type.toUpperCase().compareTo("SHORT") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_SHORT;
+				else if (type.toUpperCase().compareTo("FLOAT") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_FLOAT;
+				else if (type.toUpperCase().compareTo("DOUBLE") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_DOUBLE;
+				else if (type.toUpperCase().compareTo("BYTE") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_CHAR;
+				// Create a new dataset set within the file using properties list.
+			    dataset_id = track(H5.H5Dcreate (file_id, datasetName, hdfType, memspace_id, dcpl_id));
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot create '" + datasetName, ex);
+				throw new H5IO_Exception("Cannot create '" + datasetName + "': " + ex.getMessage());
+			}
+			finally {
+				closeDataset(dataset_id);
+			    closeSpace(memspace_id);
+			    closePropertyList(dcpl_id);
+			}
 		}
 	}
 
 	/**
-	 * Creates a multidimensional dataset with limited dimensions. **NOTE:
-	 * datasetType can be: "INT", "SHORT", "FLOAT", "DOUBLE" or "BYTE"
+	 * Sets the chunking, compression and fill value options used for every
+	 * dataset created through this H5IO from now on
+	 * 
+	 * @author Bjorn Millard
+	 * @param H5IO_DatasetOptions
+	 *            options
+	 */
+	public void setDatasetOptions(H5IO_DatasetOptions options) {
+		datasetOptions = options == null ? new H5IO_DatasetOptions() : options;
+	}
+
+	/**
+	 * Returns the dataset creation options of this H5IO
+	 * 
+	 * @author Bjorn Millard
+	 * @return H5IO_DatasetOptions
+	 */
+	public H5IO_DatasetOptions getDatasetOptions() {
+		return datasetOptions;
+	}
+
+	/**
+	 * Creates a multidimensional dataset with limited dimensions, using the
+	 * dataset options of this H5IO. **NOTE: datasetType can be: "INT",
+	 * "SHORT", "FLOAT", "DOUBLE" or "BYTE"
 	 * 
 	 * @author Bjorn Millard & Michael Menden
 	 * 
@@ -454,46 +648,72 @@ public class H5IO<T> {
 	 */
 	public void createDataset(String datasetPath, String type, long[] maxDims)
 			throws H5IO_Exception {
-		try {
-			// delete existing dataset
-			if (existsDataset(datasetPath))
-				removeDataset(datasetPath);
+		synchronized (H5.class) {
+			createDataset(datasetPath, type, maxDims, datasetOptions);
+		}
+	}
 
+	/**
+	 * Creates a multidimensional dataset with limited dimensions and the
+	 * given chunking, compression and fill value options. **NOTE:
+	 * datasetType can be: "INT", "SHORT", "FLOAT", "DOUBLE" or "BYTE"
+	 * 
+	 * @author Bjorn Millard
+	 * 
+	 * @param String
+	 *            datasetPath, String datasetType, long[]
+	 *            maximalDimensionsSizes, H5IO_DatasetOptions options
+	 * @throws H5IO_Exception
+	 */
+	public void createDataset(String datasetPath, String type, long[] maxDims,
+			H5IO_DatasetOptions options) throws H5IO_Exception {
+		synchronized (H5.class) {
+			int dataset_id = -1;
+			int memspace_id = -1;
+			int dcpl_id = -1;
+			try {
+				// delete existing dataset
+				if (existsDataset(datasetPath))
+					removeDataset(datasetPath);
 
-			long counts[] = new long[maxDims.length];
-			long offsets[] = new long[maxDims.length];
-			for (int i=0; i<maxDims.length; i++) {
-				counts[i] = 1;
-				offsets[i] = 0;
-			}
-			// Create the memory space with limited dimensions.
-			memspace_id = H5.H5Screate_simple (maxDims.length, maxDims, null);
-			// Select the HDF type. If wrong values are stored in hyper cube, this may the reason!
-			int hdfType = -1;
-			if (type.toUpperCase().compareTo("INT") == 0 || type.toUpperCase().compareTo("INTEGER") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_INT;
-			else if (type.toUpperCase().compareTo("SHORT") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_SHORT;
-			else if (type.toUpperCase().compareTo("FLOAT") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_FLOAT;
-			else if (type.toUpperCase().compareTo("DOUBLE") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_DOUBLE;
-			else if (type.toUpperCase().compareTo("BYTE") == 0)
-				hdfType = HDF5Constants.H5T_NATIVE_CHAR;
-			// Create a new dataset set within the file using properties list.
-			dataset_id = H5.H5Dcreate(file_id, datasetPath, hdfType,
-					memspace_id, HDF5Constants.H5P_DEFAULT);
-		}
-		catch (Exception ex) {
-			// logger.log(Level.SEVERE, "Cannot create '" + datasetName, ex);
-			throw new H5IO_Exception("Cannot create '" + datasetPath + "': "
-					+ ex.getMessage());
-		}
-		finally {
-			closeDataset();
-		    closeMemSpace();
-		    closeFileSpace();
-		    closePropertyList();
+
+				long counts[] = new long[maxDims.length];
+				long offsets[] = new long[maxDims.length];
+				for (int i=0; i<maxDims.length; i++) {
+					counts[i] = 1;
+					offsets[i] = 0;
+				}
+				// Create the memory space with limited dimensions.
+				memspace_id = track(H5.H5Screate_simple (maxDims.length, maxDims, null));
+				// Select the HDF type. If wrong values are stored in hyper cube, this may the reason!
+				int hdfType = -1;
+				if (type.toUpperCase().compareTo("INT") == 0 || type.toUpperCase().compareTo("INTEGER") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_INT;
+				else if (type.toUpperCase().compareTo("SHORT") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_SHORT;
+				else if (type.toUpperCase().compareTo("FLOAT") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_FLOAT;
+				else if (type.toUpperCase().compareTo("DOUBLE") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_DOUBLE;
+				else if (type.toUpperCase().compareTo("BYTE") == 0)
+					hdfType = HDF5Constants.H5T_NATIVE_CHAR;
+				// Chunking, filters and fill value
+				dcpl_id = track(options.createPropertyList(maxDims, hdfType,
+						H5.H5Tget_size(hdfType), false));
+				// Create a new dataset set within the file using properties list.
+				dataset_id = track(H5.H5Dcreate(file_id, datasetPath, hdfType,
+						memspace_id, dcpl_id));
+			}
+			catch (Exception ex) {
+				// logger.log(Level.SEVERE, "Cannot create '" + datasetName, ex);
+				throw new H5IO_Exception("Cannot create '" + datasetPath + "': "
+						+ ex.getMessage());
+			}
+			finally {
+				closeDataset(dataset_id);
+			    closeSpace(memspace_id);
+			    closePropertyList(dcpl_id);
+			}
 		}
 	}
 
@@ -507,64 +727,71 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public void writeArray(String datasetName, DataObject dat1d, int dim0, long[] offsets) throws H5IO_Exception {
-		try {
-			// Open an existing multidimensional dataset set.
-			dataset_id = H5.H5Dopen(file_id, datasetName);
-			// Get the file space
-			filespace_id = H5.H5Dget_space(dataset_id);
-			// Get the dimensions of the multidimensional dataset set
-			long rankMD = H5.H5Sget_simple_extent_ndims(filespace_id);
-			long[] dimsMD = new long[(int)rankMD];
-			H5.H5Sget_simple_extent_dims(filespace_id, dimsMD, null);
-			// Set counts for multidimensional dataset set
-			long count[] = new long[(int)rankMD];
-			for (int i=0; i<rankMD; i++) {
-				count[i] = 1;
-			}
-			count[dim0] = dat1d.getDimensions()[0];
-			// Check if necessary to extend multidimensional dataset set.
-			boolean extend = false;
-			long[] size1D = new long[] { offsets[dim0] + dat1d.getDimensions()[0] };
-			// dim0 has to grow.
-			if (dimsMD[dim0] < size1D[0]) {
-				dimsMD[dim0] = size1D[0];
-				extend = true;
-			}
-			// Another dimension of the multidimensional dataset set has to
-			// grow.
-			for (int i=0; i<rankMD; i++) {
-				if (dimsMD[i] < offsets[i] + 1) {
-					dimsMD[i] = offsets[i] + 1;
+		synchronized (H5.class) {
+			long t = H5IO_Metrics.start();
+			int dataset_id = -1;
+			int filespace_id = -1;
+			int memspace_id = -1;
+			try {
+				// Open an existing multidimensional dataset set.
+				dataset_id = track(H5.H5Dopen(file_id, datasetName));
+				// Get the file space
+				filespace_id = track(H5.H5Dget_space(dataset_id));
+				// Get the dimensions of the multidimensional dataset set
+				long rankMD = H5.H5Sget_simple_extent_ndims(filespace_id);
+				long[] dimsMD = new long[(int)rankMD];
+				H5.H5Sget_simple_extent_dims(filespace_id, dimsMD, null);
+				// Set counts for multidimensional dataset set
+				long count[] = new long[(int)rankMD];
+				for (int i=0; i<rankMD; i++) {
+					count[i] = 1;
+				}
+				count[dim0] = dat1d.getDimensions()[0];
+				// Check if necessary to extend multidimensional dataset set.
+				boolean extend = false;
+				long[] size1D = new long[] { offsets[dim0] + dat1d.getDimensions()[0] };
+				// dim0 has to grow.
+				if (dimsMD[dim0] < size1D[0]) {
+					dimsMD[dim0] = size1D[0];
 					extend = true;
 				}
-			}
-			// Extend the multidimensional dataset set if necessary.
-			if (extend) {
-				H5.H5Dextend (dataset_id, dimsMD);
-				closeFileSpace();
-			    filespace_id = H5.H5Dget_space (dataset_id);
-			}
-			// Select hyperslab.
-		    H5.H5Sselect_hyperslab (filespace_id, HDF5Constants.H5S_SELECT_SET, offsets, null,
-		    					   	count, null);
+				// Another dimension of the multidimensional dataset set has to
+				// grow.
+				for (int i=0; i<rankMD; i++) {
+					if (dimsMD[i] < offsets[i] + 1) {
+						dimsMD[i] = offsets[i] + 1;
+						extend = true;
+					}
+				}
+				// Extend the multidimensional dataset set if necessary.
+				if (extend) {
+					H5.H5Dextend (dataset_id, dimsMD);
+					closeSpace(filespace_id);
+				    filespace_id = track(H5.H5Dget_space (dataset_id));
+				}
+				// Select hyperslab.
+			    H5.H5Sselect_hyperslab (filespace_id, HDF5Constants.H5S_SELECT_SET, offsets, null,
+			    					   	count, null);
 		    
-		    // Define memory space
-			long[] count1D = new long[] { dat1d.getDimensions()[0] };
-		    memspace_id = H5.H5Screate_simple (1, count1D, null);
-			// Write the dataset from hyperslab to file.
-		    H5.H5Dwrite (dataset_id, dat1d.getHDFType(), memspace_id, filespace_id,
-		                 HDF5Constants.H5P_DEFAULT, ((Data_1D)dat1d).getData());
+			    // Define memory space
+				long[] count1D = new long[] { dat1d.getDimensions()[0] };
+			    memspace_id = track(H5.H5Screate_simple (1, count1D, null));
+				// Write the dataset from hyperslab to file.
+			    H5.H5Dwrite (dataset_id, dat1d.getHDFType(), memspace_id, filespace_id,
+			                 HDF5Constants.H5P_DEFAULT, ((Data_1D)dat1d).getData());
+				H5IO_Metrics.stop(H5IO_Metrics.WRITE, t, H5IO_Metrics.bytes(dat1d));
 
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot write to " + datasetName, ex);
-			throw new H5IO_Exception("Cannot write to '" + datasetName + "': " + ex.getMessage());
-		}
-		finally {
-			// Close resources
-			closeDataset();
-		    closeMemSpace();
-		    closeFileSpace();
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot write to " + datasetName, ex);
+				throw new H5IO_Exception("Cannot write to '" + datasetName + "': " + ex.getMessage());
+			}
+			finally {
+				// Close resources
+				closeDataset(dataset_id);
+			    closeSpace(memspace_id);
+			    closeSpace(filespace_id);
+			}
 		}
 	}
 
@@ -580,79 +807,87 @@ public class H5IO<T> {
 	 */
 	public Data_1D readArray(String datasetPath, int dim0, long offset,
 			long count0) throws H5IO_Exception {
-		Data_1D result = null;
-		try {
-			// Open an existing dataset set.
-			dataset_id = H5.H5Dopen(file_id, datasetPath);
-		    filespace_id = H5.H5Dget_space (dataset_id);
-			String datasetName = getDatasetName(datasetPath);
-
-		    // select hyperslab
-		    H5.H5Sselect_hyperslab(filespace_id,  HDF5Constants.H5S_SELECT_SET,
-					new long[] { offset }, null, new long[] { count0 }, null);
+		synchronized (H5.class) {
+			long t = H5IO_Metrics.start();
+			int dataset_id = -1;
+			int filespace_id = -1;
+			int memspace_id = -1;
+			int filetype_id = -1;
+			Data_1D result = null;
+			try {
+				// Open an existing dataset set.
+				dataset_id = track(H5.H5Dopen(file_id, datasetPath));
+			    filespace_id = track(H5.H5Dget_space (dataset_id));
+				String datasetName = getDatasetName(datasetPath);
+
+			    // select hyperslab
+			    H5.H5Sselect_hyperslab(filespace_id,  HDF5Constants.H5S_SELECT_SET,
+						new long[] { offset }, null, new long[] { count0 }, null);
 		    
-		    // Define memory space
-		    memspace_id = H5.H5Screate_simple (1, new long[]{count0}, null);
+			    // Define memory space
+			    memspace_id = track(H5.H5Screate_simple (1, new long[]{count0}, null));
  
-			filetype_id = H5.H5Dget_type(dataset_id);
-			if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_FLOAT) {
-		    	// Float
-				if (H5.H5Tget_size(filetype_id) == 4) {
-		    		Float data_out[] = new Float [(int) count0];
-			    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					result = new Data_1D<Float>(data_out, Data_1D.FLOAT,
-							datasetName);
-		    	}
-				// Double
-		    	else if (H5.H5Tget_size(filetype_id) == 8) {
-		    		Double data_out[] = new Double [(int) count0];
-			    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					result = new Data_1D<Double>(data_out, Data_1D.DOUBLE,
-							datasetName);
-		    	}
-		    }
-		    else if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_INTEGER) {
-		    	// Byte
-		    	if (H5.H5Tget_size(filetype_id) == 1) {
-		    		Byte data_out[] = new Byte [(int) count0];
-			    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					result = new Data_1D<Byte>(data_out, Data_1D.BYTE,
-							datasetName);
-		    	}
-		    	// Short
-		    	else if (H5.H5Tget_size(filetype_id) == 2) {
-		    		Short data_out[] = new Short [(int) count0];
-			    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					result = new Data_1D<Short>(data_out, Data_1D.SHORT,
-							datasetName);
-		    	}
-		    	// Integer
-		    	else if (H5.H5Tget_size(filetype_id) == 4) {
-		    		Integer data_out[] = new Integer [(int) count0];
-			    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					result = new Data_1D<Integer>(data_out, Data_1D.INTEGER,
-							datasetName);
-		    	}
-		    }
-		}
-		catch (Exception ex) {
-//			logger.log(Level.SEVERE, "Cannot read " + datasetName, ex);
-			throw new H5IO_Exception("Cannot read '" + datasetPath + "': "
-					+ ex.getMessage());
-		}
-		finally {
-			// End access to the dataset set and release resources used by it.
-		    closeDataset();
-		    closeFileSpace();
-		    closeFileType();
-		    closeMemSpace();
+				filetype_id = track(H5.H5Dget_type(dataset_id));
+				if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_FLOAT) {
+			    	// Float
+					if (H5.H5Tget_size(filetype_id) == 4) {
+			    		Float data_out[] = new Float [(int) count0];
+				    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
+						  		HDF5Constants.H5P_DEFAULT, data_out);
+						result = new Data_1D<Float>(data_out, Data_1D.FLOAT,
+								datasetName);
+			    	}
+					// Double
+			    	else if (H5.H5Tget_size(filetype_id) == 8) {
+			    		Double data_out[] = new Double [(int) count0];
+				    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
+						  		HDF5Constants.H5P_DEFAULT, data_out);
+						result = new Data_1D<Double>(data_out, Data_1D.DOUBLE,
+								datasetName);
+			    	}
+			    }
+			    else if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_INTEGER) {
+			    	// Byte
+			    	if (H5.H5Tget_size(filetype_id) == 1) {
+			    		Byte data_out[] = new Byte [(int) count0];
+				    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
+						  		HDF5Constants.H5P_DEFAULT, data_out);
+						result = new Data_1D<Byte>(data_out, Data_1D.BYTE,
+								datasetName);
+			    	}
+			    	// Short
+			    	else if (H5.H5Tget_size(filetype_id) == 2) {
+			    		Short data_out[] = new Short [(int) count0];
+				    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
+						  		HDF5Constants.H5P_DEFAULT, data_out);
+						result = new Data_1D<Short>(data_out, Data_1D.SHORT,
+								datasetName);
+			    	}
+			    	// Integer
+			    	else if (H5.H5Tget_size(filetype_id) == 4) {
+			    		Integer data_out[] = new Integer [(int) count0];
+				    	H5.H5Dread (dataset_id, filetype_id, memspace_id, filespace_id,
+						  		HDF5Constants.H5P_DEFAULT, data_out);
+						result = new Data_1D<Integer>(data_out, Data_1D.INTEGER,
+								datasetName);
+			    	}
+			    }
+			}
+			catch (Exception ex) {
+	//			logger.log(Level.SEVERE, "Cannot read " + datasetName, ex);
+				throw new H5IO_Exception("Cannot read '" + datasetPath + "': "
+						+ ex.getMessage());
+			}
+			finally {
+				// End access to the dataset set and release resources used by it.
+			    closeDataset(dataset_id);
+			    closeSpace(filespace_id);
+			    closeType(filetype_id);
+			    closeSpace(memspace_id);
+			}
+			H5IO_Metrics.stop(H5IO_Metrics.READ, t, H5IO_Metrics.bytes(result));
+			return result;
 		}
-		return result;
 	}
 
 	/**
@@ -666,72 +901,79 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public void writeMatrix(String datasetName, Data_2D dat2d, int dim0, int dim1, long[] offsets) throws H5IO_Exception {
-		try {
-			// Open an existing multidimensional dataset set.
-			dataset_id = H5.H5Dopen(file_id, datasetName);
-			// Get the file space
-			filespace_id = H5.H5Dget_space(dataset_id);
-			// Get the dimensions of the multidimensional dataset set
-			long rankMD = H5.H5Sget_simple_extent_ndims(filespace_id);
-			long[] dimsMD = new long[(int)rankMD];
-			H5.H5Sget_simple_extent_dims(filespace_id, dimsMD, null);
-			// Set counts for multidimensional dataset set
-			long count[] = new long[(int)rankMD];
-			for (int i=0; i<rankMD; i++) {
-				count[i] = 1;
-			}
-			long[] count2D = dat2d.getDimensions();
-			count[dim0] = count2D[0];
-			count[dim1] = count2D[1];
-			// Check if necessary to extend multidimensional dataset set.
-			boolean extend = false;
-			long size2D[] = new long[2];
-			// long[] offsetMD = dc.getOffsets();
-			size2D[0] = offsets[dim0] + count2D[0];
-			size2D[1] = offsets[dim1] + count2D[1];
-			// dim0 has to grow.
-			if (dimsMD[dim0] < size2D[0]) {
-				dimsMD[dim0] = size2D[0];
-				extend = true;
-			}
-			// dim1 has to grow.
-			if (dimsMD[dim1] < size2D[1]) {
-				dimsMD[dim1] = size2D[1];
-				extend = true;
-			}
-			// Another dimension of the multidimensional dataset set has to
-			// grow.
-			for (int i=0; i<rankMD; i++) {
-				if (dimsMD[i] < offsets[i] + 1) {
-					dimsMD[i] = offsets[i] + 1;
+		synchronized (H5.class) {
+			long t = H5IO_Metrics.start();
+			int dataset_id = -1;
+			int filespace_id = -1;
+			int memspace_id = -1;
+			try {
+				// Open an existing multidimensional dataset set.
+				dataset_id = track(H5.H5Dopen(file_id, datasetName));
+				// Get the file space
+				filespace_id = track(H5.H5Dget_space(dataset_id));
+				// Get the dimensions of the multidimensional dataset set
+				long rankMD = H5.H5Sget_simple_extent_ndims(filespace_id);
+				long[] dimsMD = new long[(int)rankMD];
+				H5.H5Sget_simple_extent_dims(filespace_id, dimsMD, null);
+				// Set counts for multidimensional dataset set
+				long count[] = new long[(int)rankMD];
+				for (int i=0; i<rankMD; i++) {
+					count[i] = 1;
+				}
+				long[] count2D = dat2d.getDimensions();
+				count[dim0] = count2D[0];
+				count[dim1] = count2D[1];
+				// Check if necessary to extend multidimensional dataset set.
+				boolean extend = false;
+				long size2D[] = new long[2];
+				// long[] offsetMD = dc.getOffsets();
+				size2D[0] = offsets[dim0] + count2D[0];
+				size2D[1] = offsets[dim1] + count2D[1];
+				// dim0 has to grow.
+				if (dimsMD[dim0] < size2D[0]) {
+					dimsMD[dim0] = size2D[0];
+					extend = true;
+				}
+				// dim1 has to grow.
+				if (dimsMD[dim1] < size2D[1]) {
+					dimsMD[dim1] = size2D[1];
 					extend = true;
 				}
+				// Another dimension of the multidimensional dataset set has to
+				// grow.
+				for (int i=0; i<rankMD; i++) {
+					if (dimsMD[i] < offsets[i] + 1) {
+						dimsMD[i] = offsets[i] + 1;
+						extend = true;
+					}
+				}
+				// Extend the multidimensional dataset set if necessary.h
+				if (extend) {
+					H5.H5Dextend (dataset_id, dimsMD);
+					closeSpace(filespace_id);
+				    filespace_id = track(H5.H5Dget_space (dataset_id));
+				}
+				// Select hyperslab.
+			    H5.H5Sselect_hyperslab (filespace_id, HDF5Constants.H5S_SELECT_SET, offsets, null,
+			    					   	count, null);
+			    // Define memory space
+				memspace_id = track(H5.H5Screate_simple(2, dat2d.getDimensions(), null));
+				// Write the dataset from hyperslab to file.
+			    H5.H5Dwrite (dataset_id, dat2d.getHDFType(), memspace_id, filespace_id,
+			                 HDF5Constants.H5P_DEFAULT, dat2d.getData());
+				H5IO_Metrics.stop(H5IO_Metrics.WRITE, t, H5IO_Metrics.bytes(dat2d));
+
 			}
-			// Extend the multidimensional dataset set if necessary.h
-			if (extend) {
-				H5.H5Dextend (dataset_id, dimsMD);
-				closeFileSpace();
-			    filespace_id = H5.H5Dget_space (dataset_id);
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot write to " + datasetName, ex);
+				throw new H5IO_Exception("Cannot write to '" + datasetName + "': " + ex.getMessage());
+			}
+			finally {
+				// Close resources
+				closeDataset(dataset_id);
+			    closeSpace(memspace_id);
+			    closeSpace(filespace_id);
 			}
-			// Select hyperslab.
-		    H5.H5Sselect_hyperslab (filespace_id, HDF5Constants.H5S_SELECT_SET, offsets, null,
-		    					   	count, null);
-		    // Define memory space
-			memspace_id = H5.H5Screate_simple(2, dat2d.getDimensions(), null);
-			// Write the dataset from hyperslab to file.
-		    H5.H5Dwrite (dataset_id, dat2d.getHDFType(), memspace_id, filespace_id,
-		                 HDF5Constants.H5P_DEFAULT, dat2d.getData());
-
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot write to " + datasetName, ex);
-			throw new H5IO_Exception("Cannot write to '" + datasetName + "': " + ex.getMessage());
-		}
-		finally {
-			// Close resources
-			closeDataset();
-		    closeMemSpace();
-		    closeFileSpace();
 		}
 	}
 
@@ -761,29 +1003,31 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception 
 	 * */
 	 public void createAllParentGroups(String h5FilePath, String pathToChildObject) throws H5IO_Exception {
-		String path = pathToChildObject;
-		int childStartIndex = 0;
-		int len = path.length();
-		//Getting index where child begins
-		for (int i = 1; i < len; i++) 
-			if (path.substring(len - 1 - i, len - i).equals("/"))
-			{
-				childStartIndex =  len-i;
-				break;
-			}
+		synchronized (H5.class) {
+			String path = pathToChildObject;
+			int childStartIndex = 0;
+			int len = path.length();
+			//Getting index where child begins
+			for (int i = 1; i < len; i++) 
+				if (path.substring(len - 1 - i, len - i).equals("/"))
+				{
+					childStartIndex =  len-i;
+					break;
+				}
 	
-		//Find all "/"'s and create groups if they dont exist
-		for (int i = 2; i < childStartIndex; i++) {
-			if (path.substring(i, i+1).equals("/"))
-			{
-				String pathP = path.substring(0,i+1);
-				if(!existsGroup(h5FilePath, pathP))
+			//Find all "/"'s and create groups if they dont exist
+			for (int i = 2; i < childStartIndex; i++) {
+				if (path.substring(i, i+1).equals("/"))
 				{
-					createGroup(h5FilePath, pathP);
+					String pathP = path.substring(0,i+1);
+					if(!existsGroup(h5FilePath, pathP))
+					{
+						createGroup(h5FilePath, pathP);
+					}
 				}
 			}
-		}
 		
+		}
 	}
 
 	/**
@@ -800,81 +1044,84 @@ public class H5IO<T> {
 	public Data_2D readMatrix(String hdfFilePath, String datasetPath,
  long[] offsets, long count[])
 			throws Exception {
+		synchronized (H5.class) {
 
-		Data_2D result = null;
-		try {
-			int count0 = (int) count[0];
-			int count1 = (int) count[1];
-			String datasetName = getDatasetName(datasetPath);
-
-			dataset_id = H5.H5Dopen(file_id, datasetPath);
-			datatype_id = H5.H5Dget_type(dataset_id);
-
-			if (H5.H5Tget_class(datatype_id) == HDF5Constants.H5T_FLOAT) {
-		    	// Float
-				if (H5.H5Tget_size(datatype_id) == 4) {
-					Float data_out[][] = new Float[(int) count0][(int) count1];
-					H5.H5Dread(dataset_id, HDF5Constants.H5T_NATIVE_FLOAT,
-							HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					result = new Data_2D<Float>(data_out, "FLOAT", datasetName);
-		    	}
-				// Double
-				else if (H5.H5Tget_size(datatype_id) == 8) {
-					Double data_out[][] = new Double[(int) count0][(int) count1];
-					H5.H5Dread(dataset_id, HDF5Constants.H5T_NATIVE_DOUBLE,
-							HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					
-					result = new Data_2D<Double>(data_out, "DOUBLE",
-							datasetName);
-		    	}
-		    }
- else if (H5.H5Tget_class(datatype_id) == HDF5Constants.H5T_INTEGER) {
-		    	// Byte
-				if (H5.H5Tget_size(datatype_id) == 1) {
-					Byte data_out[][] = new Byte[(int) count0][(int) count1];
-
-					H5.H5Dread(dataset_id, HDF5Constants.H5T_NATIVE_CHAR,
-							HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-			
-					result = new Data_2D<Byte>(data_out, "BYTE", datasetName);
+			Data_2D<?> result = null;
+			int did = -1;
+			int fspace = -1;
+			int mspace = -1;
+			try {
+				String datasetName = getDatasetName(datasetPath);
+
+				did = track(H5.H5Dopen(file_id, datasetPath));
+				H5IO_DatasetInfo info = H5IO_DatasetInfo.probe(did);
+
+				// Selecting only the requested block of the matrix
+				fspace = track(H5.H5Dget_space(did));
+				H5.H5Sselect_hyperslab(fspace, HDF5Constants.H5S_SELECT_SET,
+						offsets, null, count, null);
+				mspace = track(H5.H5Screate_simple(2, count, null));
+
+				DataObject dat = readDataObject(datasetName, info, new long[] {
+						count[0], count[1] }, mspace, fspace);
+				if (dat instanceof Data_2D)
+					result = (Data_2D<?>) dat;
+				else if (dat instanceof Data_1D) {
+					// A single element block comes back as an array
+					result = toMatrix((Data_1D<?>) dat, datasetName);
 				}
-		    	// Short
-				else if (H5.H5Tget_size(datatype_id) == 2) {
-					Short data_out[][] = new Short[(int) count0][(int) count1];
-					H5.H5Dread(dataset_id, HDF5Constants.H5T_NATIVE_SHORT,
-							HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-
-					result = new Data_2D<Short>(data_out, "SHORT", datasetName);
-		    	}
-		    	// Integer
-				else if (H5.H5Tget_size(datatype_id) == 4) {
-					Integer data_out[][] = new Integer[(int) count0][(int) count1];
-					H5.H5Dread(dataset_id, HDF5Constants.H5T_NATIVE_INT,
-							HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL,
-					  		HDF5Constants.H5P_DEFAULT, data_out);
-					result = new Data_2D<Integer>(data_out, "INTEGER",
-							datasetName);
-		    	}
-		    }
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot read " + datasetPath, ex);
-			throw new Exception("Cannot read '" + datasetPath + "': "
-					+ ex.getMessage());
-		}
-		finally {
-			// End access to the data set and release resources used by it.
-		    closeDataset();
-		    closeFileSpace();
-		    closeFileType();
-		    closeMemSpace();
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot read " + datasetPath, ex);
+				throw new Exception("Cannot read '" + datasetPath + "': "
+						+ ex.getMessage());
+			}
+			finally {
+				// End access to the data set and release resources used by it.
+				// Each handle on its own, so a failing close neither leaks the
+				// others nor hides the exception of the read
+				int[] spaces = { mspace, fspace };
+				for (int i = 0; i < spaces.length; i++) {
+					try {
+						if (spaces[i] >= 0) {
+							H5.H5Sclose(spaces[i]);
+							H5IO_HandleRegistry.closed(spaces[i]);
+						}
+					} catch (HDF5LibraryException ex) {
+						logger.log(Level.WARNING, "Cannot close the dataspace",
+								ex);
+					}
+				}
+				try {
+					if (did >= 0) {
+						H5.H5Dclose(did);
+						H5IO_HandleRegistry.closed(did);
+					}
+				} catch (HDF5LibraryException ex) {
+					logger.log(Level.WARNING, "Cannot close the dataset", ex);
+				}
+			}
+			return result;
+
 		}
-		return result;
+	}
 
+	/**
+	 * Wraps the single value of a one element array as a 1x1 matrix of the
+	 * same element type
+	 * 
+	 * @author Bjorn Millard
+	 * @param Data_1D
+	 *            dat, String datasetName
+	 * @return Data_2D
+	 */
+	private static <T> Data_2D<T> toMatrix(Data_1D<T> dat, String datasetName) {
+		T[] arr = dat.getData();
+		@SuppressWarnings("unchecked")
+		T[][] mat = (T[][]) Array.newInstance(arr.getClass()
+				.getComponentType(), 1, 1);
+		mat[0][0] = arr[0];
+		return new Data_2D<T>(mat, dat.getDataType(), datasetName);
 	}
 
 	/**
@@ -886,35 +1133,41 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public void writeAttribute(String datasetName, String attrName, String attrDesc) throws H5IO_Exception {
+		synchronized (H5.class) {
+			int dataset_id = -1;
+			int memspace_id = -1;
+			int memtype_id = -1;
+			int attr_id = -1;
 
-		try {
-			// Open an existing dataset set.
-			dataset_id = H5.H5Dopen(file_id, datasetName);
-			// create memory space
-			long[] tmp = { 1};
-			memspace_id = H5.H5Screate_simple (1, tmp, null);
-			// Create memory dataset types.
-			memtype_id = H5.H5Tcopy(HDF5Constants.H5T_C_S1);
-			H5.H5Tset_size(memtype_id, attrDesc.length());
-			// Create attribute.
-			attr_id = H5.H5Acreate(dataset_id, attrName, memtype_id, memspace_id, HDF5Constants.H5P_DEFAULT);
-			// Write attribute to dataset.
-			byte[] attr = new byte[attrDesc.length()];
-			for (int i = 0; i<attrDesc.length(); i++) {
-				attr[i] = (byte) attrDesc.charAt(i);
-			}
-			H5.H5Awrite(attr_id, memtype_id, attr);
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot write " + attrName + " to " + datasetName, ex);
-			throw new H5IO_Exception("Cannot write " + attrName + " to " + datasetName+ "': " + ex.getMessage());
-		}
-		finally {
-			// Close resources
-			closeDataset();
-			closeMemSpace();
-		    closeMemType();
-		    closeAttribute();
+			try {
+				// Open an existing dataset set.
+				dataset_id = track(H5.H5Dopen(file_id, datasetName));
+				// create memory space
+				long[] tmp = { 1};
+				memspace_id = track(H5.H5Screate_simple (1, tmp, null));
+				// Create memory dataset types.
+				memtype_id = track(H5.H5Tcopy(HDF5Constants.H5T_C_S1));
+				H5.H5Tset_size(memtype_id, attrDesc.length());
+				// Create attribute.
+				attr_id = track(H5.H5Acreate(dataset_id, attrName, memtype_id, memspace_id, HDF5Constants.H5P_DEFAULT));
+				// Write attribute to dataset.
+				byte[] attr = new byte[attrDesc.length()];
+				for (int i = 0; i<attrDesc.length(); i++) {
+					attr[i] = (byte) attrDesc.charAt(i);
+				}
+				H5.H5Awrite(attr_id, memtype_id, attr);
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot write " + attrName + " to " + datasetName, ex);
+				throw new H5IO_Exception("Cannot write " + attrName + " to " + datasetName+ "': " + ex.getMessage());
+			}
+			finally {
+				// Close resources
+				closeDataset(dataset_id);
+				closeSpace(memspace_id);
+			    closeType(memtype_id);
+			    closeAttribute(attr_id);
+			}
 		}
 	}
 
@@ -929,40 +1182,50 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public String[][] readAttribute(String datasetName) throws H5IO_Exception {
-		String[][] attributes = null;
-		try {
-			// Open an existing dataset set.
-			dataset_id = H5.H5Dopen(file_id, datasetName);
-			// Iterates over all attributes.
-			attributes = new String[H5.H5Aget_num_attrs(dataset_id)][2];
-			for (int i=0; i<H5.H5Aget_num_attrs(dataset_id); i++) {
-				// Get attribute.
-				attr_id = H5.H5Aopen_idx(dataset_id, i);
-				// Create memory dataset types.
-				memtype_id = H5.H5Aget_type( attr_id);
-				// Get the name of the attribute.
-				String[] attrName = new String[1];
-				// WARNING: 200 is the max length of an attribute
-				//          name which could be read...
-				H5.H5Aget_name(attr_id, 200, attrName);
-				attributes[i][0] = attrName[0];
-				// Read an Attribute.
-				byte[] attr = new byte[H5.H5Tget_size(memtype_id)];
-				H5.H5Aread(attr_id, memtype_id, attr);
-				attributes[i][1] = new String(attr);
+		synchronized (H5.class) {
+			int dataset_id = -1;
+			int memtype_id = -1;
+			int attr_id = -1;
+			String[][] attributes = null;
+			try {
+				// Open an existing dataset set.
+				dataset_id = track(H5.H5Dopen(file_id, datasetName));
+				// Iterates over all attributes.
+				attributes = new String[H5.H5Aget_num_attrs(dataset_id)][2];
+				for (int i=0; i<H5.H5Aget_num_attrs(dataset_id); i++) {
+					// Get attribute.
+					attr_id = track(H5.H5Aopen_idx(dataset_id, i));
+					// Create memory dataset types.
+					memtype_id = track(H5.H5Aget_type( attr_id));
+					// Get the name of the attribute.
+					String[] attrName = new String[1];
+					// WARNING: 200 is the max length of an attribute
+					//          name which could be read...
+					H5.H5Aget_name(attr_id, 200, attrName);
+					attributes[i][0] = attrName[0];
+					// Read an Attribute.
+					byte[] attr = new byte[H5.H5Tget_size(memtype_id)];
+					H5.H5Aread(attr_id, memtype_id, attr);
+					attributes[i][1] = new String(attr);
+					// Releasing this attribute before opening the next one
+					closeType(memtype_id);
+					memtype_id = -1;
+					closeAttribute(attr_id);
+					attr_id = -1;
+				}
 			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot attributes from " + datasetName, ex);
+				throw new H5IO_Exception("Cannot attributes from " + datasetName + ": " + ex.getMessage());
+			}
+			finally {
+				// Close resources
+				closeDataset(dataset_id);
+			    closeType(memtype_id);
+			    closeAttribute(attr_id);
+			}
+			return attributes;
 		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot attributes from " + datasetName, ex);
-			throw new H5IO_Exception("Cannot attributes from " + datasetName + ": " + ex.getMessage());
-		}
-		finally {
-			// Close resources
-			closeDataset();
-		    closeMemType();
-		    closeAttribute();
-		}
-		return attributes;
 	}
 
 	/**
@@ -976,26 +1239,32 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public long[] getDimensions(String datasetName) throws H5IO_Exception {
-		long dimsMD[];
-		try {
-			// Open an existing dataset set.
-		    dataset_id = H5.H5Dopen (file_id, datasetName);
-		    filespace_id = H5.H5Dget_space (dataset_id);
-		    // Get the dimensions.
-		    int rank = H5.H5Sget_simple_extent_ndims (filespace_id);
-		    dimsMD = new long[rank];
-		    H5.H5Sget_simple_extent_dims (filespace_id, dimsMD, null);
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "No access " + datasetName, ex);
-			throw new H5IO_Exception("No access to '" + datasetName + "': " + ex.getMessage());
-		}
-		finally {
-			// End access to the dataset set and release resources used by it.
-		    closeDataset();
-		    closeFileSpace();
+		synchronized (H5.class) {
+			long t = H5IO_Metrics.start();
+			int dataset_id = -1;
+			int filespace_id = -1;
+			long dimsMD[];
+			try {
+				// Open an existing dataset set.
+			    dataset_id = track(H5.H5Dopen (file_id, datasetName));
+			    filespace_id = track(H5.H5Dget_space (dataset_id));
+			    // Get the dimensions.
+			    int rank = H5.H5Sget_simple_extent_ndims (filespace_id);
+			    dimsMD = new long[rank];
+			    H5.H5Sget_simple_extent_dims (filespace_id, dimsMD, null);
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "No access " + datasetName, ex);
+				throw new H5IO_Exception("No access to '" + datasetName + "': " + ex.getMessage());
+			}
+			finally {
+				// End access to the dataset set and release resources used by it.
+			    closeDataset(dataset_id);
+			    closeSpace(filespace_id);
+			}
+			H5IO_Metrics.stop(H5IO_Metrics.DIMENSIONS, t);
+		    return dimsMD;
 		}
-	    return dimsMD;
 	}
 
 	/**
@@ -1009,48 +1278,52 @@ public class H5IO<T> {
 	 * @throws H5IO_Exception
 	 */
 	public String getDataType( String datasetName) throws H5IO_Exception {
-		String result = "no suggestion";
-		try {
-			dataset_id = H5.H5Dopen (file_id, datasetName);
-			filetype_id = H5.H5Dget_type(dataset_id);
-
-		    if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_FLOAT) {
-		    	if (H5.H5Tget_size(filetype_id) == 4) {
-		    		result = "Float";
-		    	}
-		    	else if (H5.H5Tget_size(filetype_id) == 8) {
-		    		result = "Double";
-		    	}
-		    }
-		    else if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_INTEGER) {
-		    	if (H5.H5Tget_size(filetype_id) == 1) {
-		    		result = "Byte";
-		    	}
-		    	else if (H5.H5Tget_size(filetype_id) == 2) {
-		    		result = "Short";
-		    	}
-		    	else if (H5.H5Tget_size(filetype_id) == 4) {
-		    		result = "Integer";
-		    	}
- else if (H5.H5Tget_size(filetype_id) == 3) {
+		synchronized (H5.class) {
+			int dataset_id = -1;
+			int filetype_id = -1;
+			String result = "no suggestion";
+			try {
+				dataset_id = track(H5.H5Dopen (file_id, datasetName));
+				filetype_id = track(H5.H5Dget_type(dataset_id));
+
+			    if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_FLOAT) {
+			    	if (H5.H5Tget_size(filetype_id) == 4) {
+			    		result = "Float";
+			    	}
+			    	else if (H5.H5Tget_size(filetype_id) == 8) {
+			    		result = "Double";
+			    	}
+			    }
+			    else if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_INTEGER) {
+			    	if (H5.H5Tget_size(filetype_id) == 1) {
+			    		result = "Byte";
+			    	}
+			    	else if (H5.H5Tget_size(filetype_id) == 2) {
+			    		result = "Short";
+			    	}
+			    	else if (H5.H5Tget_size(filetype_id) == 4) {
+			    		result = "Integer";
+			    	}
+	 else if (H5.H5Tget_size(filetype_id) == 3) {
+						result = "String";
+					}
+			    }
+	 else if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_STRING) {
 					result = "String";
 				}
-		    }
- else if (H5.H5Tget_class(filetype_id) == HDF5Constants.H5T_STRING) {
-				result = "String";
-			}
 
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot read " + datasetName, ex);
+				throw new H5IO_Exception("Cannot read '" + datasetName + "': " + ex.getMessage());
+			}
+			finally {
+				// End access to the dataset set and release resources used by it.
+			    closeDataset(dataset_id);
+			    closeType(filetype_id);
+			}
+			return result;
 		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot read " + datasetName, ex);
-			throw new H5IO_Exception("Cannot read '" + datasetName + "': " + ex.getMessage());
-		}
-		finally {
-			// End access to the dataset set and release resources used by it.
-		    closeDataset();
-		    closeFileType();
-		}
-		return result;
 	}
 
 	/**
@@ -1065,17 +1338,22 @@ public class H5IO<T> {
 	 */
 	public boolean existsDataset(String dsPath)
 			throws H5IO_Exception {
-		boolean result = true;
-		try {
-			dataset_id = H5.H5Dopen(file_id, dsPath);
-		}
-		catch (Exception ex) {
-			result = false;
-		}
-		finally {
-			closeDataset();
+		synchronized (H5.class) {
+			long t = H5IO_Metrics.start();
+			int dataset_id = -1;
+			boolean result = true;
+			try {
+				dataset_id = track(H5.H5Dopen(file_id, dsPath));
+			}
+			catch (Exception ex) {
+				result = false;
+			}
+			finally {
+				closeDataset(dataset_id);
+			}
+			H5IO_Metrics.stop(H5IO_Metrics.EXISTS, t);
+			return result;
 		}
-		return result;
 	}
 
 	/**
@@ -1087,161 +1365,122 @@ public class H5IO<T> {
 	 * @return void
 	 */
 	public void removeDataset(String datasetName) {
-		try {
-			H5.H5Gunlink(file_id, datasetName);
-			logger.log(Level.CONFIG, "Successfully unlinked/droped" + datasetName);
-		}
-		// Data set does not exist.
-		catch (HDF5LibraryException ex) {
-			logger.log(Level.CONFIG, "Dataset currently not exist...");
-		}
-	}
-
-	/**
-	 * Close the currently opened dataset.
-	 * 
-	 * @author Bjorn Millard & Michael Menden
-	 * @param null
-	 * @return void
-	 * @throws H5IO_Exception
-	 */
-	private void closeDataset() throws H5IO_Exception {
-		try {
-			if (dataset_id >= 0){
-				H5.H5Dclose(dataset_id);
-				dataset_id = -1;
+		synchronized (H5.class) {
+			try {
+				H5.H5Gunlink(file_id, datasetName);
+				logger.log(Level.CONFIG, "Successfully unlinked/droped" + datasetName);
+			}
+			// Data set does not exist.
+			catch (HDF5LibraryException ex) {
+				logger.log(Level.CONFIG, "Dataset currently not exist...");
 			}
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot close the dataset", ex);
-			throw new H5IO_Exception("Cannot close the dataset: " + ex.getMessage());
 		}
 	}
 
 	/**
-	 * Close the memory type.
-	 * 
-	 * @author Bjorn Millard & Michael Menden
-	 * @param null
-	 * @return void
-	 * @throws H5IO_Exception
+	 * Registers the given newly opened identifier as held by this H5IO with
+	 * H5IO_HandleRegistry and returns it
 	 */
-	private void closeMemType() throws H5IO_Exception {
-		try {
-			if (memtype_id >= 0) {
-				H5.H5Tclose(memtype_id);
-				memtype_id = -1;
-			}
-		}
-		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot close the memtype", ex);
-			throw new H5IO_Exception("Cannot close the memtype: " + ex.getMessage());
-		}
+	private int track(int id) {
+		return H5IO_HandleRegistry.opened(this, id);
 	}
 
 	/**
-	 * Close the file type.
+	 * Closes the given dataset identifier if it is valid. Like the other
+	 * close helpers it logs a failure instead of throwing: they are called
+	 * from finally blocks, where an exception would hide the original one
+	 * and skip closing the remaining handles.
 	 * 
-	 * @author Bjorn Millard & Michael Menden
-	 * @param null
+	 * @author Bjorn Millard
+	 * @param int datasetID
 	 * @return void
-	 * @throws H5IO_Exception
 	 */
-	private void closeFileType() throws H5IO_Exception {
+	static void closeDataset(int did) {
 		try {
-			if (filetype_id >= 0) {
-				H5.H5Tclose(filetype_id);
-				filetype_id = -1;
+			if (did >= 0) {
+				H5.H5Dclose(did);
+				H5IO_HandleRegistry.closed(did);
 			}
 		}
 		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot close the filetype", ex);
-			throw new H5IO_Exception("Cannot close the filetype: " + ex.getMessage());
+			logger.log(Level.WARNING, "Cannot close the dataset", ex);
 		}
 	}
 
 	/**
-	 * Close the file space.
+	 * Closes the given datatype identifier if it is valid
 	 * 
-	 * @author Bjorn Millard & Michael Menden
-	 * @param null
+	 * @author Bjorn Millard
+	 * @param int datatypeID
 	 * @return void
-	 * @throws H5IO_Exception
 	 */
-	private void closeFileSpace() throws H5IO_Exception {
+	static void closeType(int tid) {
 		try {
-			if (filespace_id >= 0) {
-				H5.H5Sclose(filespace_id);
-				filespace_id = -1;
+			if (tid >= 0) {
+				H5.H5Tclose(tid);
+				H5IO_HandleRegistry.closed(tid);
 			}
 		}
 		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot close the file space", ex);
-			throw new H5IO_Exception("Cannot close the file space: " + ex.getMessage());
+			logger.log(Level.WARNING, "Cannot close the datatype", ex);
 		}
 	}
 
 	/**
-	 * Close the memory space.
+	 * Closes the given dataspace identifier if it is valid
 	 * 
-	 * @author Bjorn Millard & Michael Menden
-	 * @param null
+	 * @author Bjorn Millard
+	 * @param int dataspaceID
 	 * @return void
-	 * @throws H5IO_Exception
 	 */
-	private void closeMemSpace() throws H5IO_Exception {
+	static void closeSpace(int sid) {
 		try {
-			if (memspace_id >= 0) {
-				H5.H5Sclose(memspace_id);
-				memspace_id = -1;
+			if (sid >= 0) {
+				H5.H5Sclose(sid);
+				H5IO_HandleRegistry.closed(sid);
 			}
 		}
 		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot close the property list", ex);
-			throw new H5IO_Exception("Cannot close the property list: " + ex.getMessage());
+			logger.log(Level.WARNING, "Cannot close the dataspace", ex);
 		}
 	}
 
 	/**
-	 * Close the property list.
+	 * Closes the given property list identifier if it is valid and not
+	 * H5P_DEFAULT
 	 * 
-	 * @author Bjorn Millard & Michael Menden
-	 * @param null
+	 * @author Bjorn Millard
+	 * @param int propertyListID
 	 * @return void
-	 * @throws H5IO_Exception
 	 */
-	private void closePropertyList() throws H5IO_Exception {
+	static void closePropertyList(int pid) {
 		try {
-			if (dcpl_id >= 0) {
-				H5.H5Pclose(dcpl_id);
-				dcpl_id = -1;
+			if (pid >= 0 && pid != HDF5Constants.H5P_DEFAULT) {
+				H5.H5Pclose(pid);
+				H5IO_HandleRegistry.closed(pid);
 			}
 		}
 		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot close the property list", ex);
-			throw new H5IO_Exception("Cannot close the property list: " + ex.getMessage());
+			logger.log(Level.WARNING, "Cannot close the property list", ex);
 		}
 	}
 
 	/**
-	 * Close the attribute
+	 * Closes the given attribute identifier if it is valid
 	 * 
-	 * @author Bjorn Millard & Michael Menden
-	 * @param null
+	 * @author Bjorn Millard
+	 * @param int attributeID
 	 * @return void
-	 * @throws H5IO_Exception
 	 */
-	private void closeAttribute() throws H5IO_Exception {
+	static void closeAttribute(int aid) {
 		try {
-			if (attr_id >= 0) {
-				H5.H5Aclose(attr_id);
-				attr_id = -1;
+			if (aid >= 0) {
+				H5.H5Aclose(aid);
+				H5IO_HandleRegistry.closed(aid);
 			}
 		}
 		catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot close the attribute", ex);
-			throw new H5IO_Exception("Cannot close the attribute: "
-					+ ex.getMessage());
+			logger.log(Level.WARNING, "Cannot close the attribute", ex);
 		}
 	}
 
@@ -1257,10 +1496,12 @@ public class H5IO<T> {
 	 */
 	public void createDataModule_Skeleton(String hdfPath,
 			String pathOfParentGroup) throws H5IO_Exception {
-		createGroup(hdfPath, pathOfParentGroup + "/Data");
-		createGroup(hdfPath, pathOfParentGroup + "/Meta");
-		createGroup(hdfPath, pathOfParentGroup + "/Raw");
-		createGroup(hdfPath, pathOfParentGroup + "/Children");
+		synchronized (H5.class) {
+			createGroup(hdfPath, pathOfParentGroup + "/Data");
+			createGroup(hdfPath, pathOfParentGroup + "/Meta");
+			createGroup(hdfPath, pathOfParentGroup + "/Raw");
+			createGroup(hdfPath, pathOfParentGroup + "/Children");
+		}
 	}
 
 	/**
@@ -1274,41 +1515,45 @@ public class H5IO<T> {
 	 */
 	public void createGroup(String h5FilePath, String groupPathInsideFile)
 			throws H5IO_Exception {
+		synchronized (H5.class) {
 
 
-		//Creating parent groups if dont already exist
-		createAllParentGroups(h5FilePath,groupPathInsideFile);
+			//Creating parent groups if dont already exist
+			createAllParentGroups(h5FilePath,groupPathInsideFile);
 		
 
-		try {
+			// A local handle, so a group opened with openGroup() stays open
+			int gid = -1;
 			try {
-				group_id = H5.H5Gopen(file_id, groupPathInsideFile);
-			}
-			// Group does not exist till now.
-			catch (Exception e) {
-				group_id = H5.H5Gcreate(file_id, groupPathInsideFile,
-						HDF5Constants.H5P_DEFAULT);
-			}
-		} catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot create the '"
-					+ groupPathInsideFile + "' folder", ex);
-			throw new H5IO_Exception("Cannot create the '"
-					+ groupPathInsideFile
-					+ "' folder: " + ex.getMessage());
-		}
-		// Close Group.
-		finally {
-			try {
-				if (group_id >= 0) {
-					H5.H5Gclose(group_id);
-					group_id = -1;
+				try {
+					gid = track(H5.H5Gopen(file_id, groupPathInsideFile));
+				}
+				// Group does not exist till now.
+				catch (Exception e) {
+					gid = track(H5.H5Gcreate(file_id, groupPathInsideFile,
+							HDF5Constants.H5P_DEFAULT));
 				}
 			} catch (Exception ex) {
-				logger.log(Level.SEVERE, "Cannot close the folder", ex);
-				throw new H5IO_Exception("Cannot close the folder: "
-						+ ex.getMessage());
+				logger.log(Level.SEVERE, "Cannot create the '"
+						+ groupPathInsideFile + "' folder", ex);
+				throw new H5IO_Exception("Cannot create the '"
+						+ groupPathInsideFile
+						+ "' folder: " + ex.getMessage());
 			}
+			// Close Group.
+			finally {
+				try {
+					if (gid >= 0) {
+						H5.H5Gclose(gid);
+						H5IO_HandleRegistry.closed(gid);
+					}
+				} catch (Exception ex) {
+					logger.log(Level.SEVERE, "Cannot close the folder", ex);
+					throw new H5IO_Exception("Cannot close the folder: "
+							+ ex.getMessage());
+				}
 
+			}
 		}
 	}
 
@@ -1323,32 +1568,10 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			 float[] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		Float[] dats = new Float[len];
-		for (int i = 0; i < len; i++)
-			dats[i] = new Float(in[i]);
-
-
-		DataObject dataArray = new Data_1D<Float>(dats, Data_1D.FLOAT,
-				datasetName);
-		long[] dims = dataArray.getDimensions();
-		createDataset(datasetPath, "Float", dims);
-		writeArray(path, dataArray, 0, new long[] { 0 });
-
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
-
+		synchronized (H5.class) {
+			writeDataset(h5FilePath, path, new FloatArray1D(in,
+					getDatasetName(path)));
+		}
 	}
 
 	/**
@@ -1361,33 +1584,10 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			 float[][] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		int len2 = in[0].length;
-		Float[][] dats = new Float[len][len2];
-		for (int i = 0; i < len; i++)
-			for (int j = 0; j < len2; j++)
-				dats[i][j] = new Float(in[i][j]);
-
-		Data_2D<Float> data = new Data_2D<Float>(dats, "FLOAT", datasetName);
-		long[] dims = data.getDimensions();
-		createDataset(datasetPath, "Float", dims);
-
-		// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-		writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
-
+		synchronized (H5.class) {
+			writeDataset(h5FilePath, path,
+					FloatMatrix2D.fromRows(in, getDatasetName(path)));
+		}
 	}
 
 	/**
@@ -1401,31 +1601,10 @@ public class H5IO<T> {
 	public void writeDataset(String h5FilePath, String path,
  double[] in)
 			throws H5IO_Exception {
-	
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		Double[] dats = new Double[len];
-		for (int i = 0; i < len; i++)
-			dats[i] = new Double(in[i]);
-
-		DataObject dataArray = new Data_1D<Double>(dats, Data_1D.DOUBLE,
-				datasetName);
-		long[] dims = dataArray.getDimensions();
-		createDataset(datasetPath, "Double", dims);
-		writeArray(path, dataArray, 0, new long[] { 0 });
-
-
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_DOUBLE");
+		synchronized (H5.class) {
+			writeDataset(h5FilePath, path, new DoubleArray1D(in,
+					getDatasetName(path)));
+		}
 	}
 
 	/**
@@ -1439,32 +1618,10 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			double[][] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		int len2 = in[0].length;
-		Double[][] dats = new Double[len][len2];
-		for (int i = 0; i < len; i++)
-			for (int j = 0; j < len2; j++)
-				dats[i][j] = new Double(in[i][j]);
-
-		Data_2D<Double> data = new Data_2D<Double>(dats, "DOUBLE", datasetName);
-		long[] dims = data.getDimensions();
-		createDataset(datasetPath, "Double", dims);
-
-		// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-		writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_DOUBLE");
-
+		synchronized (H5.class) {
+			writeDataset(h5FilePath, path,
+					DoubleMatrix2D.fromRows(in, getDatasetName(path)));
+		}
 	}
 
 	/**
@@ -1477,30 +1634,10 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			 int[] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		Integer[] dats = new Integer[len];
-		for (int i = 0; i < len; i++)
-			dats[i] = new Integer(in[i]);
-
-		DataObject dataArray = new Data_1D<Integer>(dats, Data_1D.INTEGER,
-				datasetName);
-		long[] dims = dataArray.getDimensions();
-		createDataset(datasetPath, "Integer", dims);
-		writeArray(path, dataArray, 0, new long[] { 0 });
-
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_INTEGER");
-
+		synchronized (H5.class) {
+			writeDataset(h5FilePath, path, new IntArray1D(in,
+					getDatasetName(path)));
+		}
 	}
 
 	/**
@@ -1513,33 +1650,195 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			 int[][] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		int len2 = in[0].length;
-		Integer[][] dats = new Integer[len][len2];
-		for (int i = 0; i < len; i++)
-			for (int j = 0; j < len2; j++)
-				dats[i][j] = new Integer(in[i][j]);
+		synchronized (H5.class) {
+			writeDataset(h5FilePath, path,
+					IntMatrix2D.fromRows(in, getDatasetName(path)));
+		}
+	}
+
+	/**
+	 * Writes a primitive-backed DataObject straight to an HDF5 dataset of the
+	 * same shape. The primitive buffer is passed to H5Dwrite as is, so no
+	 * boxing takes place.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            h5FilePath, String datasetPathFromProjectRoot,
+	 *            PrimitiveDataObject dataset
+	 * @return void
+	 * */
+	public void writeDataset(String h5FilePath, String path,
+			PrimitiveDataObject dat) throws H5IO_Exception {
+		synchronized (H5.class) {
+			int dataset_id = -1;
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
+
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
+
+			createDataset(datasetPath, dat.getDataType(), dat.getDimensions());
+			long t = H5IO_Metrics.start();
+			try {
+				dataset_id = track(H5.H5Dopen(file_id, datasetPath));
+				dat.write(dataset_id, HDF5Constants.H5S_ALL,
+						HDF5Constants.H5S_ALL);
+				H5IO_Metrics.stop(H5IO_Metrics.WRITE, t, H5IO_Metrics.bytes(dat));
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot write to " + datasetPath, ex);
+				throw new H5IO_Exception("Cannot write to '" + datasetPath + "': " + ex.getMessage());
+			}
+			finally {
+				closeDataset(dataset_id);
+			}
+			// Add dataset type attributes:
+			writeAttribute(datasetPath, "dataType", dat.getHDFTypeName());
+		}
+	}
 
-		Data_2D<Integer> data = new Data_2D<Integer>(dats, "INTEGER",
-				datasetName);
-		long[] dims = data.getDimensions();
-		createDataset(datasetPath, "Integer", dims);
+	/**
+	 * Reads a 1D or 2D Float, Double or Integer dataset straight into a
+	 * primitive-backed DataObject (FloatArray1D, DoubleMatrix2D, ...) without
+	 * boxing. Returns null if the dataset does not exist or is of another
+	 * type.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            hdf5FilePath, String pathToDatasetWithHDF5root
+	 * @return PrimitiveDataObject DataObjectRead
+	 * @throws H5IO_Exception
+	 * */
+	public PrimitiveDataObject readDataset_Primitive(String h5FilePath,
+			String datasetPath) throws H5IO_Exception {
+		synchronized (H5.class) {
+			int dataset_id = -1;
+			int filespace_id = -1;
+			int filetype_id = -1;
+			PrimitiveDataObject result = null;
+			try {
+				try {
+					dataset_id = track(H5.H5Dopen(file_id, datasetPath));
+				}
+				// Dataset does not exist
+				catch (HDF5LibraryException e) {
+					return null;
+				}
+				String datasetName = getDatasetName(datasetPath);
+				filespace_id = track(H5.H5Dget_space(dataset_id));
+				int rank = H5.H5Sget_simple_extent_ndims(filespace_id);
+				long[] dims = new long[rank];
+				H5.H5Sget_simple_extent_dims(filespace_id, dims, null);
+				filetype_id = track(H5.H5Dget_type(dataset_id));
+				int typeClass = H5.H5Tget_class(filetype_id);
+				int typeSize = H5.H5Tget_size(filetype_id);
+
+				if (typeClass == HDF5Constants.H5T_FLOAT && typeSize == 4) {
+					if (rank == 1)
+						result = new FloatArray1D(new float[(int) dims[0]],
+								datasetName);
+					else if (rank == 2)
+						result = new FloatMatrix2D((int) dims[0], (int) dims[1],
+								datasetName);
+				} else if (typeClass == HDF5Constants.H5T_FLOAT && typeSize == 8) {
+					if (rank == 1)
+						result = new DoubleArray1D(new double[(int) dims[0]],
+								datasetName);
+					else if (rank == 2)
+						result = new DoubleMatrix2D((int) dims[0], (int) dims[1],
+								datasetName);
+				} else if (typeClass == HDF5Constants.H5T_INTEGER && typeSize == 4) {
+					if (rank == 1)
+						result = new IntArray1D(new int[(int) dims[0]],
+								datasetName);
+					else if (rank == 2)
+						result = new IntMatrix2D((int) dims[0], (int) dims[1],
+								datasetName);
+				}
 
-		// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-		writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_INTEGER");
+				if (result != null) {
+					long t = H5IO_Metrics.start();
+					result.read(dataset_id, HDF5Constants.H5S_ALL,
+							HDF5Constants.H5S_ALL);
+					H5IO_Metrics.stop(H5IO_Metrics.READ, t, H5IO_Metrics
+							.bytes(result));
+				}
+			}
+			catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot read " + datasetPath, ex);
+				throw new H5IO_Exception("Cannot read '" + datasetPath + "': "
+						+ ex.getMessage());
+			}
+			finally {
+				// End access to the dataset set and release resources used by it.
+				closeDataset(dataset_id);
+				closeSpace(filespace_id);
+				closeType(filetype_id);
+			}
+			return result;
+		}
+	}
 
+	/**
+	 * Returns a read-only MappedDataObject view of the given numeric dataset.
+	 * The dataset is read once with H5Dread into a heap buffer behind the
+	 * view: the bundled jhdf5 has no H5Dget_offset, so the file offset needed
+	 * to memory map Data.h5 is not known. Returns null if the dataset does
+	 * not exist.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            hdf5FilePath, String pathToDatasetWithHDF5root
+	 * @return MappedDataObject
+	 * @throws H5IO_Exception
+	 * */
+	public MappedDataObject readDataset_Mapped(String h5FilePath,
+			String datasetPath) throws H5IO_Exception {
+		synchronized (H5.class) {
+			int did = -1;
+			try {
+				try {
+					did = track(H5.H5Dopen(file_id, datasetPath));
+				}
+				// Dataset does not exist
+				catch (HDF5LibraryException e) {
+					return null;
+				}
+				long t = H5IO_Metrics.start();
+				H5IO_DatasetInfo info = H5IO_DatasetInfo.probe(did);
+				int hdfType = info.getHDFType();
+				if (info.getTypeClass() == HDF5Constants.H5T_STRING || hdfType < 0)
+					throw new H5IO_Exception("Cannot map non numeric dataset '"
+							+ datasetPath + "'");
+				long[] dims = info.getDimensions();
+				String dataType = info.getDataType().toUpperCase();
+				int typeSize = info.getTypeSize();
+				long numBytes = info.getNumElements() * typeSize;
+
+				if (numBytes > Integer.MAX_VALUE)
+					throw new H5IO_Exception("'" + datasetPath
+							+ "' is too large to read at once,"
+							+ " use H5IO_BlockReader");
+				byte[] bytes = new byte[(int) numBytes];
+				H5.H5Dread(did, hdfType, HDF5Constants.H5S_ALL,
+						HDF5Constants.H5S_ALL, HDF5Constants.H5P_DEFAULT, bytes);
+				H5IO_Metrics.stop(H5IO_Metrics.READ, t, numBytes);
+				ByteBuffer bb = ByteBuffer.wrap(bytes).order(
+						ByteOrder.nativeOrder());
+				return new MappedDataObject(datasetPath, dims, dataType, hdfType,
+						typeSize, new ByteBuffer[] { bb });
+			} catch (H5IO_Exception ex) {
+				throw ex;
+			} catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot map " + datasetPath, ex);
+				throw new H5IO_Exception("Cannot map '" + datasetPath + "': "
+						+ ex.getMessage());
+			} finally {
+				closeDataset(did);
+			}
+		}
 	}
 
 	/**
@@ -1552,30 +1851,32 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			short[] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
+		synchronized (H5.class) {
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
+
+			String datasetName = getDatasetName(path);
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
 		
-		// convert from primitive
-		int len = in.length;
-		Short[] dats = new Short[len];
-		for (int i = 0; i < len; i++)
-			dats[i] = new Short(in[i]);
-
-		DataObject dataArray = new Data_1D<Short>(dats, Data_1D.SHORT,
-				datasetName);
-		long[] dims = dataArray.getDimensions();
-		createDataset(datasetPath, "Byte", dims);
-		writeArray(path, dataArray, 0, new long[] { 0 });
+			// convert from primitive
+			int len = in.length;
+			Short[] dats = new Short[len];
+			for (int i = 0; i < len; i++)
+				dats[i] = new Short(in[i]);
+
+			DataObject dataArray = new Data_1D<Short>(dats, Data_1D.SHORT,
+					datasetName);
+			long[] dims = dataArray.getDimensions();
+			createDataset(datasetPath, "Byte", dims);
+			writeArray(path, dataArray, 0, new long[] { 0 });
 
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SHORT");
+			// Add dataset type attributes:
+			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SHORT");
 
+		}
 	}
 
 	/**
@@ -1589,33 +1890,35 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			short[][] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
+		synchronized (H5.class) {
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
 
 
-		String datasetName = getDatasetName(path);
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
+			String datasetName = getDatasetName(path);
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
 		
-		// convert from primitive
-		int len = in.length;
-		int len2 = in[0].length;
-		Short[][] dats = new Short[len][len2];
-		for (int i = 0; i < len; i++)
-			for (int j = 0; j < len2; j++)
-				dats[i][j] = new Short(in[i][j]);
-
-		Data_2D<Short> data = new Data_2D<Short>(dats, "SHORT", datasetName);
-		long[] dims = data.getDimensions();
-		createDataset(datasetPath, "Byte", dims);
+			// convert from primitive
+			int len = in.length;
+			int len2 = in[0].length;
+			Short[][] dats = new Short[len][len2];
+			for (int i = 0; i < len; i++)
+				for (int j = 0; j < len2; j++)
+					dats[i][j] = new Short(in[i][j]);
+
+			Data_2D<Short> data = new Data_2D<Short>(dats, "SHORT", datasetName);
+			long[] dims = data.getDimensions();
+			createDataset(datasetPath, "Byte", dims);
 
-		// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-		writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SHORT");
+			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+			writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
+			// Add dataset type attributes:
+			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SHORT");
 
+		}
 	}
 
 	/**
@@ -1628,32 +1931,34 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			 byte[] in) throws H5IO_Exception {
+		synchronized (H5.class) {
 
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
 		
 
-		String datasetName = getDatasetName(path);
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
+			String datasetName = getDatasetName(path);
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
 		
-		// convert from primitive
-		int len = in.length;
-		Byte[] dats = new Byte[len];
-		for (int i = 0; i < len; i++)
-			dats[i] = new Byte(in[i]);
-
-		DataObject dataArray = new Data_1D<Byte>(dats, Data_1D.BYTE,
-				datasetName);
-		long[] dims = dataArray.getDimensions();
-		createDataset(datasetPath, "Byte", dims);
-		writeArray(path, dataArray, 0, new long[] { 0 });
+			// convert from primitive
+			int len = in.length;
+			Byte[] dats = new Byte[len];
+			for (int i = 0; i < len; i++)
+				dats[i] = new Byte(in[i]);
+
+			DataObject dataArray = new Data_1D<Byte>(dats, Data_1D.BYTE,
+					datasetName);
+			long[] dims = dataArray.getDimensions();
+			createDataset(datasetPath, "Byte", dims);
+			writeArray(path, dataArray, 0, new long[] { 0 });
 
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
+			// Add dataset type attributes:
+			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
 
+		}
 	}
 
 	/**
@@ -1667,33 +1972,35 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			byte[][] in) throws H5IO_Exception {
+		synchronized (H5.class) {
 		
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetName = getDatasetName(path);
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		int len2 = in[0].length;
-		Byte[][] dats = new Byte[len][len2];
-		for (int i = 0; i < len; i++)
-			for (int j = 0; j < len2; j++)
-				dats[i][j] = new Byte(in[i][j]);
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
 
-		Data_2D<Byte> data = new Data_2D<Byte>(dats, "BYTE", datasetName);
-		long[] dims = data.getDimensions();
-		createDataset(datasetPath, "Byte", dims);
+			String datasetName = getDatasetName(path);
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
+		
+			// convert from primitive
+			int len = in.length;
+			int len2 = in[0].length;
+			Byte[][] dats = new Byte[len][len2];
+			for (int i = 0; i < len; i++)
+				for (int j = 0; j < len2; j++)
+					dats[i][j] = new Byte(in[i][j]);
+
+			Data_2D<Byte> data = new Data_2D<Byte>(dats, "BYTE", datasetName);
+			long[] dims = data.getDimensions();
+			createDataset(datasetPath, "Byte", dims);
 
-		// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-		writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
+			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+			writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
+			// Add dataset type attributes:
+			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
 
+		}
 	}
 
 	/**
@@ -1707,21 +2014,23 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path,
 			 String[] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
+		synchronized (H5.class) {
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
 
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
 		
-		// convert from primitive
-		int len = in.length;
-		StringBuffer[] dats = new StringBuffer[len];
-		for (int i = 0; i < len; i++)
-			dats[i] = new StringBuffer(in[i]);
+			// convert from primitive
+			int len = in.length;
+			StringBuffer[] dats = new StringBuffer[len];
+			for (int i = 0; i < len; i++)
+				dats[i] = new StringBuffer(in[i]);
 
-		writeStringDataset(datasetPath, dats);
+			writeStringDataset(datasetPath, dats);
+		}
 	}
 
 
@@ -1736,161 +2045,474 @@ public class H5IO<T> {
 	public StringBuffer[] readDataset_String(String h5FilePath,
 			String datasetPath)
 			throws H5IO_Exception {
-		StringBuffer[] str_data;
-		try {
-			// Open an existing dataset set.
-			if (!existsDataset(datasetPath))
-				return null;
-			dataset_id = H5.H5Dopen(file_id, datasetPath);
-			// Get dataset space.
-			memspace_id = H5.H5Dget_space(dataset_id);
-			long dim0 = H5.H5Sget_simple_extent_npoints(memspace_id);
-			// Get the dataset type
-			filetype_id = H5.H5Dget_type(dataset_id);
-			// Get the size of the dataset type.
-			// +1 make room for null terminator.
-			int dim1 = H5.H5Tget_size(filetype_id) + 1;
-			// Allocate space for dataset.
-			byte[][] dset_data;
-			dset_data = new byte[(int) dim0][dim1];
-			str_data = new StringBuffer[(int) dim0];
-			// Create the memory dataset type.
-			memtype_id = H5.H5Tcopy(HDF5Constants.H5T_C_S1);
-			H5.H5Tset_size(memtype_id, dim1);
-			// Read dataset.
-			if ((dataset_id >= 0) && (memtype_id >= 0))
-				H5.H5Dread(dataset_id, memtype_id, HDF5Constants.H5S_ALL,
-						HDF5Constants.H5S_ALL, HDF5Constants.H5P_DEFAULT,
-						dset_data);
-			byte[] tempbuf = new byte[dim1];
-			for (int indx = 0; indx < (int) dim0; indx++) {
-				for (int jndx = 0; jndx < dim1; jndx++) {
-					tempbuf[jndx] = dset_data[indx][jndx];
+		synchronized (H5.class) {
+			int did = -1;
+			try {
+				// Open an existing dataset set.
+				try {
+					did = track(H5.H5Dopen(file_id, datasetPath));
+				}
+				// Dataset does not exist
+				catch (HDF5LibraryException e) {
+					return null;
 				}
-				str_data[indx] = new StringBuffer(new String(tempbuf));
+				return readStrings(did, H5IO_DatasetInfo.probe(did));
+			}
+	 catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot read " + datasetPath, ex);
+				throw new H5IO_Exception("Cannot read '" + datasetPath
+						+ "': " + ex.getMessage());
+			}
+	 finally {
+				closeDataset(did);
 			}
 		}
- catch (Exception ex) {
-			logger.log(Level.SEVERE, "Cannot read " + datasetPath, ex);
-			throw new H5IO_Exception("Cannot read '" + datasetPath
-					+ "': " + ex.getMessage());
-		}
- finally {
+	}
 
+	/**
+	 * Reads the fixed length strings of the given opened 1D string dataset
+	 * 
+	 * @author Bjorn Millard
+	 * @param int datasetID, H5IO_DatasetInfo metadataOfDataset
+	 * @return StringBuffer[] stringDatasetRead
+	 * @throws HDF5Exception
+	 * */
+	static StringBuffer[] readStrings(int did, H5IO_DatasetInfo info)
+			throws HDF5Exception {
+		int dim0 = (int) info.getNumElements();
+		// +1 make room for null terminator.
+		int dim1 = info.getTypeSize() + 1;
+		// Allocate space for dataset.
+		byte[][] dset_data = new byte[dim0][dim1];
+		// Create the memory dataset type.
+		long t = H5IO_Metrics.start();
+		int memtype = H5IO_HandleRegistry.opened(null, H5.H5Tcopy(HDF5Constants.H5T_C_S1));
+		try {
+			H5.H5Tset_size(memtype, dim1);
+			H5.H5Dread(did, memtype, HDF5Constants.H5S_ALL,
+					HDF5Constants.H5S_ALL, HDF5Constants.H5P_DEFAULT,
+					dset_data);
+			H5IO_Metrics.stop(H5IO_Metrics.READ, t, (long) dim0 * dim1);
+		} finally {
+			H5.H5Tclose(memtype);
+			H5IO_HandleRegistry.closed(memtype);
 		}
+		StringBuffer[] str_data = new StringBuffer[dim0];
+		for (int indx = 0; indx < dim0; indx++)
+			str_data[indx] = new StringBuffer(new String(dset_data[indx]));
 		return str_data;
 	}
 
 	/**
-	 * Writes a generic T[] to HDF5 dataset
+	 * Reads the given opened dataset into the same DataObject shape that
+	 * readDataset returns: matrices as Data_2D, arrays as Data_1D and string
+	 * arrays as an [n][1] Data_2D<String>. Values are read into a primitive
+	 * buffer with a single H5Dread and only boxed afterwards.
 	 * 
 	 * @author Bjorn Millard
 	 * @param String
-	 *            h5FilePath, String datasetPathFromProjectRoot, float[] dataset
-	 * @return void
+	 *            datasetName, H5IO_DatasetInfo metadataOfOpenedDataset
+	 * @return DataObject DataObjectRead
+	 * @throws HDF5Exception
 	 * */
-	public void writeDataset(String h5FilePath, String path, String datasetName,
-			 T[] in) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
-
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		// convert from primitive
-		int len = in.length;
-		Float[][] dats = new Float[len][1];
-		for (int i = 0; i < len; i++)
-			dats[i][0] = ((Float)in[i]);
-
-		Data_2D<Float> data = new Data_2D<Float>(dats, "FLOAT", datasetName);
-		long[] dims = data.getDimensions();
-		createDataset(datasetPath, "Float", dims);
-
-		// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-		writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-		// Add dataset type attributes:
-		writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
-
+	static DataObject readDataObject(String dsName, H5IO_DatasetInfo info)
+			throws HDF5Exception {
+		return readDataObject(dsName, info, info.getDimensions(),
+				HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL);
 	}
+
 	/**
-	 * Writes a generic T[][] to HDF5 dataset
+	 * Reads the selection of the given file space into a DataObject shaped
+	 * like the given dims, which must match the memory space. String
+	 * datasets are always read whole.
 	 * 
 	 * @author Bjorn Millard
 	 * @param String
-	 *            h5FilePath, String datasetPathFromProjectRoot, float[] dataset
-	 * @return void
+	 *            datasetName, H5IO_DatasetInfo metadataOfOpenedDataset,
+	 *            long[] dimsOfSelection, int memspace_id, int filespace_id
+	 * @return DataObject DataObjectRead
+	 * @throws HDF5Exception
 	 * */
-	public void writeDataset(String h5FilePath, String path, String datasetName,
-			 Data_2D dat2) throws H5IO_Exception {
-		//Creating the parent groups of this dataset if they dont already exist
-		String datasetPath = path;
-		createAllParentGroups(h5FilePath, datasetPath);
+	static DataObject readDataObject(String dsName, H5IO_DatasetInfo info,
+			long[] dims, int memspace, int filespace) throws HDF5Exception {
+		Object buf = readBuffer(info, dims, memspace, filespace);
+		if (buf == null)
+			return null;
+		return toDataObject(dsName, info.getDataType(), dims, buf);
+	}
 
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
-		
-		
-		String type = dat2.getDataType();
-		
-		if(type.equalsIgnoreCase("Float"))
-		{
-			Data_2D<Float> data = new Data_2D<Float>(
-					(Float[][]) dat2.getData(), "FLOAT", datasetName);
-			long[] dims = data.getDimensions();
-			createDataset(datasetPath, "Float", dims);
-			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-			writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
-		}
-		else if(type.equalsIgnoreCase("Integer"))
-		{
-			Data_2D<Integer> data = new Data_2D<Integer>((Integer[][]) dat2
-					.getData(), "INTEGER", datasetName);
-			long[] dims = data.getDimensions();
-			createDataset(datasetPath, "Integer", dims);
-			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-			writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_INTEGER");
+	/**
+	 * Reads the selection of the given file space with a single H5Dread into
+	 * a primitive buffer of the dataset's type (float[], double[], byte[],
+	 * short[] or int[], row-major), or a StringBuffer[] for String datasets.
+	 * Returns null for unsupported types. This is the only part of reading a
+	 * dataset that calls into HDF5; toDataObject does the boxing.
+	 * 
+	 * @author Bjorn Millard
+	 * @param H5IO_DatasetInfo
+	 *            metadataOfOpenedDataset, long[] dimsOfSelection, int
+	 *            memspace_id, int filespace_id
+	 * @return Object primitiveBuffer
+	 * @throws HDF5Exception
+	 * */
+	static Object readBuffer(H5IO_DatasetInfo info, long[] dims,
+			int memspace, int filespace) throws HDF5Exception {
+		return readBuffer(info, dims, memspace, filespace, null);
+	}
+
+	/**
+	 * Like readBuffer(H5IO_DatasetInfo, long[], int, int), but reads into
+	 * the given primitive array if it is of the dataset's type and large
+	 * enough, so one buffer can be reused across datasets. Only the first
+	 * numElements(dims) values of the returned buffer are meaningful then.
+	 * 
+	 * @author Bjorn Millard
+	 * @param H5IO_DatasetInfo
+	 *            metadataOfOpenedDataset, long[] dimsOfSelection, int
+	 *            memspace_id, int filespace_id, Object reusableBuffer
+	 * @return Object primitiveBuffer
+	 * @throws HDF5Exception
+	 * */
+	static Object readBuffer(H5IO_DatasetInfo info, long[] dims,
+			int memspace, int filespace, Object pool) throws HDF5Exception {
+		int did = info.getDatasetID();
+		String type = info.getDataType();
+		int xfer = HDF5Constants.H5P_DEFAULT;
+		if (dims.length != 1 && dims.length != 2)
+			return null;
+		if (type.equals("String"))
+			return readStrings(did, info);
+
+		long t = H5IO_Metrics.start();
+		int len = (int) (dims.length == 1 ? dims[0] : dims[0] * dims[1]);
+		if (type.equals("Float")) {
+			float[] buf = pool instanceof float[]
+					&& ((float[]) pool).length >= len ? (float[]) pool
+					: new float[len];
+			H5.H5Dread_float(did, HDF5Constants.H5T_NATIVE_FLOAT, memspace,
+					filespace, xfer, buf);
+			H5IO_Metrics.stop(H5IO_Metrics.READ, t, len * 4L);
+			return buf;
+		} else if (type.equals("Double")) {
+			double[] buf = pool instanceof double[]
+					&& ((double[]) pool).length >= len ? (double[]) pool
+					: new double[len];
+			H5.H5Dread_double(did, HDF5Constants.H5T_NATIVE_DOUBLE, memspace,
+					filespace, xfer, buf);
+			H5IO_Metrics.stop(H5IO_Metrics.READ, t, len * 8L);
+			return buf;
+		} else if (type.equals("Byte")) {
+			byte[] buf = pool instanceof byte[]
+					&& ((byte[]) pool).length >= len ? (byte[]) pool
+					: new byte[len];
+			H5.H5Dread(did, HDF5Constants.H5T_NATIVE_CHAR, memspace,
+					filespace, xfer, buf);
+			H5IO_Metrics.stop(H5IO_Metrics.READ, t, len * 1L);
+			return buf;
+		} else if (type.equals("Short")) {
+			short[] buf = pool instanceof short[]
+					&& ((short[]) pool).length >= len ? (short[]) pool
+					: new short[len];
+			H5.H5Dread_short(did, HDF5Constants.H5T_NATIVE_SHORT, memspace,
+					filespace, xfer, buf);
+			H5IO_Metrics.stop(H5IO_Metrics.READ, t, len * 2L);
+			return buf;
+		} else if (type.equals("Integer")) {
+			int[] buf = pool instanceof int[]
+					&& ((int[]) pool).length >= len ? (int[]) pool
+					: new int[len];
+			H5.H5Dread_int(did, HDF5Constants.H5T_NATIVE_INT, memspace,
+					filespace, xfer, buf);
+			H5IO_Metrics.stop(H5IO_Metrics.READ, t, len * 4L);
+			return buf;
 		}
-		else if(type.equalsIgnoreCase("Double"))
-		{
-			Data_2D<Double> data = new Data_2D<Double>((Double[][]) dat2
-					.getData(), "DOUBLE", datasetName);
-			long[] dims = data.getDimensions();
-			createDataset(datasetPath, "Double", dims);
-			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-			writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_DOUBLE");
+		return null;
+	}
+
+	/**
+	 * Boxes a buffer returned by readBuffer into the DataObject shape that
+	 * readDataset returns: matrices as Data_2D, arrays as Data_1D and string
+	 * arrays as an [n][1] Data_2D<String>. Makes no HDF5 calls.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            datasetName, String dataType, long[] dims, Object buffer
+	 * @return DataObject DataObjectRead
+	 * */
+	static DataObject toDataObject(String dsName, String type, long[] dims,
+			Object buffer) {
+		if (buffer instanceof StringBuffer[])
+			return toDataObject(dsName, type, dims, buffer, 0);
+		return toDataObject(dsName, type, dims, buffer, Array
+				.getLength(buffer));
+	}
+
+	/**
+	 * Returns true if datasets of the given type can be loaded as
+	 * PrimitiveDataObjects rather than boxed, see toPrimitiveObject
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            dataType
+	 * @return boolean
+	 */
+	static boolean isPrimitiveType(String type) {
+		return type.equals("Float") || type.equals("Double")
+				|| type.equals("Integer");
+	}
+
+	/**
+	 * Wraps the first len values of a primitive buffer read by readBuffer in
+	 * the PrimitiveDataObject of the same shape toDataObject would box them
+	 * into: FloatMatrix2D for a matrix and FloatArray1D for an array or a
+	 * single value, and likewise for Double and Integer. The buffer itself is
+	 * kept if it holds exactly len values, else they are copied out. Returns
+	 * null for the other types, which are still boxed.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            datasetName, String dataType, long[] dims, Object buffer,
+	 *            int numValues
+	 * @return PrimitiveDataObject
+	 * */
+	static PrimitiveDataObject toPrimitiveObject(String dsName, String type,
+			long[] dims, Object buffer, int len) {
+		if (!isPrimitiveType(type) || (dims.length != 1 && dims.length != 2))
+			return null;
+		if (Array.getLength(buffer) != len) {
+			Object copy = Array.newInstance(buffer.getClass()
+					.getComponentType(), len);
+			System.arraycopy(buffer, 0, copy, 0, len);
+			buffer = copy;
+		}
+		if (dims.length == 2 && (dims[0] != 1 || dims[1] != 1)) {
+			int rows = (int) dims[0];
+			int cols = (int) dims[1];
+			if (type.equals("Float"))
+				return new FloatMatrix2D((float[]) buffer, rows, cols, dsName);
+			else if (type.equals("Double"))
+				return new DoubleMatrix2D((double[]) buffer, rows, cols,
+						dsName);
+			else
+				return new IntMatrix2D((int[]) buffer, rows, cols, dsName);
+		}
+		if (type.equals("Float"))
+			return new FloatArray1D((float[]) buffer, dsName);
+		else if (type.equals("Double"))
+			return new DoubleArray1D((double[]) buffer, dsName);
+		else
+			return new IntArray1D((int[]) buffer, dsName);
+	}
+
+	/**
+	 * Like toDataObject(String, String, long[], Object), for a buffer of
+	 * which only the first len values belong to the dataset
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            datasetName, String dataType, long[] dims, Object buffer,
+	 *            int numValues
+	 * @return DataObject DataObjectRead
+	 * */
+	static DataObject toDataObject(String dsName, String type, long[] dims,
+			Object buffer, int len) {
+		if (buffer instanceof StringBuffer[]) {
+			StringBuffer[] stb = (StringBuffer[]) buffer;
+			String[][] data = new String[stb.length][1];
+			for (int r = 0; r < stb.length; r++)
+				data[r][0] = stb[r].toString();
+			return new Data_2D<String>(data, Data_2D.STRING, dsName);
+		}
+
+		if (dims.length == 2 && (dims[0] != 1 || dims[1] != 1)) {
+			int rows = (int) dims[0];
+			int cols = (int) dims[1];
+			if (type.equals("Float")) {
+				float[] buf = (float[]) buffer;
+				Float[][] out = new Float[rows][cols];
+				for (int i = 0; i < rows; i++)
+					for (int j = 0; j < cols; j++)
+						out[i][j] = Float.valueOf(buf[i * cols + j]);
+				return new Data_2D<Float>(out, "FLOAT", dsName);
+			} else if (type.equals("Double")) {
+				double[] buf = (double[]) buffer;
+				Double[][] out = new Double[rows][cols];
+				for (int i = 0; i < rows; i++)
+					for (int j = 0; j < cols; j++)
+						out[i][j] = Double.valueOf(buf[i * cols + j]);
+				return new Data_2D<Double>(out, "DOUBLE", dsName);
+			} else if (type.equals("Byte")) {
+				byte[] buf = (byte[]) buffer;
+				Byte[][] out = new Byte[rows][cols];
+				for (int i = 0; i < rows; i++)
+					for (int j = 0; j < cols; j++)
+						out[i][j] = Byte.valueOf(buf[i * cols + j]);
+				return new Data_2D<Byte>(out, "BYTE", dsName);
+			} else if (type.equals("Short")) {
+				short[] buf = (short[]) buffer;
+				Short[][] out = new Short[rows][cols];
+				for (int i = 0; i < rows; i++)
+					for (int j = 0; j < cols; j++)
+						out[i][j] = Short.valueOf(buf[i * cols + j]);
+				return new Data_2D<Short>(out, "SHORT", dsName);
+			} else if (type.equals("Integer")) {
+				int[] buf = (int[]) buffer;
+				Integer[][] out = new Integer[rows][cols];
+				for (int i = 0; i < rows; i++)
+					for (int j = 0; j < cols; j++)
+						out[i][j] = Integer.valueOf(buf[i * cols + j]);
+				return new Data_2D<Integer>(out, "INTEGER", dsName);
+			}
+		} else if (dims.length == 1 || dims.length == 2) {
+			if (type.equals("Float")) {
+				float[] buf = (float[]) buffer;
+				Float[] out = new Float[len];
+				for (int i = 0; i < len; i++)
+					out[i] = Float.valueOf(buf[i]);
+				return new Data_1D<Float>(out, Data_1D.FLOAT, dsName);
+			} else if (type.equals("Double")) {
+				double[] buf = (double[]) buffer;
+				Double[] out = new Double[len];
+				for (int i = 0; i < len; i++)
+					out[i] = Double.valueOf(buf[i]);
+				return new Data_1D<Double>(out, Data_1D.DOUBLE, dsName);
+			} else if (type.equals("Byte")) {
+				byte[] buf = (byte[]) buffer;
+				Byte[] out = new Byte[len];
+				for (int i = 0; i < len; i++)
+					out[i] = Byte.valueOf(buf[i]);
+				return new Data_1D<Byte>(out, Data_1D.BYTE, dsName);
+			} else if (type.equals("Short")) {
+				short[] buf = (short[]) buffer;
+				Short[] out = new Short[len];
+				for (int i = 0; i < len; i++)
+					out[i] = Short.valueOf(buf[i]);
+				return new Data_1D<Short>(out, Data_1D.SHORT, dsName);
+			} else if (type.equals("Integer")) {
+				int[] buf = (int[]) buffer;
+				Integer[] out = new Integer[len];
+				for (int i = 0; i < len; i++)
+					out[i] = Integer.valueOf(buf[i]);
+				return new Data_1D<Integer>(out, Data_1D.INTEGER, dsName);
+			}
 		}
-		else if(type.equalsIgnoreCase("Byte"))
-		{
-			Data_2D<Byte> data = new Data_2D<Byte>((Byte[][]) dat2.getData(),
-					"BYTE", datasetName);
+		return null;
+	}
+
+	/**
+	 * Writes a generic T[] to HDF5 dataset
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            h5FilePath, String datasetPathFromProjectRoot, float[] dataset
+	 * @return void
+	 * */
+	public void writeDataset(String h5FilePath, String path, String datasetName,
+			 T[] in) throws H5IO_Exception {
+		synchronized (H5.class) {
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
+
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
+		
+			// convert from primitive
+			int len = in.length;
+			Float[][] dats = new Float[len][1];
+			for (int i = 0; i < len; i++)
+				dats[i][0] = ((Float)in[i]);
+
+			Data_2D<Float> data = new Data_2D<Float>(dats, "FLOAT", datasetName);
 			long[] dims = data.getDimensions();
-			createDataset(datasetPath, "Byte", dims);
+			createDataset(datasetPath, "Float", dims);
+
 			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
 			writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
 			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
+			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
+
 		}
- else if (type.equalsIgnoreCase("String")) {
-			String[][] arr = (String[][]) dat2.getData();
-			// Currently 2D String Matricies not supported
-			// #==> convert to 1D
-			String[] arr1 = new String[arr.length];
-			for (int i = 0; i < arr.length; i++)
-				arr1[i] = arr[i][0];
+	}
+	/**
+	 * Writes a generic T[][] to HDF5 dataset
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            h5FilePath, String datasetPathFromProjectRoot, float[] dataset
+	 * @return void
+	 * */
+	public void writeDataset(String h5FilePath, String path, String datasetName,
+			 Data_2D dat2) throws H5IO_Exception {
+		synchronized (H5.class) {
+			//Creating the parent groups of this dataset if they dont already exist
+			String datasetPath = path;
+			createAllParentGroups(h5FilePath, datasetPath);
 
-			writeDataset(h5FilePath, datasetPath, arr1);
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SCHAR");
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
+		
+		
+			String type = dat2.getDataType();
+		
+			if(type.equalsIgnoreCase("Float"))
+			{
+				Data_2D<Float> data = new Data_2D<Float>(
+						(Float[][]) dat2.getData(), "FLOAT", datasetName);
+				long[] dims = data.getDimensions();
+				createDataset(datasetPath, "Float", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
+			}
+			else if(type.equalsIgnoreCase("Integer"))
+			{
+				Data_2D<Integer> data = new Data_2D<Integer>((Integer[][]) dat2
+						.getData(), "INTEGER", datasetName);
+				long[] dims = data.getDimensions();
+				createDataset(datasetPath, "Integer", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_INTEGER");
+			}
+			else if(type.equalsIgnoreCase("Double"))
+			{
+				Data_2D<Double> data = new Data_2D<Double>((Double[][]) dat2
+						.getData(), "DOUBLE", datasetName);
+				long[] dims = data.getDimensions();
+				createDataset(datasetPath, "Double", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_DOUBLE");
+			}
+			else if(type.equalsIgnoreCase("Byte"))
+			{
+				Data_2D<Byte> data = new Data_2D<Byte>((Byte[][]) dat2.getData(),
+						"BYTE", datasetName);
+				long[] dims = data.getDimensions();
+				createDataset(datasetPath, "Byte", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeMatrix(datasetPath, data, 0, 1, new long[] { 0, 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
+			}
+	 else if (type.equalsIgnoreCase("String")) {
+				String[][] arr = (String[][]) dat2.getData();
+				// Currently 2D String Matricies not supported
+				// #==> convert to 1D
+				String[] arr1 = new String[arr.length];
+				for (int i = 0; i < arr.length; i++)
+					arr1[i] = arr[i][0];
+
+				writeDataset(h5FilePath, datasetPath, arr1);
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SCHAR");
+			}
 		}
 	}
 	
@@ -1904,64 +2526,67 @@ public class H5IO<T> {
 	 * */
 	public void writeDataset(String h5FilePath, String path, String datasetName,
 			 Data_1D dat1) throws H5IO_Exception {
+		synchronized (H5.class) {
 
-		//Creating the parent groups of this dataset if they dont already exist
-		createAllParentGroups(h5FilePath, path);
+			//Creating the parent groups of this dataset if they dont already exist
+			createAllParentGroups(h5FilePath, path);
 		
-		String datasetPath = path;
-		//check for and remove prior dataset for overwrite
-		if(existsDataset(datasetPath))
-			removeDataset(datasetPath);
+			String datasetPath = path;
+			//check for and remove prior dataset for overwrite
+			if(existsDataset(datasetPath))
+				removeDataset(datasetPath);
 		
-		String type = dat1.getDataType();
-		if(type.equalsIgnoreCase("Float"))
-		{
-			long[] dims = dat1.getDimensions();
-			createDataset(datasetPath, "Float", dims);
-			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-			writeArray(datasetPath, dat1, 0, new long[] { 0 });
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
-		}
-		else if(type.equalsIgnoreCase("Integer"))
-		{
-			long[] dims = dat1.getDimensions();
-			createDataset(datasetPath, "Integer", dims);
-			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-			writeArray(datasetPath, dat1, 0, new long[] { 0 });
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_INTEGER");
-		}
-		else if(type.equalsIgnoreCase("Double"))
-		{
-			long[] dims = dat1.getDimensions();
-			createDataset(datasetPath, "Double", dims);
-			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-			writeArray(datasetPath, dat1, 0, new long[] { 0 });
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_DOUBLE");
-		}
-		else if(type.equalsIgnoreCase("Byte"))
-		{
-			long[] dims = dat1.getDimensions();
-			createDataset(datasetPath, "Byte", dims);
-			// Parameter: datasetName, Data_2D, dim0, dim1, offsets
-			writeArray(datasetPath, dat1, 0, new long[] { 0 });
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
-		}
- else if (type.equalsIgnoreCase("String")) {
-			String[] arr = (String[]) dat1.getData();
-			writeDataset(h5FilePath, datasetPath, arr);
-			// Add dataset type attributes:
-			writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SCHAR");
-		}
+			String type = dat1.getDataType();
+			if(type.equalsIgnoreCase("Float"))
+			{
+				long[] dims = dat1.getDimensions();
+				createDataset(datasetPath, "Float", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeArray(datasetPath, dat1, 0, new long[] { 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_FLOAT");
+			}
+			else if(type.equalsIgnoreCase("Integer"))
+			{
+				long[] dims = dat1.getDimensions();
+				createDataset(datasetPath, "Integer", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeArray(datasetPath, dat1, 0, new long[] { 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_INTEGER");
+			}
+			else if(type.equalsIgnoreCase("Double"))
+			{
+				long[] dims = dat1.getDimensions();
+				createDataset(datasetPath, "Double", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeArray(datasetPath, dat1, 0, new long[] { 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_DOUBLE");
+			}
+			else if(type.equalsIgnoreCase("Byte"))
+			{
+				long[] dims = dat1.getDimensions();
+				createDataset(datasetPath, "Byte", dims);
+				// Parameter: datasetName, Data_2D, dim0, dim1, offsets
+				writeArray(datasetPath, dat1, 0, new long[] { 0 });
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_BYTE");
+			}
+	 else if (type.equalsIgnoreCase("String")) {
+				String[] arr = (String[]) dat1.getData();
+				writeDataset(h5FilePath, datasetPath, arr);
+				// Add dataset type attributes:
+				writeAttribute(datasetPath, "dataType", "H5T_NATIVE_SCHAR");
+			}
 
+		}
 	}
 	
 	
 	/**
-	 * Closes the dataset, memSpace, Filetype and memType with a single method
+	 * Closes the HDF5 file. Datasets, spaces and types are closed by the
+	 * operation that opened them, so the file is all that is left open.
 	 * 
 	 * @author Bjorn Millard
 	 * @param null
@@ -1969,17 +2594,9 @@ public class H5IO<T> {
 	 * */
 public void closeAll() throws H5IO_Exception
 {
-		// End access to the dataset set and release resources used by it.
-	closeDataset();
-	// Terminate access to the memory space.
-	closeMemSpace();
-	// Terminate access to the file type.
-	closeFileType();
-	// Terminate access to the memory type.
-	closeMemType();
-		// close file
-		closeFileSpace();
-		closeHDF5();
+		synchronized (H5.class) {
+			closeHDF5();
+		}
 }
 
 	/**
@@ -1992,25 +2609,27 @@ public void closeAll() throws H5IO_Exception
 	 * */
 	public Data_1D readArr(String h5FilePath, String datasetPath)
 			throws H5IO_Exception {
-		// Open the HDF5 file
-		if (existsDataset(datasetPath)) {
-			long[] dims = getDimensions(datasetPath);
-			int dimIndex = 0;
-			if (dims != null && dims.length > 0)
-				for (int i = 0; i < dims.length; i++)
-					if (dims[i] != 1) {
-						dimIndex = i;
-						break;
-					}
-
-			// Parameter: datasetName, dim0, dim1, offsets, count0, count1
-			Data_1D mat = (Data_1D) readArray(datasetPath, 0,
- 0,
- dims[dimIndex]);
-
-			return mat;
+		synchronized (H5.class) {
+			// Open the HDF5 file
+			if (existsDataset(datasetPath)) {
+				long[] dims = getDimensions(datasetPath);
+				int dimIndex = 0;
+				if (dims != null && dims.length > 0)
+					for (int i = 0; i < dims.length; i++)
+						if (dims[i] != 1) {
+							dimIndex = i;
+							break;
+						}
+
+				// Parameter: datasetName, dim0, dim1, offsets, count0, count1
+				Data_1D mat = (Data_1D) readArray(datasetPath, 0,
+	 0,
+	 dims[dimIndex]);
+
+				return mat;
+			}
+			return null;
 		}
-		return null;
 	}
 
 	/**
@@ -2023,56 +2642,51 @@ public void closeAll() throws H5IO_Exception
 	 * */
 	public DataObject readDataset(String h5FilePath, String datasetPath)
 			throws H5IO_Exception {
-		if (existsDataset(datasetPath)) {
-			long[] dims = getDimensions(datasetPath);
-			String type = getDataType(datasetPath);
-
-			DataObject mat = null;
-			if (dims.length == 2 && (dims[0] != 1 || dims[1] != 1))
-			{
-				try {
-					mat = readMatrix(h5FilePath, datasetPath,
-							new long[] { 0, 0 }, dims);
-					return mat;
-				} catch (Exception e) {
-					System.err
-							.println("**ERROR reading matrix: " + datasetPath);
-					e.printStackTrace();
-				}
-
-
-			} else if (dims.length == 1
-					|| (dims.length == 2 && (dims[0] == 1 || dims[1] == 1))) {
-				if (!type.equalsIgnoreCase("String")) { // data array
-				// System.out.println("Reading data array");
-
-					try {
-						mat = readArr(h5FilePath, datasetPath);
-						return mat;
-					} catch (Exception e) {
-						System.err.println("**ERROR reading matrix: "
-								+ datasetPath);
-						e.printStackTrace();
-					}
-
-				} else // String dataset
-				{
-					// System.out.println("Reading string array");
-
-					String dsName = getDatasetName(datasetPath);
-					StringBuffer[] stb = readDataset_String(h5FilePath,
-							datasetPath);
-					String[][] data = new String[stb.length][1];
-					for (int r = 0; r < stb.length; r++)
-						data[r][0] = stb[r].toString();
-					mat = new Data_2D<String>(data, Data_2D.STRING, dsName);
-
-					return mat;
+		synchronized (H5.class) {
+			// Opening the dataset once and probing its dimensions and type from
+			// the same handle
+			int did = -1;
+			try {
+				did = track(H5.H5Dopen(file_id, datasetPath));
+			}
+			// Dataset does not exist
+			catch (Exception e) {
+				return null;
+			}
+			try {
+				return readDataObject(getDatasetName(datasetPath),
+						H5IO_DatasetInfo.probe(did));
+			} catch (Exception e) {
+				System.err.println("**ERROR reading dataset: " + datasetPath);
+				e.printStackTrace();
+			} finally {
+				closeDataset(did);
+			}
+			return null;
+		}
+	}
 
-				}
+	/**
+	 * Reads many datasets of the opened HDF5 file at once: they are all
+	 * opened and probed in one pass, then read through one pooled buffer per
+	 * element type. See H5IO_Session.readDatasets.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            hdf5FilePath, String[] pathsToDatasetsWithHDF5root
+	 * @return DataObject[] DataObjectsRead, null where a dataset is missing
+	 * @throws H5IO_Exception
+	 * */
+	public DataObject[] readDatasets(String h5FilePath, String[] datasetPaths)
+			throws H5IO_Exception {
+		synchronized (H5.class) {
+			H5IO_Session session = new H5IO_Session(this, h5FilePath);
+			try {
+				return session.readDatasets(datasetPaths);
+			} finally {
+				session.close();
 			}
-		 }
-		return null;
+		}
 	}
 
 
@@ -2088,7 +2702,11 @@ public void closeAll() throws H5IO_Exception
 		byte[] b = new byte[(int) file.length()];
 		try {
 			FileInputStream fileInputStream = new FileInputStream(file);
-			fileInputStream.read(b);
+			try {
+				new DataInputStream(fileInputStream).readFully(b);
+			} finally {
+				fileInputStream.close();
+			}
 		} catch (FileNotFoundException e) {
 			System.out.println("File Not Found.");
 			e.printStackTrace();
@@ -2138,71 +2756,203 @@ public void closeAll() throws H5IO_Exception
 	public void writeFileToHDF5(String fileToCopy, String hdfFilePath,
 			String datasetPath) throws IOException, H5IO_Exception,
 			NullPointerException, IllegalArgumentException, HDF5Exception {
+		synchronized (H5.class) {
+			File file = new File(fileToCopy);
+			FileInputStream in = new FileInputStream(file);
+			try {
+				writeChannelToHDF5(in.getChannel(), hdfFilePath, datasetPath,
+						file.length());
+			} finally {
+				in.close();
+			}
+		}
+	}
 
-		//Creating parent groups if not exist
-		createAllParentGroups(hdfFilePath, datasetPath);
-		
-		// 2^20 element buffer
-		int BUFF_SIZE = 1048576;
-		long timeStart = System.currentTimeMillis();
-		byte[] buffer = new byte[BUFF_SIZE];
-		// long[] count = { BUFF_SIZE };
-		InputStream in = null;
+	/**
+	 * Streams everything the given channel delivers into a 1D byte dataset,
+	 * replacing any prior dataset of that path. The dataset is chunked and
+	 * extendable, compressed if the dataset options ask for deflate, and is
+	 * written FILE_BUFFER_SIZE bytes at a time through one reused buffer, so
+	 * files of any size stream through without being held in memory. The
+	 * expected size, or -1 if unknown, only sets the initial extent. Returns
+	 * the number of bytes written.
+	 * 
+	 * @author Bjorn Millard
+	 * @param ReadableByteChannel
+	 *            in, String DestinationHDF5FilePath, String
+	 *            intraHDF5fileDestinationPath, long expectedSize
+	 * @return long bytesWritten
+	 * @throws H5IO_Exception
+	 * @throws HDF5Exception
+	 */
+	public long writeChannelToHDF5(ReadableByteChannel in, String hdfFilePath,
+			String datasetPath, long size) throws IOException,
+			H5IO_Exception, HDF5Exception {
+		synchronized (H5.class) {
+			long initial = size < 0 ? 0 : size;
+			long written = 0;
+			int did = -1;
+			int space = -1;
+			int dcpl = -1;
+
+			// Open our destination file, unless already opened
+			boolean opened = file_id < 0;
+			if (opened)
+				openHDF5(hdfFilePath);
+			try {
+				//Creating parent groups if not exist
+				createAllParentGroups(hdfFilePath, datasetPath);
+				//Unlinking old dataset
+				removeDataset(datasetPath);
+
+				// Chunked and extendable, so appendFileToHDF5 can later patch its
+				// tail
+				space = track(H5.H5Screate_simple(1, new long[] { initial },
+						new long[] { HDF5Constants.H5S_UNLIMITED }));
+				dcpl = track(H5.H5Pcreate(HDF5Constants.H5P_DATASET_CREATE));
+				H5.H5Pset_chunk(dcpl, 1, new long[] { FILE_CHUNK_SIZE });
+				if (datasetOptions != null)
+					datasetOptions.setFilters(dcpl);
+				did = track(H5.H5Dcreate(file_id, datasetPath,
+						HDF5Constants.H5T_NATIVE_CHAR, space, dcpl));
+				written = writeChannel(did, in, 0, initial);
+			} finally {
+				if (space >= 0) {
+					H5.H5Sclose(space);
+					H5IO_HandleRegistry.closed(space);
+				}
+				if (dcpl >= 0) {
+					H5.H5Pclose(dcpl);
+					H5IO_HandleRegistry.closed(dcpl);
+				}
+				closeDataset(did);
+				if (opened)
+					closeHDF5();
+			}
+			return written;
+		}
+	}
+
+	/**
+	 * Writes what the channel delivers into the given 1D byte dataset from
+	 * the given position on, extending the dataset beyond its current length
+	 * as needed. Returns the position after the last byte written.
+	 */
+	private long writeChannel(int did, ReadableByteChannel in, long pos,
+			long length) throws IOException, HDF5Exception {
+		long t = H5IO_Metrics.start();
+		long from = pos;
+		byte[] buffer = new byte[FILE_BUFFER_SIZE];
+		ByteBuffer bb = ByteBuffer.wrap(buffer);
+		int mspace = track(H5.H5Screate_simple(1, new long[] { buffer.length },
+				null));
+		int fspace = -1;
 		try {
-			File file = new File(fileToCopy);
-			int fileSize = (int) file.length();
-			// Open our source file
-			in = new FileInputStream(file);
-			// Open our destination file
-			openHDF5(hdfFilePath);
-			// Create a destination HDF5 dataset of size len file
-			long[] dims = { fileSize };
-
-			//Unlinking old dataset
-			removeDataset(datasetPath);
-			// Get the dimensions of the multidimensional set
-			memspace_id = H5.H5Screate_simple(1, new long[] { fileSize }, null);
-			dataspace_id = H5.H5Screate_simple(1, dims, null);
-			/* Create the dataset. */
-			dataset_id = H5.H5Dcreate(file_id, datasetPath,
-					HDF5Constants.H5T_NATIVE_CHAR, memspace_id,
-					HDF5Constants.H5P_DEFAULT);
-			// Get the file space
-			filespace_id = H5.H5Dget_space(dataset_id);
-
-			// offset is how much we have read so far
-			long[] offset = new long[] { 0 };
-			// count is the buffer size each time
-			long[] count = new long[] { 0 };
-			int h5pos = 0;
-			while (true) {
-				synchronized (buffer) {
-					int amountRead = in.read(buffer);
-					if (amountRead == -1) {
+			boolean eof = false;
+			while (!eof) {
+				// Filling the whole buffer, so writes stay chunk aligned
+				bb.clear();
+				while (bb.hasRemaining())
+					if (in.read(bb) < 0) {
+						eof = true;
 						break;
 					}
-					// Define hyperslab in the dataset.
-					offset[0] = h5pos;
-					count[0] = amountRead;
-
-					// Select hyperslab.
-				    H5.H5Sselect_hyperslab (filespace_id, HDF5Constants.H5S_SELECT_SET, offset, null,
-				    					   	count, null);
-				    // Define memory space
-					long[] count1D = new long[] { amountRead };
-				    memspace_id = H5.H5Screate_simple (1, count1D, null);
-					// Write the dataset from hyperslab to file.
-				    H5.H5Dwrite (dataset_id, HDF5Constants.H5T_NATIVE_CHAR, memspace_id, filespace_id,
-				                 HDF5Constants.H5P_DEFAULT, buffer);
-
-					h5pos += amountRead;
+				int amount = bb.position();
+				if (amount == 0)
+					break;
+
+				if (pos + amount > length) {
+					length = pos + amount;
+					H5.H5Dextend(did, new long[] { length });
+					if (fspace >= 0) {
+						H5.H5Sclose(fspace);
+						H5IO_HandleRegistry.closed(fspace);
+					}
+					fspace = -1;
 				}
+				if (fspace < 0)
+					fspace = track(H5.H5Dget_space(did));
+				H5.H5Sselect_hyperslab(fspace, HDF5Constants.H5S_SELECT_SET,
+						new long[] { pos }, null, new long[] { amount }, null);
+				H5.H5Sselect_hyperslab(mspace, HDF5Constants.H5S_SELECT_SET,
+						new long[] { 0 }, null, new long[] { amount }, null);
+				H5.H5Dwrite(did, HDF5Constants.H5T_NATIVE_CHAR, mspace, fspace,
+						HDF5Constants.H5P_DEFAULT, buffer);
+				pos += amount;
 			}
 		} finally {
+			if (fspace >= 0) {
+				H5.H5Sclose(fspace);
+				H5IO_HandleRegistry.closed(fspace);
+			}
+			H5.H5Sclose(mspace);
+			H5IO_HandleRegistry.closed(mspace);
+		}
+		H5IO_Metrics.stop(H5IO_Metrics.WRITE, t, pos - from);
+		return pos;
+	}
 
+	/**
+	 * Updates a file previously copied into the HDF5 file with
+	 * writeFileToHDF5 whose first fromOffset bytes are unchanged: the dataset
+	 * is extended to the new file length and only the bytes from fromOffset
+	 * on are written. Falls back to writeFileToHDF5 if the dataset does not
+	 * exist, is not extendable, or the file got shorter.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            SourceFilePathToCopy, String DestinationHDF5FilePath, String
+	 *            intraHDF5fileDestinationPath, long fromOffset
+	 * @throws H5IO_Exception
+	 * @throws HDF5Exception
+	 */
+	public void appendFileToHDF5(String fileToCopy, String hdfFilePath,
+			String datasetPath, long fromOffset) throws IOException,
+			H5IO_Exception, HDF5Exception {
+		synchronized (H5.class) {
+			File file = new File(fileToCopy);
+			long fileSize = file.length();
+			boolean patched = false;
+			int did = -1;
+			int dcpl = -1;
+			RandomAccessFile in = null;
+
+			boolean opened = file_id < 0;
+			if (opened)
+				openHDF5(hdfFilePath);
+			try {
+				try {
+					did = track(H5.H5Dopen(file_id, datasetPath));
+					dcpl = track(H5.H5Dget_create_plist(did));
+					long[] dims = H5IO_DatasetInfo.probe(did).getDimensions();
+					if (H5.H5Pget_layout(dcpl) == HDF5Constants.H5D_CHUNKED
+							&& dims.length == 1 && fromOffset <= dims[0]
+							&& dims[0] <= fileSize) {
+						in = new RandomAccessFile(file, "r");
+						in.seek(fromOffset);
+						writeChannel(did, in.getChannel(), fromOffset, dims[0]);
+						patched = true;
+					}
+				} catch (HDF5LibraryException ex) {
+					// Dataset does not exist yet
+					logger.log(Level.CONFIG, "Cannot patch " + datasetPath, ex);
+				} finally {
+					if (in != null)
+						in.close();
+					if (dcpl >= 0) {
+						H5.H5Pclose(dcpl);
+						H5IO_HandleRegistry.closed(dcpl);
+					}
+					closeDataset(did);
+				}
 
+				if (!patched)
+					writeFileToHDF5(fileToCopy, hdfFilePath, datasetPath);
+			} finally {
+				if (opened)
+					closeHDF5();
+			}
 		}
-
 	}
 
 	/**
@@ -2221,96 +2971,330 @@ public void closeAll() throws H5IO_Exception
 	public void readFileFromHDF5(String hdfFilePath, String datasetPathInHDF5,
 			String destinationFilePath) throws IOException, H5IO_Exception,
 			NullPointerException, IllegalArgumentException, HDF5Exception {
+		synchronized (H5.class) {
+			FileOutputStream out = new FileOutputStream(destinationFilePath);
+			try {
+				// Timed and counted by readChannelFromHDF5 in H5IO_Metrics
+				readChannelFromHDF5(hdfFilePath, datasetPathInHDF5,
+						out.getChannel());
+			} finally {
+				out.close();
+			}
+		}
+	}
 
-		// Open the file and the dataset.
-		long timeStart = System.currentTimeMillis();
-		OutputStream out = null;
+	/**
+	 * Streams the 1D byte dataset, as written by writeChannelToHDF5, into the
+	 * given channel FILE_BUFFER_SIZE bytes at a time through one reused
+	 * buffer. Returns the number of bytes read.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            SourceHDF5filePath, String datasetPathInHDF5containingFile,
+	 *            WritableByteChannel out
+	 * @return long bytesRead
+	 * @throws H5IO_Exception
+	 * @throws HDF5Exception
+	 */
+	public long readChannelFromHDF5(String hdfFilePath, String datasetPath,
+			WritableByteChannel out) throws IOException, H5IO_Exception,
+			HDF5Exception {
+		synchronized (H5.class) {
+			long pos = 0;
+			int did = -1;
+			int fspace = -1;
+			int mspace = -1;
+
+			boolean opened = file_id < 0;
+			if (opened)
+				openHDF5(hdfFilePath);
+			try {
+				long t = H5IO_Metrics.start();
+				did = track(H5.H5Dopen(file_id, datasetPath));
+				fspace = track(H5.H5Dget_space(did));
+				long[] dims = new long[1];
+				H5.H5Sget_simple_extent_dims(fspace, dims, null);
+				long length = dims[0];
+
+				byte[] buffer = new byte[(int) Math.max(1,
+						Math.min(FILE_BUFFER_SIZE, length))];
+				ByteBuffer bb = ByteBuffer.wrap(buffer);
+				mspace = track(H5.H5Screate_simple(1, new long[] { buffer.length },
+						null));
+				// Read/write small buffer snippets of this file so dont have to
+				// load it all into RAM at once
+				while (pos < length) {
+					int amount = (int) Math.min(buffer.length, length - pos);
+					H5.H5Sselect_hyperslab(fspace, HDF5Constants.H5S_SELECT_SET,
+							new long[] { pos }, null, new long[] { amount }, null);
+					H5.H5Sselect_hyperslab(mspace, HDF5Constants.H5S_SELECT_SET,
+							new long[] { 0 }, null, new long[] { amount }, null);
+					H5.H5Dread(did, HDF5Constants.H5T_NATIVE_CHAR, mspace, fspace,
+							HDF5Constants.H5P_DEFAULT, buffer);
+					bb.clear();
+					bb.limit(amount);
+					while (bb.hasRemaining())
+						out.write(bb);
+					pos += amount;
+				}
+				H5IO_Metrics.stop(H5IO_Metrics.READ, t, pos);
+			} finally {
+				if (mspace >= 0) {
+					H5.H5Sclose(mspace);
+					H5IO_HandleRegistry.closed(mspace);
+				}
+				if (fspace >= 0) {
+					H5.H5Sclose(fspace);
+					H5IO_HandleRegistry.closed(fspace);
+				}
+				closeDataset(did);
+				if (opened)
+					closeHDF5();
+			}
+			return pos;
+		}
+	}
+
+	/**
+	 * Stores the given file as a content addressed blob and links it at the
+	 * given path: the file is streamed into a staging dataset while the same
+	 * bytes are hashed, then moved to RAW_BLOB_GROUP/&lt;SHA-1&gt;, or dropped
+	 * if a blob with that content already exists, and linkPath is made a hard
+	 * link to the blob. A failed copy never leaves a dataset under a content
+	 * hash. Returns the hex SHA-1.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            SourceFilePathToCopy, String DestinationHDF5FilePath, String
+	 *            intraHDF5fileLinkPath
+	 * @return String sha1
+	 * @throws H5IO_Exception
+	 * @throws HDF5Exception
+	 */
+	public String writeRawFileToHDF5(String fileToCopy, String hdfFilePath,
+			String linkPath) throws IOException, H5IO_Exception,
+			HDF5Exception {
+		synchronized (H5.class) {
+			File file = new File(fileToCopy);
+			FileInputStream in = new FileInputStream(file);
+			try {
+				return writeRawChannel(in.getChannel(), hdfFilePath, linkPath,
+						file.length(), null);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Stores the given bytes as a content addressed blob linked at the given
+	 * path, like writeRawFileToHDF5. As the bytes are hashed up front, they
+	 * are only written if no blob with that content exists yet. Returns the
+	 * hex SHA-1.
+	 * 
+	 * @author Bjorn Millard
+	 * @param byte[] data, String DestinationHDF5FilePath, String
+	 *        intraHDF5fileLinkPath
+	 * @return String sha1
+	 * @throws H5IO_Exception
+	 * @throws HDF5Exception
+	 */
+	public String writeRawBytesToHDF5(byte[] data, String hdfFilePath,
+			String linkPath) throws IOException, H5IO_Exception,
+			HDF5Exception {
+		MessageDigest md = createSHA1();
+		md.update(data);
+		String sha = toHex(md.digest());
+		synchronized (H5.class) {
+			return writeRawChannel(Channels.newChannel(new ByteArrayInputStream(
+					data)), hdfFilePath, linkPath, data.length, sha);
+		}
+	}
+
+	/**
+	 * Streams the channel into RAW_BLOB_STAGING, hashing the bytes as they
+	 * are written, moves the staged dataset to its blob path, or drops it if
+	 * that blob exists, and links linkPath to the blob. If sha is already
+	 * known and its blob exists, nothing is written. The staged dataset is
+	 * removed if anything fails.
+	 */
+	private String writeRawChannel(ReadableByteChannel in, String hdfFilePath,
+			String linkPath, long size, String sha) throws IOException,
+			H5IO_Exception, HDF5Exception {
+		boolean opened = file_id < 0;
+		if (opened)
+			openHDF5(hdfFilePath);
+		boolean staged = false;
 		try {
-			File file = new File(destinationFilePath);
-			out = new FileOutputStream(file);
-
-		// 2^20 element buffer
-			int BUFF_SIZE = 1048576;
-		long[] dims_out = { BUFF_SIZE };
-		    openHDF5(hdfFilePath);
-			 dataset_id = H5.H5Dopen(file_id, datasetPathInHDF5);
-
-		dataspace_id = H5.H5Dget_space(dataset_id); /* dataspace handle */
-			int rank = H5.H5Sget_simple_extent_ndims(dataspace_id);
-			int status = H5.H5Sget_simple_extent_dims(dataspace_id, dims_out,
-					null);
-
-		int arrSize = (int)dims_out[0];
-		int h5Pos = 0;
-		int amountRead = (int) dims_out[0];
-
-			// Read/write small buffer snippets of this file so dont have to
-			// load it all into RAM at once
-		while (h5Pos < arrSize) {
-		    /* 
-		     * Define hyperslab in the dataset. 
-		     */
-
-		long[] offset = new long[] { h5Pos };
-		long[] count = new long[] { amountRead };
-		status = H5.H5Sselect_hyperslab(dataspace_id,
-				HDF5Constants.H5S_SELECT_SET, offset, null, count, null);
-
-		    /*
-		     * Define the memory dataspace.
-		     */
-
-		// The total byte[] length
-			long arrayLength = dims_out[0];
-		long[] dimsm = new long[] { arrayLength };
-		int RANK_OUT = 1;
-		memspace_id = H5.H5Screate_simple(RANK_OUT, dimsm, null);
-
-		    /* 
-		     * Define memory hyperslab. 
-		     */
-		long[] offset_out = new long[] { h5Pos };
-		long[] count_out = new long[] { amountRead };
-		status = H5
-				.H5Sselect_hyperslab(memspace_id, HDF5Constants.H5S_SELECT_SET,
-						offset_out, null, count_out, null);
-
-		    /*
-		     * Read data from hyperslab in the file into the hyperslab in 
-		     * memory and display.
-		     */
-			byte[] data_out = new byte[amountRead];
-			status = H5.H5Dread(dataset_id, H5.H5Dget_type(dataset_id),
-					memspace_id, dataspace_id, HDF5Constants.H5P_DEFAULT,
-					data_out);
-
-		// Writing byteArray to file
-			out.write(data_out);
-			
-			
-				// Updating data position counters
-			 amountRead = arrSize - h5Pos;
-			 h5Pos += amountRead;
-				// amountReadArr[0] = amountRead;
-				// posArr[0] = h5Pos;
-		}
-			
-			
+			if (sha == null || !existsDataset(RAW_BLOB_GROUP + "/" + sha)) {
+				MessageDigest md = createSHA1();
+				staged = true;
+				writeChannelToHDF5(new DigestChannel(in, md), hdfFilePath,
+						RAW_BLOB_STAGING, size);
+				sha = toHex(md.digest());
+				if (existsDataset(RAW_BLOB_GROUP + "/" + sha))
+					removeDataset(RAW_BLOB_STAGING);
+				else
+					move(hdfFilePath, RAW_BLOB_STAGING, RAW_BLOB_GROUP + "/"
+							+ sha);
+				staged = false;
+			}
+			linkHard(hdfFilePath, RAW_BLOB_GROUP + "/" + sha, linkPath);
+			return sha;
 		} finally {
+			if (staged)
+				removeDataset(RAW_BLOB_STAGING);
+			if (opened)
+				closeHDF5();
+		}
+	}
+
+	/**
+	 * Passes on what it reads from another channel, updating a digest with
+	 * every byte on the way
+	 */
+	static private class DigestChannel implements ReadableByteChannel {
+		private ReadableByteChannel in;
+		private MessageDigest md;
+
+		DigestChannel(ReadableByteChannel in, MessageDigest md) {
+			this.in = in;
+			this.md = md;
+		}
+
+		public int read(ByteBuffer dst) throws IOException {
+			int from = dst.position();
+			int n = in.read(dst);
+			if (n > 0) {
+				ByteBuffer read = dst.duplicate();
+				read.flip();
+				read.position(from);
+				md.update(read);
+			}
+			return n;
+		}
+
+		public boolean isOpen() {
+			return in.isOpen();
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * Makes linkPath a hard link to the object at targetPath, replacing any
+	 * prior link of that path
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            hdf5FilePath, String targetPath, String linkPath
+	 * @throws H5IO_Exception
+	 */
+	public void linkHard(String hdfFilePath, String targetPath,
+			String linkPath) throws H5IO_Exception {
+		synchronized (H5.class) {
+			createAllParentGroups(hdfFilePath, linkPath);
+			removeDataset(linkPath);
 			try {
-				if (out != null) {
-					out.flush();
-					out.close();
-				}
+				H5.H5Glink(file_id, HDF5Constants.H5G_LINK_HARD, targetPath,
+						linkPath);
+			} catch (HDF5LibraryException ex) {
+				logger.log(Level.SEVERE, "Cannot link " + linkPath, ex);
+				throw new H5IO_Exception("Cannot link '" + linkPath + "' to '"
+						+ targetPath + "': " + ex.getMessage());
+			}
+		}
+	}
 
-				System.out.println("Time to Read: "
-						+ (System.currentTimeMillis() - timeStart));
+	/**
+	 * Moves the group or dataset at srcPath to dstPath, replacing any prior
+	 * link of that path. The move only changes links, so a group written
+	 * elsewhere appears at dstPath complete and at once.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            hdf5FilePath, String srcPath, String dstPath
+	 * @throws H5IO_Exception
+	 */
+	public void move(String hdfFilePath, String srcPath, String dstPath)
+			throws H5IO_Exception {
+		synchronized (H5.class) {
+			createAllParentGroups(hdfFilePath, dstPath);
+			removeDataset(dstPath);
+			try {
+				H5.H5Gmove(file_id, srcPath, dstPath);
+			} catch (HDF5LibraryException ex) {
+				logger.log(Level.SEVERE, "Cannot move " + srcPath, ex);
+				throw new H5IO_Exception("Cannot move '" + srcPath + "' to '"
+						+ dstPath + "': " + ex.getMessage());
+			}
+		}
+	}
 
-			} catch (Exception ex) {
-				ex.printStackTrace();
+	/**
+	 * Writes everything HDF5 still caches for the opened file to disc, so
+	 * that other processes opening the file see it
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 */
+	public void flushHDF5() throws H5IO_Exception {
+		synchronized (H5.class) {
+			try {
+				if (file_id >= 0 && !readOnly)
+					H5.H5Fflush(file_id, HDF5Constants.H5F_SCOPE_LOCAL);
+			} catch (HDF5LibraryException ex) {
+				logger.log(Level.SEVERE, "Not able to flush the file", ex);
+				throw new H5IO_Exception("Not able to flush the file: "
+						+ ex.getMessage());
 			}
+		}
+	}
+
+	/**
+	 * Returns the hex SHA-1 of the given file, read in FILE_BUFFER_SIZE
+	 * pieces
+	 * 
+	 * @author Bjorn Millard
+	 * @param File
+	 *            file
+	 * @return String sha1
+	 */
+	static public String sha1(File file) throws IOException {
+		MessageDigest md = createSHA1();
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel ch = in.getChannel();
+			ByteBuffer bb = ByteBuffer.allocate(FILE_BUFFER_SIZE);
+			while (ch.read(bb) >= 0) {
+				bb.flip();
+				md.update(bb);
+				bb.clear();
+			}
+		} finally {
+			in.close();
+		}
+		return toHex(md.digest());
+	}
+
+	static private MessageDigest createSHA1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to provide SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
 
+	static private String toHex(byte[] bytes) {
+		StringBuffer st = new StringBuffer(bytes.length * 2);
+		for (int i = 0; i < bytes.length; i++) {
+			st.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+			st.append(Character.forDigit(bytes[i] & 0xF, 16));
 		}
+		return st.toString();
 	}
 
 	/**
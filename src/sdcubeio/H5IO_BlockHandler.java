@@ -0,0 +1,38 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+/**
+ * Callback for H5IO_BlockReader.read, called once per block of rows
+ */
+public interface H5IO_BlockHandler {
+
+	/**
+	 * Processes the next block of rows. The block and its buffer are reused
+	 * for the following call.
+	 * 
+	 * @param H5IO_MatrixBlock
+	 *            block
+	 * @return boolean true to continue reading, false to stop
+	 */
+	public boolean processBlock(H5IO_MatrixBlock block);
+}
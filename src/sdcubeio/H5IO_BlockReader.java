@@ -0,0 +1,313 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ncsa.hdf.hdf5lib.H5;
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5Exception;
+import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
+
+/**
+ * Streams a 2D numeric dataset in blocks of rows so that matrices larger
+ * than the heap can be processed. Each block is selected as a hyperslab of
+ * the dataset and read straight into one primitive buffer of blockRows x
+ * numCols values that is reused for every block. 1D datasets are streamed
+ * as a single column. Use either the iterator or the read() callback:
+ * 
+ * <pre>
+ * H5IO_BlockReader reader = new H5IO_BlockReader(session, path, 4096);
+ * try {
+ * 	while (reader.hasNext()) {
+ * 		H5IO_MatrixBlock block = reader.next();
+ * 		...
+ * 	}
+ * } finally {
+ * 	reader.close();
+ * }
+ * </pre>
+ */
+public class H5IO_BlockReader implements Iterator<H5IO_MatrixBlock> {
+
+	private static final Logger logger = Logger.getLogger("hdf.HDFConnector");
+
+	private String datasetPath;
+	private int dataset_id = -1;
+	private int filespace_id = -1;
+	private int memspace_id = -1;
+	/** Number of rows the current memory space was created for */
+	private int memspaceRows = -1;
+	private H5IO_DatasetInfo info;
+	private long numRows;
+	private int numCols;
+	private int blockRows;
+	private long nextRow;
+	private H5IO_MatrixBlock block;
+
+	/**
+	 * Opens the given dataset of the session's file for reading in blocks of
+	 * at most blockRows rows
+	 * 
+	 * @param H5IO_Session
+	 *            session, String datasetPath, int blockRows
+	 * @throws H5IO_Exception
+	 */
+	public H5IO_BlockReader(H5IO_Session session, String datasetPath,
+			int blockRows) throws H5IO_Exception {
+		this.datasetPath = datasetPath;
+		try {
+			dataset_id = H5IO_HandleRegistry.opened(this, H5.H5Dopen(session.getH5F_ID(), datasetPath));
+			info = H5IO_DatasetInfo.probe(dataset_id);
+			long[] dims = info.getDimensions();
+			if (dims.length != 1 && dims.length != 2)
+				throw new H5IO_Exception("Cannot stream '" + datasetPath
+						+ "': rank " + dims.length);
+			numRows = dims[0];
+			numCols = dims.length == 2 ? (int) dims[1] : 1;
+			if (numRows < blockRows)
+				blockRows = (int) Math.max(numRows, 1);
+			if (blockRows < 1 || (long) blockRows * numCols > Integer.MAX_VALUE)
+				throw new H5IO_Exception("Cannot stream '" + datasetPath
+						+ "': invalid block of " + blockRows + " rows");
+			this.blockRows = blockRows;
+
+			String type = info.getDataType();
+			int len = blockRows * numCols;
+			Object buffer = null;
+			if (type.equals("Float"))
+				buffer = new float[len];
+			else if (type.equals("Double"))
+				buffer = new double[len];
+			else if (type.equals("Integer"))
+				buffer = new int[len];
+			else if (type.equals("Short"))
+				buffer = new short[len];
+			else if (type.equals("Byte"))
+				buffer = new byte[len];
+			else
+				throw new H5IO_Exception("Cannot stream '" + datasetPath
+						+ "': unsupported type " + type);
+			block = new H5IO_MatrixBlock(
+					H5IO_Session.getDatasetName(datasetPath), type, numCols,
+					buffer);
+
+			filespace_id = H5IO_HandleRegistry.opened(this, H5.H5Dget_space(dataset_id));
+		} catch (HDF5Exception ex) {
+			close();
+			logger.log(Level.SEVERE, "Cannot open " + datasetPath, ex);
+			throw new H5IO_Exception("Cannot open '" + datasetPath + "': "
+					+ ex.getMessage());
+		} catch (H5IO_Exception ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads the given dataset block by block, handing each block to the
+	 * handler until the dataset is exhausted or the handler returns false
+	 * 
+	 * @param H5IO_Session
+	 *            session, String datasetPath, int blockRows,
+	 *            H5IO_BlockHandler handler
+	 * @return long numberOfRowsRead
+	 * @throws H5IO_Exception
+	 */
+	static public long read(H5IO_Session session, String datasetPath,
+			int blockRows, H5IO_BlockHandler handler) throws H5IO_Exception {
+		H5IO_BlockReader reader = new H5IO_BlockReader(session, datasetPath,
+				blockRows);
+		long rows = 0;
+		try {
+			H5IO_MatrixBlock block;
+			while ((block = reader.readNext()) != null) {
+				rows += block.getNumRows();
+				if (!handler.processBlock(block))
+					break;
+			}
+		} finally {
+			reader.close();
+		}
+		return rows;
+	}
+
+	/**
+	 * Opens the given HDF5 file, reads the given dataset block by block into
+	 * the handler and closes the file again
+	 * 
+	 * @param String
+	 *            h5Path, String datasetPath, int blockRows,
+	 *            H5IO_BlockHandler handler
+	 * @return long numberOfRowsRead
+	 * @throws H5IO_Exception
+	 */
+	static public long read(String h5Path, String datasetPath, int blockRows,
+			H5IO_BlockHandler handler) throws H5IO_Exception {
+		H5IO_Session session = new H5IO_Session(h5Path);
+		try {
+			return read(session, datasetPath, blockRows, handler);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Reads the next block of rows, returns null when the dataset is
+	 * exhausted. The returned block is reused by the following call.
+	 * 
+	 * @return H5IO_MatrixBlock block
+	 * @throws H5IO_Exception
+	 */
+	public H5IO_MatrixBlock readNext() throws H5IO_Exception {
+		if (nextRow >= numRows || dataset_id < 0)
+			return null;
+		int rows = (int) Math.min(blockRows, numRows - nextRow);
+		long t = H5IO_Metrics.start();
+		try {
+			if (rows != memspaceRows) {
+				if (memspace_id >= 0) {
+					H5.H5Sclose(memspace_id);
+					H5IO_HandleRegistry.closed(memspace_id);
+				}
+				memspace_id = -1;
+				memspace_id = H5IO_HandleRegistry.opened(this, H5.H5Screate_simple(1,
+						new long[] { (long) rows * numCols }, null));
+				memspaceRows = rows;
+			}
+			if (info.getDimensions().length == 2)
+				H5.H5Sselect_hyperslab(filespace_id,
+						HDF5Constants.H5S_SELECT_SET, new long[] { nextRow, 0 },
+						null, new long[] { rows, numCols }, null);
+			else
+				H5.H5Sselect_hyperslab(filespace_id,
+						HDF5Constants.H5S_SELECT_SET, new long[] { nextRow },
+						null, new long[] { rows }, null);
+
+			int type = info.getHDFType();
+			int xfer = HDF5Constants.H5P_DEFAULT;
+			String dataType = block.getDataType();
+			if (dataType.equals("Float"))
+				H5.H5Dread_float(dataset_id, type, memspace_id, filespace_id,
+						xfer, block.getFloats());
+			else if (dataType.equals("Double"))
+				H5.H5Dread_double(dataset_id, type, memspace_id,
+						filespace_id, xfer, block.getDoubles());
+			else if (dataType.equals("Integer"))
+				H5.H5Dread_int(dataset_id, type, memspace_id, filespace_id,
+						xfer, block.getInts());
+			else if (dataType.equals("Short"))
+				H5.H5Dread_short(dataset_id, type, memspace_id, filespace_id,
+						xfer, block.getShorts());
+			else
+				H5.H5Dread(dataset_id, type, memspace_id, filespace_id, xfer,
+						block.getBytes());
+		} catch (HDF5Exception ex) {
+			logger.log(Level.SEVERE, "Cannot read " + datasetPath, ex);
+			throw new H5IO_Exception("Cannot read '" + datasetPath
+					+ "' at row " + nextRow + ": " + ex.getMessage());
+		}
+		H5IO_Metrics.stop(H5IO_Metrics.READ, t, (long) rows * numCols
+				* info.getTypeSize());
+		block.setRows(nextRow, rows);
+		nextRow += rows;
+		return block;
+	}
+
+	/**
+	 * Returns the number of rows of the dataset
+	 * 
+	 * @return long numRows
+	 */
+	public long getNumRows() {
+		return numRows;
+	}
+
+	/**
+	 * Returns the number of columns of the dataset
+	 * 
+	 * @return int numCols
+	 */
+	public int getNumCols() {
+		return numCols;
+	}
+
+	public boolean hasNext() {
+		return dataset_id >= 0 && nextRow < numRows;
+	}
+
+	/**
+	 * Returns the next block of rows. Read errors are rethrown as
+	 * IllegalStateException, use readNext() to get them as H5IO_Exception.
+	 */
+	public H5IO_MatrixBlock next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		try {
+			return readNext();
+		} catch (H5IO_Exception e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Releases the dataset and dataspace handles of this reader
+	 */
+	public void close() {
+		if (memspace_id >= 0) {
+			try {
+				H5.H5Sclose(memspace_id);
+			} catch (HDF5LibraryException e) {
+				logger.log(Level.WARNING, "Cannot close memory space of "
+						+ datasetPath, e);
+			}
+			H5IO_HandleRegistry.closed(memspace_id);
+		}
+		if (filespace_id >= 0) {
+			try {
+				H5.H5Sclose(filespace_id);
+			} catch (HDF5LibraryException e) {
+				logger.log(Level.WARNING, "Cannot close file space of "
+						+ datasetPath, e);
+			}
+			H5IO_HandleRegistry.closed(filespace_id);
+		}
+		if (dataset_id >= 0) {
+			try {
+				H5.H5Dclose(dataset_id);
+			} catch (HDF5LibraryException e) {
+				logger.log(Level.WARNING, "Cannot close " + datasetPath, e);
+			}
+			H5IO_HandleRegistry.closed(dataset_id);
+		}
+		memspace_id = -1;
+		filespace_id = -1;
+		dataset_id = -1;
+	}
+}
@@ -0,0 +1,156 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import ncsa.hdf.hdf5lib.H5;
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
+
+/**
+ * The dataspace and datatype metadata of an opened HDF5 dataset, probed once
+ * so that the dimensions and type do not have to be re-read for every call.
+ */
+class H5IO_DatasetInfo {
+
+	/** The HDF5 dataset identifier this metadata belongs to */
+	private int dataset_id;
+	/** Dimensions of the dataspace */
+	private long[] dims;
+	/** H5T class of the file datatype (H5T_FLOAT, H5T_INTEGER, H5T_STRING) */
+	private int typeClass;
+	/** Size in bytes of one element of the file datatype */
+	private int typeSize;
+
+	H5IO_DatasetInfo(int dataset_id, long[] dims, int typeClass, int typeSize) {
+		this.dataset_id = dataset_id;
+		this.dims = dims;
+		this.typeClass = typeClass;
+		this.typeSize = typeSize;
+	}
+
+	/**
+	 * Probes the dataspace and datatype of the given opened dataset. The
+	 * temporary space and type handles are closed before returning.
+	 * 
+	 * @param int dataset_id
+	 * @return H5IO_DatasetInfo
+	 * @throws HDF5LibraryException
+	 */
+	static H5IO_DatasetInfo probe(int dataset_id) throws HDF5LibraryException {
+		int space_id = -1;
+		int type_id = -1;
+		try {
+			space_id = H5IO_HandleRegistry.opened(null, H5.H5Dget_space(dataset_id));
+			int rank = H5.H5Sget_simple_extent_ndims(space_id);
+			long[] dims = new long[rank];
+			H5.H5Sget_simple_extent_dims(space_id, dims, null);
+			type_id = H5IO_HandleRegistry.opened(null, H5.H5Dget_type(dataset_id));
+			return new H5IO_DatasetInfo(dataset_id, dims,
+					H5.H5Tget_class(type_id), H5.H5Tget_size(type_id));
+		} finally {
+			if (type_id >= 0) {
+				H5.H5Tclose(type_id);
+				H5IO_HandleRegistry.closed(type_id);
+			}
+			if (space_id >= 0) {
+				H5.H5Sclose(space_id);
+				H5IO_HandleRegistry.closed(space_id);
+			}
+		}
+	}
+
+	int getDatasetID() {
+		return dataset_id;
+	}
+
+	long[] getDimensions() {
+		return dims;
+	}
+
+	int getTypeClass() {
+		return typeClass;
+	}
+
+	int getTypeSize() {
+		return typeSize;
+	}
+
+	/**
+	 * Returns the total number of elements in the dataspace
+	 * 
+	 * @return long numElements
+	 */
+	long getNumElements() {
+		long num = 1;
+		for (int i = 0; i < dims.length; i++)
+			num *= dims[i];
+		return num;
+	}
+
+	/**
+	 * Returns the native HDF5 memory type matching the file datatype
+	 * 
+	 * @return int HDF5dataType
+	 */
+	int getHDFType() {
+		String type = getDataType();
+		if (type.equals("Float"))
+			return HDF5Constants.H5T_NATIVE_FLOAT;
+		else if (type.equals("Double"))
+			return HDF5Constants.H5T_NATIVE_DOUBLE;
+		else if (type.equals("Byte"))
+			return HDF5Constants.H5T_NATIVE_CHAR;
+		else if (type.equals("Short"))
+			return HDF5Constants.H5T_NATIVE_SHORT;
+		else if (type.equals("Integer"))
+			return HDF5Constants.H5T_NATIVE_INT;
+		else if (type.equals("String"))
+			return HDF5Constants.H5T_NATIVE_SCHAR;
+		return -1;
+	}
+
+	/**
+	 * Get the java data type of the dataset. **NOTE: possible outputs are:
+	 * "Float", "Double", "Byte", "Short", "Integer" or "String"
+	 * 
+	 * @return String DataTypeName
+	 */
+	String getDataType() {
+		if (typeClass == HDF5Constants.H5T_FLOAT) {
+			if (typeSize == 4)
+				return "Float";
+			else if (typeSize == 8)
+				return "Double";
+		} else if (typeClass == HDF5Constants.H5T_INTEGER) {
+			if (typeSize == 1)
+				return "Byte";
+			else if (typeSize == 2)
+				return "Short";
+			else if (typeSize == 4)
+				return "Integer";
+			else if (typeSize == 3)
+				return "String";
+		} else if (typeClass == HDF5Constants.H5T_STRING)
+			return "String";
+		return "no suggestion";
+	}
+}
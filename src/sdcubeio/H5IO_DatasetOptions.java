@@ -0,0 +1,259 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ncsa.hdf.hdf5lib.H5;
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5Exception;
+
+/**
+ * Dataset creation options used by H5IO.createDataset and so by every
+ * writeDataset overload: chunk shape, deflate (gzip) level, byte shuffle
+ * and fill value. The default options create contiguous, uncompressed
+ * datasets as before. With auto chunking the chunk shape is derived from
+ * the shape of each dataset, keeping whole rows together and aiming at
+ * chunks of about TARGET_CHUNK_BYTES. Compression requires chunking, so
+ * setting a deflate level or shuffle without a chunk shape turns on auto
+ * chunking.
+ */
+public class H5IO_DatasetOptions {
+
+	private static final Logger logger = Logger.getLogger("hdf.HDFConnector");
+
+	/** Approximate size in bytes aimed at by the auto chunking heuristic */
+	static public int TARGET_CHUNK_BYTES = 256 * 1024;
+
+	/** Whether the deflate filter is available, null until first checked */
+	static private Boolean deflateAvailable;
+
+	private long[] chunk;
+	private boolean autoChunk;
+	private int deflateLevel;
+	private boolean shuffle;
+	private Number fillValue;
+
+	/**
+	 * Creates options for contiguous, uncompressed datasets
+	 */
+	public H5IO_DatasetOptions() {
+	}
+
+	/**
+	 * Returns options for auto chunked datasets compressed with byte shuffle
+	 * and the given deflate level (1-9)
+	 * 
+	 * @param int deflateLevel
+	 * @return H5IO_DatasetOptions
+	 */
+	static public H5IO_DatasetOptions compressed(int deflateLevel) {
+		H5IO_DatasetOptions opts = new H5IO_DatasetOptions();
+		opts.setAutoChunk(true);
+		opts.setShuffle(true);
+		opts.setDeflateLevel(deflateLevel);
+		return opts;
+	}
+
+	/**
+	 * Sets a fixed chunk shape, clipped to the dimensions of each dataset.
+	 * Null returns to contiguous or auto chunked datasets.
+	 * 
+	 * @param long[] chunk
+	 */
+	public void setChunk(long[] chunk) {
+		this.chunk = chunk;
+	}
+
+	public long[] getChunk() {
+		return chunk;
+	}
+
+	/**
+	 * Sets whether the chunk shape is derived from each dataset's shape when
+	 * no fixed chunk shape is set
+	 * 
+	 * @param boolean autoChunk
+	 */
+	public void setAutoChunk(boolean autoChunk) {
+		this.autoChunk = autoChunk;
+	}
+
+	public boolean isAutoChunk() {
+		return autoChunk;
+	}
+
+	/**
+	 * Sets the deflate level from 1 (fastest) to 9 (smallest), 0 turns
+	 * compression off
+	 * 
+	 * @param int deflateLevel
+	 */
+	public void setDeflateLevel(int deflateLevel) {
+		this.deflateLevel = Math.max(0, Math.min(9, deflateLevel));
+	}
+
+	public int getDeflateLevel() {
+		return deflateLevel;
+	}
+
+	/**
+	 * Sets whether the byte shuffle filter is applied before compression,
+	 * which helps for slowly varying numeric data
+	 * 
+	 * @param boolean shuffle
+	 */
+	public void setShuffle(boolean shuffle) {
+		this.shuffle = shuffle;
+	}
+
+	public boolean isShuffle() {
+		return shuffle;
+	}
+
+	/**
+	 * Sets the value of elements that are never written, null for the HDF5
+	 * default of zero. Not applied to String datasets.
+	 * 
+	 * @param Number fillValue
+	 */
+	public void setFillValue(Number fillValue) {
+		this.fillValue = fillValue;
+	}
+
+	public Number getFillValue() {
+		return fillValue;
+	}
+
+	/**
+	 * Returns true if datasets created with these options are chunked
+	 * 
+	 * @return boolean
+	 */
+	public boolean isChunked() {
+		return chunk != null || autoChunk || deflateLevel > 0 || shuffle;
+	}
+
+	/**
+	 * Returns the chunk shape for a dataset of the given dimensions and
+	 * element size, or null if it should be contiguous
+	 * 
+	 * @param long[] dims, int typeSize
+	 * @return long[] chunk
+	 */
+	public long[] getChunkDims(long[] dims, int typeSize) {
+		if (!isChunked() || dims == null || dims.length == 0)
+			return null;
+		for (int i = 0; i < dims.length; i++)
+			if (dims[i] < 1)
+				return null;
+
+		long[] out = new long[dims.length];
+		if (chunk != null && chunk.length == dims.length) {
+			for (int i = 0; i < dims.length; i++)
+				out[i] = Math.max(1, Math.min(chunk[i], dims[i]));
+			return out;
+		}
+
+		// Keeping the trailing dimensions (whole rows) together as long as
+		// they fit the target, then stacking as many rows as fit
+		long budget = Math.max(1, TARGET_CHUNK_BYTES / Math.max(1, typeSize));
+		for (int i = dims.length - 1; i >= 0; i--) {
+			out[i] = Math.max(1, Math.min(dims[i], budget));
+			budget = Math.max(1, budget / out[i]);
+		}
+		return out;
+	}
+
+	/**
+	 * Creates the dataset creation property list for a dataset of the given
+	 * dimensions and native type. Returns H5P_DEFAULT for contiguous
+	 * datasets, otherwise a new property list the caller must close.
+	 * 
+	 * @param long[] dims, int hdfType, int typeSize, boolean isString
+	 * @return int dcpl_id
+	 * @throws HDF5Exception
+	 */
+	int createPropertyList(long[] dims, int hdfType, int typeSize,
+			boolean isString) throws HDF5Exception {
+		long[] chunkDims = getChunkDims(dims, typeSize);
+		if (chunkDims == null && (isString || fillValue == null))
+			return HDF5Constants.H5P_DEFAULT;
+
+		int dcpl = H5.H5Pcreate(HDF5Constants.H5P_DATASET_CREATE);
+		try {
+			if (chunkDims != null) {
+				H5.H5Pset_chunk(dcpl, chunkDims.length, chunkDims);
+				setFilters(dcpl);
+			}
+			if (!isString && fillValue != null)
+				H5.H5Pset_fill_value(dcpl, hdfType, toFillArray(hdfType));
+		} catch (HDF5Exception ex) {
+			H5.H5Pclose(dcpl);
+			throw ex;
+		}
+		return dcpl;
+	}
+
+	/**
+	 * Adds the shuffle and deflate filters of these options to the given
+	 * chunked dataset creation property list
+	 * 
+	 * @param int dcpl_id
+	 * @throws HDF5Exception
+	 */
+	void setFilters(int dcpl) throws HDF5Exception {
+		if (shuffle)
+			H5.H5Pset_shuffle(dcpl);
+		if (deflateLevel > 0 && isDeflateAvailable())
+			H5.H5Pset_deflate(dcpl, deflateLevel);
+	}
+
+	private Object toFillArray(int hdfType) {
+		if (hdfType == HDF5Constants.H5T_NATIVE_FLOAT)
+			return new float[] { fillValue.floatValue() };
+		else if (hdfType == HDF5Constants.H5T_NATIVE_DOUBLE)
+			return new double[] { fillValue.doubleValue() };
+		else if (hdfType == HDF5Constants.H5T_NATIVE_SHORT)
+			return new short[] { fillValue.shortValue() };
+		else if (hdfType == HDF5Constants.H5T_NATIVE_CHAR)
+			return new byte[] { fillValue.byteValue() };
+		return new int[] { fillValue.intValue() };
+	}
+
+	static private synchronized boolean isDeflateAvailable() {
+		if (deflateAvailable == null) {
+			boolean avail = false;
+			try {
+				avail = H5.H5Zfilter_avail(HDF5Constants.H5Z_FILTER_DEFLATE) > 0;
+			} catch (HDF5Exception e) {
+				avail = false;
+			}
+			if (!avail)
+				logger.log(Level.WARNING,
+						"Deflate filter not available, writing uncompressed");
+			deflateAvailable = Boolean.valueOf(avail);
+		}
+		return deflateAvailable.booleanValue();
+	}
+}
@@ -0,0 +1,280 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ncsa.hdf.hdf5lib.H5;
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
+
+/**
+ * Process-wide registry of the native HDF5 identifiers opened by H5IO,
+ * H5IO_Session and H5IO_BlockReader. While tracking is on, every identifier
+ * is recorded with the object that owns it and the stack that opened it, and
+ * forgotten again when it is closed. When an H5IO or session closes its
+ * file, whatever it still owns has leaked: it is logged with its stack and
+ * closed. In fail-fast mode the close then throws an H5IO_Exception, so a
+ * leak breaks the test or debug run that caused it instead of slowly
+ * growing the native memory of a long running service. report() lists every
+ * identifier currently open.
+ * 
+ * Tracking captures a stack per identifier and is meant for debugging; while
+ * it is off, which is the default, registering costs one volatile read.
+ */
+public class H5IO_HandleRegistry {
+
+	private static final Logger logger = Logger.getLogger("hdf.HDFConnector");
+
+	static private HashMap<Integer, H5IO_HandleRegistry> TheHandles = new HashMap<Integer, H5IO_HandleRegistry>();
+	static private volatile boolean tracking;
+	static private volatile boolean failFast;
+
+	/** The identifier, the object that opened it and where it did so */
+	private int id;
+	private Object owner;
+	private Throwable openedAt;
+
+	private H5IO_HandleRegistry(int id, Object owner, Throwable openedAt) {
+		this.id = id;
+		this.owner = owner;
+		this.openedAt = openedAt;
+	}
+
+	/**
+	 * Turns tracking of opened identifiers on or off. Identifiers opened
+	 * while tracking was off are never reported.
+	 * 
+	 * @param boolean tracking
+	 */
+	static public void setTracking(boolean tracking) {
+		H5IO_HandleRegistry.tracking = tracking;
+		if (!tracking) {
+			failFast = false;
+			synchronized (TheHandles) {
+				TheHandles.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns true if opened identifiers are being tracked
+	 * 
+	 * @return boolean tracking
+	 */
+	static public boolean isTracking() {
+		return tracking;
+	}
+
+	/**
+	 * Turns the fail-fast debug mode on or off. In fail-fast mode closing an
+	 * H5IO or session that leaked identifiers throws an H5IO_Exception once
+	 * the leaked identifiers are closed. Turning it on also turns on
+	 * tracking.
+	 * 
+	 * @param boolean failFast
+	 */
+	static public void setFailFast(boolean failFast) {
+		if (failFast)
+			tracking = true;
+		H5IO_HandleRegistry.failFast = failFast;
+	}
+
+	/**
+	 * Returns true if leaks throw an H5IO_Exception
+	 * 
+	 * @return boolean failFast
+	 */
+	static public boolean isFailFast() {
+		return failFast;
+	}
+
+	/**
+	 * Records the given identifier as opened by the given owner, which may
+	 * be null for identifiers that are not bound to an H5IO or session.
+	 * Returns the identifier, so an open call can be wrapped in place.
+	 * 
+	 * @param Object
+	 *            owner, int id
+	 * @return int id
+	 */
+	static int opened(Object owner, int id) {
+		if (!tracking || id < 0 || id == HDF5Constants.H5P_DEFAULT)
+			return id;
+		H5IO_HandleRegistry handle = new H5IO_HandleRegistry(id, owner,
+				new Throwable("HDF5 identifier " + id + " opened here"));
+		synchronized (TheHandles) {
+			TheHandles.put(Integer.valueOf(id), handle);
+		}
+		return id;
+	}
+
+	/**
+	 * Forgets the given identifier after it was closed
+	 * 
+	 * @param int id
+	 */
+	static void closed(int id) {
+		if (!tracking || id < 0)
+			return;
+		synchronized (TheHandles) {
+			TheHandles.remove(Integer.valueOf(id));
+		}
+	}
+
+	/**
+	 * Logs and closes every identifier the given owner still holds. Called
+	 * when the owner closes its file, so anything left has leaked. Returns
+	 * the number of leaked identifiers.
+	 * 
+	 * @param Object
+	 *            owner
+	 * @return int numLeaked
+	 * @throws H5IO_Exception
+	 *             in fail-fast mode, if identifiers leaked
+	 */
+	static int checkLeaks(Object owner) throws H5IO_Exception {
+		if (!tracking)
+			return 0;
+		ArrayList<H5IO_HandleRegistry> leaked = new ArrayList<H5IO_HandleRegistry>();
+		synchronized (TheHandles) {
+			Iterator<H5IO_HandleRegistry> it = TheHandles.values().iterator();
+			while (it.hasNext()) {
+				H5IO_HandleRegistry handle = it.next();
+				if (handle.owner == owner) {
+					leaked.add(handle);
+					it.remove();
+				}
+			}
+		}
+		int num = leaked.size();
+		String first = null;
+		for (int i = 0; i < num; i++) {
+			H5IO_HandleRegistry handle = leaked.get(i);
+			String name = handle.getKind() + " " + handle.id;
+			if (first == null)
+				first = name;
+			logger.log(Level.WARNING, "Closing leaked HDF5 " + name,
+					handle.openedAt);
+			handle.close();
+		}
+		if (num > 0 && failFast) {
+			H5IO_Exception ex = new H5IO_Exception(num
+					+ " HDF5 identifiers leaked by " + owner + ", the first, "
+					+ first + ", was opened at the cause");
+			ex.initCause(leaked.get(0).openedAt);
+			throw ex;
+		}
+		return num;
+	}
+
+	/**
+	 * Returns the number of tracked identifiers currently open
+	 * 
+	 * @return int numOpen
+	 */
+	static public int getNumOpen() {
+		synchronized (TheHandles) {
+			return TheHandles.size();
+		}
+	}
+
+	/**
+	 * Lists every tracked identifier currently open, with its kind, owner
+	 * and the stack that opened it
+	 * 
+	 * @return String report
+	 */
+	static public String report() {
+		ArrayList<H5IO_HandleRegistry> handles;
+		synchronized (TheHandles) {
+			handles = new ArrayList<H5IO_HandleRegistry>(TheHandles.values());
+		}
+		StringBuffer buf = new StringBuffer();
+		buf.append(handles.size()).append(" HDF5 identifiers open\n");
+		for (int i = 0; i < handles.size(); i++)
+			buf.append(handles.get(i).describe()).append('\n');
+		return buf.toString();
+	}
+
+	/** Kind, owner and opening stack of this identifier */
+	private String describe() {
+		StringWriter out = new StringWriter();
+		out.write(getKind() + " " + id + " owned by " + owner + ", ");
+		openedAt.printStackTrace(new PrintWriter(out));
+		return out.toString();
+	}
+
+	/** Returns the HDF5 kind of this identifier, "closed" if not valid */
+	private String getKind() {
+		int type;
+		try {
+			type = H5.H5Iget_type(id);
+		} catch (HDF5LibraryException e) {
+			return "closed";
+		}
+		if (type == HDF5Constants.H5I_FILE)
+			return "file";
+		else if (type == HDF5Constants.H5I_GROUP)
+			return "group";
+		else if (type == HDF5Constants.H5I_DATASET)
+			return "dataset";
+		else if (type == HDF5Constants.H5I_DATASPACE)
+			return "dataspace";
+		else if (type == HDF5Constants.H5I_DATATYPE)
+			return "datatype";
+		else if (type == HDF5Constants.H5I_ATTR)
+			return "attribute";
+		else if (type == HDF5Constants.H5I_GENPROP_LST)
+			return "property list";
+		return "closed";
+	}
+
+	/** Closes this identifier with the close call of its kind */
+	private void close() {
+		try {
+			int type = H5.H5Iget_type(id);
+			if (type == HDF5Constants.H5I_FILE)
+				H5.H5Fclose(id);
+			else if (type == HDF5Constants.H5I_GROUP)
+				H5.H5Gclose(id);
+			else if (type == HDF5Constants.H5I_DATASET)
+				H5.H5Dclose(id);
+			else if (type == HDF5Constants.H5I_DATASPACE)
+				H5.H5Sclose(id);
+			else if (type == HDF5Constants.H5I_DATATYPE)
+				H5.H5Tclose(id);
+			else if (type == HDF5Constants.H5I_ATTR)
+				H5.H5Aclose(id);
+			else if (type == HDF5Constants.H5I_GENPROP_LST)
+				H5.H5Pclose(id);
+		} catch (HDF5LibraryException e) {
+			logger.log(Level.WARNING, "Cannot close HDF5 identifier " + id, e);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+/**
+ * A block of consecutive rows of a 2D numeric dataset as read by the
+ * H5IO_BlockReader. The values are held row-major in a single primitive
+ * array of the dataset's type, which is reused from block to block, so a
+ * block is only valid until the next one is read; copy out anything that
+ * must be kept.
+ */
+public class H5IO_MatrixBlock {
+
+	private String name;
+	private String dataType;
+	private long startRow;
+	private int numRows;
+	private int numCols;
+	/** One of float[], double[], int[], short[] or byte[] */
+	private Object buffer;
+
+	H5IO_MatrixBlock(String name, String dataType, int numCols, Object buffer) {
+		this.name = name;
+		this.dataType = dataType;
+		this.numCols = numCols;
+		this.buffer = buffer;
+	}
+
+	void setRows(long startRow, int numRows) {
+		this.startRow = startRow;
+		this.numRows = numRows;
+	}
+
+	/**
+	 * Returns the name of the dataset this block was read from
+	 * 
+	 * @return String name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the java data type of the values. **NOTE: possible outputs are:
+	 * "Float", "Double", "Byte", "Short" or "Integer"
+	 * 
+	 * @return String dataType
+	 */
+	public String getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * Returns the index within the dataset of the first row of this block
+	 * 
+	 * @return long startRow
+	 */
+	public long getStartRow() {
+		return startRow;
+	}
+
+	/**
+	 * Returns the number of valid rows in this block. The last block of a
+	 * dataset may hold fewer rows than the buffer has room for.
+	 * 
+	 * @return int numRows
+	 */
+	public int getNumRows() {
+		return numRows;
+	}
+
+	/**
+	 * Returns the number of columns of each row
+	 * 
+	 * @return int numCols
+	 */
+	public int getNumCols() {
+		return numCols;
+	}
+
+	/**
+	 * Returns the row-major float buffer of a "Float" block
+	 * 
+	 * @return float[] buffer
+	 */
+	public float[] getFloats() {
+		return (float[]) buffer;
+	}
+
+	/**
+	 * Returns the row-major double buffer of a "Double" block
+	 * 
+	 * @return double[] buffer
+	 */
+	public double[] getDoubles() {
+		return (double[]) buffer;
+	}
+
+	/**
+	 * Returns the row-major int buffer of an "Integer" block
+	 * 
+	 * @return int[] buffer
+	 */
+	public int[] getInts() {
+		return (int[]) buffer;
+	}
+
+	/**
+	 * Returns the row-major short buffer of a "Short" block
+	 * 
+	 * @return short[] buffer
+	 */
+	public short[] getShorts() {
+		return (short[]) buffer;
+	}
+
+	/**
+	 * Returns the row-major byte buffer of a "Byte" block
+	 * 
+	 * @return byte[] buffer
+	 */
+	public byte[] getBytes() {
+		return (byte[]) buffer;
+	}
+
+	/**
+	 * Returns the value at the given row (relative to this block) and column
+	 * as a double, whatever the data type
+	 * 
+	 * @param int row, int col
+	 * @return double value
+	 */
+	public double getValue(int row, int col) {
+		int ind = row * numCols + col;
+		if (buffer instanceof float[])
+			return ((float[]) buffer)[ind];
+		else if (buffer instanceof double[])
+			return ((double[]) buffer)[ind];
+		else if (buffer instanceof int[])
+			return ((int[]) buffer)[ind];
+		else if (buffer instanceof short[])
+			return ((short[]) buffer)[ind];
+		return ((byte[]) buffer)[ind];
+	}
+}
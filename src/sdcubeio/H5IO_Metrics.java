@@ -0,0 +1,177 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+/**
+ * Pluggable metrics for the hot paths of H5IO, H5IO_Session, SDCube and
+ * ExpDesign_IO: per operation counts, latencies and bytes moved, and the
+ * number of HDF5 file and cached session handles currently open. Nothing is
+ * measured until a sink is set with setSink, for example an
+ * H5IO_MetricsRegistry to scrape; while disabled, start() and the handle
+ * calls cost a single volatile read and stop() returns right away.
+ * 
+ * Usage: long t = H5IO_Metrics.start(); ... H5IO_Metrics.stop(
+ * H5IO_Metrics.READ, t, bytes);
+ */
+public class H5IO_Metrics {
+
+	static public final String OPEN = "open";
+	static public final String EXISTS = "exists";
+	static public final String DIMENSIONS = "getDimensions";
+	static public final String READ = "read";
+	static public final String WRITE = "write";
+	static public final String XML_PARSE = "xmlParse";
+	static public final String XML_WRITE = "xmlWrite";
+	static public final String CUBE_LOAD = "cubeLoad";
+	static public final String CUBE_WRITE = "cubeWrite";
+
+	/** The default sink, which drops everything */
+	static public final H5IO_MetricsSink NONE = new H5IO_MetricsSink() {
+		public void record(String operation, long nanos, long bytes) {
+		}
+
+		public void addOpenHandles(int delta) {
+		}
+	};
+
+	static private volatile H5IO_MetricsSink sink = NONE;
+	static private volatile boolean enabled;
+
+	/**
+	 * Sends all further measurements to the given sink, or disables metrics
+	 * if it is null or NONE. Handles opened before the sink was set are not
+	 * counted, so its open handle gauge may go below zero when they close.
+	 * 
+	 * @param H5IO_MetricsSink
+	 *            sink
+	 */
+	static public void setSink(H5IO_MetricsSink sink) {
+		if (sink == null)
+			sink = NONE;
+		H5IO_Metrics.sink = sink;
+		enabled = sink != NONE;
+	}
+
+	/**
+	 * Returns the current sink, NONE while metrics are disabled
+	 * 
+	 * @return H5IO_MetricsSink
+	 */
+	static public H5IO_MetricsSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Returns true if a sink is set
+	 * 
+	 * @return boolean enabled
+	 */
+	static public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts timing an operation. Returns 0 while metrics are disabled,
+	 * which makes the matching stop() a no-op.
+	 * 
+	 * @return long startNanos
+	 */
+	static public long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * Records the given operation as started at the given start() time
+	 * 
+	 * @param String
+	 *            operation, long startNanos
+	 */
+	static public void stop(String operation, long start) {
+		stop(operation, start, 0L);
+	}
+
+	/**
+	 * Records the given operation as started at the given start() time and
+	 * having moved the given number of bytes
+	 * 
+	 * @param String
+	 *            operation, long startNanos, long bytes
+	 */
+	static public void stop(String operation, long start, long bytes) {
+		if (start == 0L)
+			return;
+		sink.record(operation, System.nanoTime() - start, bytes);
+	}
+
+	/**
+	 * Counts an HDF5 handle as opened
+	 */
+	static public void handleOpened() {
+		if (enabled)
+			sink.addOpenHandles(1);
+	}
+
+	/**
+	 * Counts an HDF5 handle as closed
+	 */
+	static public void handleClosed() {
+		if (enabled)
+			sink.addOpenHandles(-1);
+	}
+
+	/**
+	 * Returns the number of bytes held by the given DataObject, 0 if unknown
+	 * or if it is a LazyDataObject, whose size would have to be probed
+	 * 
+	 * @param DataObject
+	 *            data
+	 * @return long bytes
+	 */
+	static public long bytes(DataObject data) {
+		if (!enabled || data == null || data instanceof LazyDataObject)
+			return 0L;
+		long[] dims = data.getDimensions();
+		if (dims == null)
+			return 0L;
+		long num = 1;
+		for (int i = 0; i < dims.length; i++)
+			num *= dims[i];
+		return num * elementSize(data.getDataType());
+	}
+
+	/**
+	 * Returns the size in bytes of one element of the given java data type
+	 */
+	static private int elementSize(String type) {
+		if (type == null)
+			return 0;
+		if (type.equalsIgnoreCase("Double"))
+			return 8;
+		if (type.equalsIgnoreCase("Float") || type.equalsIgnoreCase("Integer"))
+			return 4;
+		if (type.equalsIgnoreCase("Short"))
+			return 2;
+		if (type.equalsIgnoreCase("Byte") || type.equalsIgnoreCase("String"))
+			return 1;
+		return 0;
+	}
+}
@@ -0,0 +1,264 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory H5IO_MetricsSink that keeps, per operation, the count, total and
+ * maximum latency, bytes moved and a latency histogram with power of two
+ * buckets, plus a gauge of the HDF5 handles currently open. Recording is
+ * lock free. scrape() renders everything as text in the Prometheus
+ * exposition format.
+ * 
+ * Usage: H5IO_MetricsRegistry reg = new H5IO_MetricsRegistry();
+ * H5IO_Metrics.setSink(reg); ... System.out.println(reg.scrape());
+ */
+public class H5IO_MetricsRegistry implements H5IO_MetricsSink {
+
+	/** Histogram bucket i counts latencies below 2^(i+1) nanoseconds */
+	static public final int NUM_BUCKETS = 40;
+
+	private ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<String, OperationStats>();
+	private AtomicLong openHandles = new AtomicLong();
+
+	public void record(String operation, long nanos, long bytes) {
+		getStats(operation).record(nanos, bytes);
+	}
+
+	public void addOpenHandles(int delta) {
+		openHandles.addAndGet(delta);
+	}
+
+	private OperationStats getStats(String operation) {
+		OperationStats stats = operations.get(operation);
+		if (stats == null) {
+			stats = new OperationStats();
+			OperationStats prior = operations.putIfAbsent(operation, stats);
+			if (prior != null)
+				stats = prior;
+		}
+		return stats;
+	}
+
+	/**
+	 * Returns the names of the operations recorded so far, sorted
+	 * 
+	 * @return ArrayList<String> operations
+	 */
+	public ArrayList<String> getOperations() {
+		ArrayList<String> names = new ArrayList<String>(operations.keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * Returns the number of times the given operation completed
+	 * 
+	 * @param String
+	 *            operation
+	 * @return long count
+	 */
+	public long getCount(String operation) {
+		OperationStats stats = operations.get(operation);
+		return stats == null ? 0L : stats.count.get();
+	}
+
+	/**
+	 * Returns the total number of bytes moved by the given operation
+	 * 
+	 * @param String
+	 *            operation
+	 * @return long bytes
+	 */
+	public long getBytes(String operation) {
+		OperationStats stats = operations.get(operation);
+		return stats == null ? 0L : stats.bytes.get();
+	}
+
+	/**
+	 * Returns the summed latency of the given operation in nanoseconds
+	 * 
+	 * @param String
+	 *            operation
+	 * @return long nanos
+	 */
+	public long getTotalNanos(String operation) {
+		OperationStats stats = operations.get(operation);
+		return stats == null ? 0L : stats.nanos.get();
+	}
+
+	/**
+	 * Returns the largest latency of the given operation in nanoseconds
+	 * 
+	 * @param String
+	 *            operation
+	 * @return long nanos
+	 */
+	public long getMaxNanos(String operation) {
+		OperationStats stats = operations.get(operation);
+		return stats == null ? 0L : stats.max.get();
+	}
+
+	/**
+	 * Returns a copy of the latency histogram of the given operation, where
+	 * bucket i counts the latencies below 2^(i+1) nanoseconds not counted by
+	 * a lower bucket, and the last bucket everything above
+	 * 
+	 * @param String
+	 *            operation
+	 * @return long[] histogram
+	 */
+	public long[] getHistogram(String operation) {
+		long[] out = new long[NUM_BUCKETS];
+		OperationStats stats = operations.get(operation);
+		if (stats != null)
+			for (int i = 0; i < NUM_BUCKETS; i++)
+				out[i] = stats.buckets.get(i);
+		return out;
+	}
+
+	/**
+	 * Returns an upper bound of the given latency quantile (0.5 for the
+	 * median, 0.99 for the 99th percentile) of the given operation in
+	 * nanoseconds, taken from the histogram, so it is exact to a factor of
+	 * two. Returns 0 if the operation was never recorded.
+	 * 
+	 * @param String
+	 *            operation, double quantile
+	 * @return long nanos
+	 */
+	public long getQuantileNanos(String operation, double quantile) {
+		long[] hist = getHistogram(operation);
+		long total = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			total += hist[i];
+		if (total == 0)
+			return 0L;
+		long rank = (long) Math.ceil(quantile * total);
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS - 1; i++) {
+			seen += hist[i];
+			if (seen >= rank)
+				return upperBound(i);
+		}
+		return getMaxNanos(operation);
+	}
+
+	/**
+	 * Returns the number of HDF5 handles currently open
+	 * 
+	 * @return long openHandles
+	 */
+	public long getOpenHandles() {
+		return openHandles.get();
+	}
+
+	/**
+	 * Forgets every operation recorded so far. The open handle gauge is kept
+	 * since those handles are still open.
+	 */
+	public void reset() {
+		operations.clear();
+	}
+
+	/**
+	 * Renders all metrics in the Prometheus text exposition format
+	 * 
+	 * @return String metrics
+	 */
+	public String scrape() {
+		StringBuffer buf = new StringBuffer();
+		buf.append("# TYPE sdcube_open_handles gauge\n");
+		buf.append("sdcube_open_handles ").append(getOpenHandles()).append('\n');
+		ArrayList<String> names = getOperations();
+		buf.append("# TYPE sdcube_bytes_total counter\n");
+		for (int i = 0; i < names.size(); i++) {
+			String op = names.get(i);
+			buf.append("sdcube_bytes_total{op=\"").append(op).append("\"} ")
+					.append(getBytes(op)).append('\n');
+		}
+		buf.append("# TYPE sdcube_latency_seconds histogram\n");
+		for (int i = 0; i < names.size(); i++) {
+			String op = names.get(i);
+			long[] hist = getHistogram(op);
+			long seen = 0;
+			for (int j = 0; j < NUM_BUCKETS - 1; j++) {
+				seen += hist[j];
+				if (hist[j] == 0)
+					continue;
+				buf.append("sdcube_latency_seconds_bucket{op=\"").append(op)
+						.append("\",le=\"").append(upperBound(j) / 1e9)
+						.append("\"} ").append(seen).append('\n');
+			}
+			buf.append("sdcube_latency_seconds_bucket{op=\"").append(op)
+					.append("\",le=\"+Inf\"} ").append(getCount(op)).append(
+							'\n');
+			buf.append("sdcube_latency_seconds_sum{op=\"").append(op).append(
+					"\"} ").append(getTotalNanos(op) / 1e9).append('\n');
+			buf.append("sdcube_latency_seconds_count{op=\"").append(op)
+					.append("\"} ").append(getCount(op)).append('\n');
+		}
+		return buf.toString();
+	}
+
+	public String toString() {
+		return scrape();
+	}
+
+	/** Returns the exclusive upper bound in nanoseconds of the given bucket */
+	static private long upperBound(int bucket) {
+		return 1L << (bucket + 1);
+	}
+
+	/** Returns the histogram bucket of the given latency */
+	static private int bucketOf(long nanos) {
+		if (nanos <= 1)
+			return 0;
+		int bucket = 63 - Long.numberOfLeadingZeros(nanos);
+		return bucket < NUM_BUCKETS ? bucket : NUM_BUCKETS - 1;
+	}
+
+	/** Counters of one operation */
+	static private class OperationStats {
+		private AtomicLong count = new AtomicLong();
+		private AtomicLong nanos = new AtomicLong();
+		private AtomicLong bytes = new AtomicLong();
+		private AtomicLong max = new AtomicLong();
+		private AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+		void record(long time, long moved) {
+			count.incrementAndGet();
+			nanos.addAndGet(time);
+			if (moved > 0)
+				bytes.addAndGet(moved);
+			buckets.incrementAndGet(bucketOf(time));
+			long prior = max.get();
+			while (time > prior && !max.compareAndSet(prior, time))
+				prior = max.get();
+		}
+	}
+}
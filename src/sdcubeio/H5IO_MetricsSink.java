@@ -0,0 +1,45 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+/**
+ * Receives the measurements taken by H5IO_Metrics. Implementations are
+ * called from every thread doing I/O and must be thread-safe and cheap.
+ */
+public interface H5IO_MetricsSink {
+
+	/**
+	 * Records one completed operation
+	 * 
+	 * @param String
+	 *            operation, long nanos, long bytesMoved
+	 */
+	public void record(String operation, long nanos, long bytes);
+
+	/**
+	 * Adds the given delta (+1 on open, -1 on close) to the number of HDF5
+	 * handles currently open
+	 * 
+	 * @param int delta
+	 */
+	public void addOpenHandles(int delta);
+}
@@ -0,0 +1,599 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ncsa.hdf.hdf5lib.H5;
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
+
+/**
+ * A persistent read session on a single SDCube HDF5 file. The session keeps
+ * one H5Fopen handle plus an LRU cache of open group and dataset handles
+ * (with the dataspace and datatype metadata of each dataset) until close()
+ * is called, so walking a cube opens each object once instead of re-opening
+ * it for every existence, dimension, type and read call.
+ * 
+ * The methods using the handle caches are synchronized on the session, the
+ * monitor SDCube_DataModule also holds while a parallel load reads through
+ * a shared session.
+ */
+public class H5IO_Session {
+
+	private static final Logger logger = Logger.getLogger("hdf.HDFConnector");
+
+	/** Default number of group and of dataset handles kept open */
+	static public int DEFAULT_CACHE_SIZE = 256;
+
+	/** File system path of the HDF5 file */
+	private String h5Path;
+	private volatile int file_id = -1;
+	/** True if this session opened the file and so must close it */
+	private boolean ownsFile;
+	/** True if the file was opened read-only */
+	private boolean readOnly;
+	private HandleCache<Integer> groups;
+	private HandleCache<H5IO_DatasetInfo> datasets;
+	/**
+	 * Primitive read buffers reused by readDatasets, one per element type,
+	 * grown to the largest dataset read so far
+	 */
+	private HashMap<String, Object> pool;
+
+	/**
+	 * Opens the given HDF5 file for a new session
+	 * 
+	 * @param String
+	 *            h5Path
+	 * @throws H5IO_Exception
+	 */
+	public H5IO_Session(String h5Path) throws H5IO_Exception {
+		this(h5Path, DEFAULT_CACHE_SIZE, false);
+	}
+
+	/**
+	 * Opens the given HDF5 file for a new session, read-only if readOnly is
+	 * true. See H5IO.openHDF5(String, boolean).
+	 * 
+	 * @param String
+	 *            h5Path, boolean readOnly
+	 * @throws H5IO_Exception
+	 */
+	public H5IO_Session(String h5Path, boolean readOnly) throws H5IO_Exception {
+		this(h5Path, DEFAULT_CACHE_SIZE, readOnly);
+	}
+
+	/**
+	 * Opens the given HDF5 file for a new session that keeps at most
+	 * cacheSize group handles and cacheSize dataset handles open
+	 * 
+	 * @param String
+	 *            h5Path, int cacheSize
+	 * @throws H5IO_Exception
+	 */
+	public H5IO_Session(String h5Path, int cacheSize) throws H5IO_Exception {
+		this(h5Path, cacheSize, false);
+	}
+
+	/**
+	 * Opens the given HDF5 file, read-only if readOnly is true, for a new
+	 * session that keeps at most cacheSize group handles and cacheSize
+	 * dataset handles open
+	 * 
+	 * @param String
+	 *            h5Path, int cacheSize, boolean readOnly
+	 * @throws H5IO_Exception
+	 */
+	public H5IO_Session(String h5Path, int cacheSize, boolean readOnly)
+			throws H5IO_Exception {
+		this.h5Path = h5Path;
+		this.readOnly = readOnly;
+		long t = H5IO_Metrics.start();
+		try {
+			file_id = H5IO_HandleRegistry.opened(this, H5.H5Fopen(h5Path,
+					readOnly ? HDF5Constants.H5F_ACC_RDONLY
+							: HDF5Constants.H5F_ACC_RDWR,
+					HDF5Constants.H5P_DEFAULT));
+			H5IO_Metrics.handleOpened();
+			H5IO_Metrics.stop(H5IO_Metrics.OPEN, t);
+		} catch (HDF5LibraryException ex) {
+			logger.log(Level.SEVERE, "Not able to open " + h5Path, ex);
+			throw new H5IO_Exception("Not able to open " + h5Path + ": ");
+		}
+		ownsFile = true;
+		initCaches(cacheSize);
+	}
+
+	/**
+	 * Creates a session on the file already opened by the given H5IO. The
+	 * file stays owned by the H5IO and is not closed by close().
+	 * 
+	 * @param H5IO
+	 *            openedIO
+	 */
+	public H5IO_Session(H5IO<?> io, String h5Path) {
+		this.h5Path = h5Path;
+		file_id = io.getH5F_ID();
+		readOnly = io.isReadOnly();
+		ownsFile = false;
+		initCaches(DEFAULT_CACHE_SIZE);
+	}
+
+	private void initCaches(int cacheSize) {
+		pool = new HashMap<String, Object>();
+		groups = new HandleCache<Integer>(cacheSize) {
+			private static final long serialVersionUID = 1L;
+
+			void release(Integer gid) {
+				try {
+					H5.H5Gclose(gid.intValue());
+					H5IO_HandleRegistry.closed(gid.intValue());
+					H5IO_Metrics.handleClosed();
+				} catch (HDF5LibraryException e) {
+					logger.log(Level.WARNING, "Cannot close the group", e);
+				}
+			}
+		};
+		datasets = new HandleCache<H5IO_DatasetInfo>(cacheSize) {
+			private static final long serialVersionUID = 1L;
+
+			void release(H5IO_DatasetInfo info) {
+				try {
+					H5.H5Dclose(info.getDatasetID());
+					H5IO_HandleRegistry.closed(info.getDatasetID());
+					H5IO_Metrics.handleClosed();
+				} catch (HDF5LibraryException e) {
+					logger.log(Level.WARNING, "Cannot close the dataset", e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the file system path of the HDF5 file of this session
+	 * 
+	 * @return String h5Path
+	 */
+	public String getPath() {
+		return h5Path;
+	}
+
+	/**
+	 * Returns true if the file of this session is open read-only
+	 * 
+	 * @return boolean readOnly
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Returns the HDF5 file ID held by this session
+	 * 
+	 * @return int FileID
+	 */
+	public int getH5F_ID() {
+		return file_id;
+	}
+
+	/**
+	 * Returns the cached handle of the given group, opening it on first use.
+	 * Returns -1 if the group does not exist.
+	 * 
+	 * @param String
+	 *            groupPath
+	 * @return int groupID
+	 */
+	synchronized int getGroupID(String groupPath) {
+		Integer gid = groups.get(groupPath);
+		if (gid != null)
+			return gid.intValue();
+		try {
+			int id = H5IO_HandleRegistry.opened(this, H5.H5Gopen(file_id, groupPath));
+			H5IO_Metrics.handleOpened();
+			groups.put(groupPath, Integer.valueOf(id));
+			return id;
+		}
+		// Group does not exist
+		catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the cached handle and metadata of the given dataset, opening
+	 * and probing it on first use. Returns null if the dataset does not
+	 * exist.
+	 * 
+	 * @param String
+	 *            datasetPath
+	 * @return H5IO_DatasetInfo
+	 * @throws H5IO_Exception
+	 */
+	synchronized H5IO_DatasetInfo getDatasetInfo(String datasetPath) throws H5IO_Exception {
+		H5IO_DatasetInfo info = datasets.get(datasetPath);
+		if (info != null)
+			return info;
+		int did = -1;
+		try {
+			did = H5IO_HandleRegistry.opened(this, H5.H5Dopen(file_id, datasetPath));
+		}
+		// Dataset does not exist
+		catch (Exception e) {
+			return null;
+		}
+		try {
+			info = H5IO_DatasetInfo.probe(did);
+		} catch (HDF5LibraryException ex) {
+			H5IO.closeDataset(did);
+			logger.log(Level.SEVERE, "No access " + datasetPath, ex);
+			throw new H5IO_Exception("No access to '" + datasetPath + "': "
+					+ ex.getMessage());
+		}
+		H5IO_Metrics.handleOpened();
+		datasets.put(datasetPath, info);
+		return info;
+	}
+
+	/**
+	 * Checks if the given group exists within the file of this session
+	 * 
+	 * @param String
+	 *            groupPath
+	 * @return boolean Exists?
+	 */
+	public synchronized boolean existsGroup(String groupPath) {
+		long t = H5IO_Metrics.start();
+		boolean exists = getGroupID(groupPath) >= 0;
+		H5IO_Metrics.stop(H5IO_Metrics.EXISTS, t);
+		return exists;
+	}
+
+	/**
+	 * Checks if the given dataset exists within the file of this session
+	 * 
+	 * @param String
+	 *            datasetPath
+	 * @return boolean Exists?
+	 * @throws H5IO_Exception
+	 */
+	public synchronized boolean existsDataset(String datasetPath) throws H5IO_Exception {
+		long t = H5IO_Metrics.start();
+		boolean exists = getDatasetInfo(datasetPath) != null;
+		H5IO_Metrics.stop(H5IO_Metrics.EXISTS, t);
+		return exists;
+	}
+
+	/**
+	 * Returns the number of children contained by the given group
+	 * 
+	 * @param String
+	 *            groupPath
+	 * @return int NumberOfChildren
+	 */
+	public synchronized int getGroupChildCount(String groupPath) {
+		int gid = getGroupID(groupPath);
+		if (gid < 0)
+			return 0;
+		long[] answer = new long[1];
+		try {
+			H5.H5Gget_num_objs(gid, answer);
+		} catch (HDF5LibraryException e) {
+			e.printStackTrace();
+		}
+		return (int) answer[0];
+	}
+
+	/**
+	 * Returns a String[] with the names of the children within the given
+	 * group, or null if the group is empty or does not exist
+	 * 
+	 * @param String
+	 *            groupPath
+	 * @return String[] NamesOfChildren
+	 */
+	public synchronized String[] getGroupChildNames(String groupPath) {
+		int gid = getGroupID(groupPath);
+		if (gid < 0)
+			return null;
+		long[] answer = new long[1];
+		try {
+			H5.H5Gget_num_objs(gid, answer);
+			int numC = (int) answer[0];
+			if (numC == 0)
+				return null;
+			String[] objNames = new String[numC];
+			int[] objTypes = new int[numC];
+			H5.H5Gget_obj_info_all(gid, ".", objNames, objTypes);
+			return objNames;
+		} catch (Throwable err) {
+			err.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Get the dimensions of the given dataset
+	 * 
+	 * @param String
+	 *            datasetPath
+	 * @return long[] dimensions
+	 * @throws H5IO_Exception
+	 */
+	public synchronized long[] getDimensions(String datasetPath) throws H5IO_Exception {
+		long t = H5IO_Metrics.start();
+		H5IO_DatasetInfo info = getDatasetInfo(datasetPath);
+		if (info == null)
+			throw new H5IO_Exception("No access to '" + datasetPath + "'");
+		H5IO_Metrics.stop(H5IO_Metrics.DIMENSIONS, t);
+		return info.getDimensions();
+	}
+
+	/**
+	 * Get the java data type of the given dataset. **NOTE: possible outputs
+	 * are: "Float", "Double", "Byte", "Short", "Integer" or "String"
+	 * 
+	 * @param String
+	 *            datasetPath
+	 * @return String DataTypeName
+	 * @throws H5IO_Exception
+	 */
+	public synchronized String getDataType(String datasetPath) throws H5IO_Exception {
+		H5IO_DatasetInfo info = getDatasetInfo(datasetPath);
+		if (info == null)
+			throw new H5IO_Exception("Cannot read '" + datasetPath + "'");
+		return info.getDataType();
+	}
+
+	/**
+	 * Reads the given dataset into the same DataObject shape as
+	 * H5IO.readDataset. Returns null if the dataset does not exist.
+	 * 
+	 * @param String
+	 *            datasetPath
+	 * @return DataObject DataObjectRead
+	 * @throws H5IO_Exception
+	 */
+	public synchronized DataObject readDataset(String datasetPath) throws H5IO_Exception {
+		H5IO_DatasetInfo info = getDatasetInfo(datasetPath);
+		if (info == null)
+			return null;
+		try {
+			return H5IO.readDataObject(getDatasetName(datasetPath), info);
+		} catch (Exception ex) {
+			logger.log(Level.SEVERE, "Cannot read " + datasetPath, ex);
+			throw new H5IO_Exception("Cannot read '" + datasetPath + "': "
+					+ ex.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the given datasets into the same DataObject shapes as
+	 * readDataset, in one pass: all of them are opened and probed first,
+	 * then read one after the other into a single pooled buffer per element
+	 * type, sized to the largest of them, which is only copied out when
+	 * boxing. The result is in the order of the given paths, with null for
+	 * the datasets that do not exist or are of an unsupported type. Batches
+	 * larger than the dataset handle cache are read in slices of the cache
+	 * size, so no handle is evicted between being probed and being read.
+	 * 
+	 * @param String
+	 *            [] datasetPaths
+	 * @return DataObject[] DataObjectsRead
+	 * @throws H5IO_Exception
+	 */
+	public DataObject[] readDatasets(String[] datasetPaths)
+			throws H5IO_Exception {
+		return readDatasets(datasetPaths, false);
+	}
+
+	/**
+	 * Like readDatasets(String[]), but if primitive is true the Float, Double
+	 * and Integer datasets are read straight into the array of a
+	 * PrimitiveDataObject (FloatMatrix2D, FloatArray1D, ...) and never
+	 * boxed. The other types still come back boxed.
+	 * 
+	 * @param String
+	 *            [] datasetPaths, boolean primitive
+	 * @return DataObject[] DataObjectsRead
+	 * @throws H5IO_Exception
+	 */
+	public synchronized DataObject[] readDatasets(String[] datasetPaths,
+			boolean primitive) throws H5IO_Exception {
+		int num = datasetPaths.length;
+		DataObject[] out = new DataObject[num];
+		int slice = Math.max(1, datasets.getMaxSize());
+		for (int from = 0; from < num; from += slice)
+			readDatasets(datasetPaths, from, Math.min(num, from + slice),
+					primitive, out);
+		return out;
+	}
+
+	/**
+	 * Reads the datasets from index from (inclusive) to index to (exclusive)
+	 * of the given paths into the same indices of out, see
+	 * readDatasets(String[], boolean). At most the dataset cache size of
+	 * them may be read at once.
+	 */
+	private void readDatasets(String[] datasetPaths, int from, int to,
+			boolean primitive, DataObject[] out) throws H5IO_Exception {
+		H5IO_DatasetInfo[] infos = new H5IO_DatasetInfo[to - from];
+		HashMap<String, Long> sizes = new HashMap<String, Long>();
+		for (int i = from; i < to; i++) {
+			H5IO_DatasetInfo info = getDatasetInfo(datasetPaths[i]);
+			infos[i - from] = info;
+			if (info == null)
+				continue;
+			String type = info.getDataType();
+			// Primitive objects keep their array, so it cannot be pooled
+			if (primitive && H5IO.isPrimitiveType(type))
+				continue;
+			Long size = sizes.get(type);
+			long n = info.getNumElements();
+			if (size == null || size.longValue() < n)
+				sizes.put(type, Long.valueOf(n));
+		}
+		Iterator<Map.Entry<String, Long>> it = sizes.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Long> e = it.next();
+			growPool(e.getKey(), e.getValue().longValue());
+		}
+
+		for (int i = from; i < to; i++) {
+			H5IO_DatasetInfo info = infos[i - from];
+			if (info == null)
+				continue;
+			long[] dims = info.getDimensions();
+			try {
+				String type = info.getDataType();
+				Object buf = H5IO.readBuffer(info, dims,
+						HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL, pool
+								.get(type));
+				if (buf == null)
+					continue;
+				String name = getDatasetName(datasetPaths[i]);
+				int len = (int) info.getNumElements();
+				if (primitive)
+					out[i] = H5IO.toPrimitiveObject(name, type, dims, buf, len);
+				if (out[i] == null)
+					out[i] = H5IO.toDataObject(name, type, dims, buf, len);
+			} catch (Exception ex) {
+				logger.log(Level.SEVERE, "Cannot read " + datasetPaths[i], ex);
+				throw new H5IO_Exception("Cannot read '" + datasetPaths[i]
+						+ "': " + ex.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Makes sure the pooled buffer of the given element type holds at least
+	 * the given number of values
+	 */
+	private void growPool(String type, long size) {
+		Object buf = pool.get(type);
+		if (size > Integer.MAX_VALUE
+				|| (buf != null && Array.getLength(buf) >= size))
+			return;
+		int len = (int) size;
+		if (type.equals("Float"))
+			buf = new float[len];
+		else if (type.equals("Double"))
+			buf = new double[len];
+		else if (type.equals("Byte"))
+			buf = new byte[len];
+		else if (type.equals("Short"))
+			buf = new short[len];
+		else if (type.equals("Integer"))
+			buf = new int[len];
+		else
+			return;
+		pool.put(type, buf);
+	}
+
+	/**
+	 * Closes every cached group and dataset handle and, if this session
+	 * opened it, the HDF5 file itself. Identifiers opened through this
+	 * session that are still open then have leaked and are reported and
+	 * closed by H5IO_HandleRegistry.
+	 * 
+	 * @throws H5IO_Exception
+	 */
+	public synchronized void close() throws H5IO_Exception {
+		datasets.clearAll();
+		groups.clearAll();
+		pool.clear();
+		if (ownsFile && file_id >= 0) {
+			try {
+				H5.H5Fclose(file_id);
+				H5IO_HandleRegistry.closed(file_id);
+				H5IO_Metrics.handleClosed();
+			} catch (HDF5LibraryException ex) {
+				logger.log(Level.SEVERE, "Not able to close the file", ex);
+				throw new H5IO_Exception("Not able to close the file: "
+						+ ex.getMessage());
+			}
+		}
+		file_id = -1;
+		// Whatever this session still holds has leaked
+		H5IO_HandleRegistry.checkLeaks(this);
+	}
+
+	/**
+	 * Extracts out the name of the dataset from the path
+	 * 
+	 * @param String
+	 *            datasetPath
+	 * @return String datasetName
+	 */
+	static String getDatasetName(String path) {
+		int ind = path.lastIndexOf('/');
+		if (ind < 0)
+			return path;
+		return path.substring(ind + 1);
+	}
+
+	/**
+	 * Access ordered map of open HDF5 handles that releases the least
+	 * recently used handle once more than maxSize are held
+	 */
+	static abstract class HandleCache<V> extends LinkedHashMap<String, V> {
+		private static final long serialVersionUID = 1L;
+		private int maxSize;
+
+		HandleCache(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		/** Returns the number of handles this cache keeps open */
+		int getMaxSize() {
+			return maxSize;
+		}
+
+		/** Closes the native handle held by the given cache value */
+		abstract void release(V value);
+
+		protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+			if (size() > maxSize) {
+				release(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+
+		/** Releases and removes every cached handle */
+		void clearAll() {
+			ArrayList<V> values = new ArrayList<V>(values());
+			clear();
+			for (Iterator<V> it = values.iterator(); it.hasNext();)
+				release(it.next());
+		}
+	}
+}
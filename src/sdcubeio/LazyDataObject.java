@@ -0,0 +1,244 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * Placeholder DataObject for a dataset that has not been read yet. The
+ * dataset is read from the HDF5 file the first time its data is asked for
+ * through get(), and is only held through a SoftReference afterwards, so the
+ * JVM can release it again under memory pressure (it is then simply re-read
+ * on the next get()).
+ */
+public class LazyDataObject implements DataObject {
+
+	/** File system path to the SDCube(HDF5) source file */
+	private String h5Path;
+	/** Path of the dataset within the HDF5 file */
+	private String datasetPath;
+	/** True if the HDF5 file is to be opened read-only */
+	private boolean readOnly;
+	/**
+	 * True if a numeric dataset is read as a PrimitiveDataObject, see
+	 * H5IO_Session.readDatasets(String[], boolean)
+	 */
+	private boolean primitive;
+	private String name;
+	/** Cached metadata, probed on first use */
+	private long[] dims;
+	private String dataType;
+	private int hdfType = -1;
+	/** The dataset once read */
+	private SoftReference<DataObject> data;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param String
+	 *            h5FilePath, String datasetPathWithinHDF5
+	 */
+	public LazyDataObject(String h5Path, String datasetPath) {
+		this(h5Path, datasetPath, false);
+	}
+
+	/**
+	 * Constructor for a dataset whose file is opened read-only, see
+	 * H5IO.openHDF5(String, boolean)
+	 * 
+	 * @param String
+	 *            h5FilePath, String datasetPathWithinHDF5, boolean readOnly
+	 */
+	public LazyDataObject(String h5Path, String datasetPath, boolean readOnly) {
+		this(h5Path, datasetPath, readOnly, false);
+	}
+
+	/**
+	 * Constructor for a dataset whose file is opened read-only if readOnly
+	 * is true, and which is read as a PrimitiveDataObject if primitive is
+	 * true and it is of Float, Double or Integer type
+	 * 
+	 * @param String
+	 *            h5FilePath, String datasetPathWithinHDF5, boolean readOnly,
+	 *            boolean primitive
+	 */
+	public LazyDataObject(String h5Path, String datasetPath, boolean readOnly,
+			boolean primitive) {
+		this.h5Path = h5Path;
+		this.datasetPath = datasetPath;
+		this.readOnly = readOnly;
+		this.primitive = primitive;
+		this.name = H5IO_Session.getDatasetName(datasetPath);
+	}
+
+	/**
+	 * Returns the path of the dataset within the HDF5 file
+	 * 
+	 * @return String datasetPath
+	 */
+	public String getDatasetPath() {
+		return datasetPath;
+	}
+
+	/**
+	 * Returns true if the dataset is currently held in memory
+	 * 
+	 * @return boolean loaded
+	 */
+	public synchronized boolean isLoaded() {
+		return data != null && data.get() != null;
+	}
+
+	/**
+	 * Returns the dataset, reading it from the HDF5 file if it has not been
+	 * read yet or has been released since
+	 * 
+	 * @return DataObject dataset
+	 * @throws H5IO_Exception
+	 */
+	public synchronized DataObject get() throws H5IO_Exception {
+		DataObject dat = data == null ? null : data.get();
+		if (dat != null)
+			return dat;
+
+		H5IO_Session session = new H5IO_Session(h5Path, readOnly);
+		try {
+			dat = load(session);
+		} finally {
+			session.close();
+		}
+		return dat;
+	}
+
+	/**
+	 * Returns the dataset, reading it through the given open session if it is
+	 * not currently held in memory
+	 * 
+	 * @param H5IO_Session
+	 *            session
+	 * @return DataObject dataset
+	 * @throws H5IO_Exception
+	 */
+	public synchronized DataObject get(H5IO_Session session)
+			throws H5IO_Exception {
+		DataObject dat = data == null ? null : data.get();
+		if (dat != null)
+			return dat;
+		return load(session);
+	}
+
+	private DataObject load(H5IO_Session session) throws H5IO_Exception {
+		// Read like the datasets loaded right away, see readDatasets
+		DataObject dat = session.readDatasets(new String[] { datasetPath },
+				primitive)[0];
+		if (dat == null)
+			throw new H5IO_Exception("Cannot read '" + datasetPath + "'");
+		data = new SoftReference<DataObject>(dat);
+		setInfo(dat.getDimensions(), dat.getDataType(), dat.getHDFType());
+		return dat;
+	}
+
+	/**
+	 * Drops the in-memory copy of the dataset. It is read again on the next
+	 * get().
+	 */
+	public synchronized void release() {
+		data = null;
+	}
+
+	/**
+	 * Returns the given DataObject, or the dataset behind it if it is a
+	 * LazyDataObject
+	 * 
+	 * @param DataObject
+	 *            dataObject
+	 * @return DataObject resolvedDataObject
+	 * @throws H5IO_Exception
+	 */
+	static public DataObject resolve(DataObject dat) throws H5IO_Exception {
+		if (dat instanceof LazyDataObject)
+			return ((LazyDataObject) dat).get();
+		return dat;
+	}
+
+	private void setInfo(long[] dims, String dataType, int hdfType) {
+		this.dims = dims;
+		this.dataType = dataType;
+		this.hdfType = hdfType;
+	}
+
+	/**
+	 * Reads the dimensions and type of the dataset without reading its values
+	 */
+	private synchronized void probe() {
+		if (dims != null)
+			return;
+		try {
+			H5IO_Session session = new H5IO_Session(h5Path, readOnly);
+			try {
+				H5IO_DatasetInfo info = session.getDatasetInfo(datasetPath);
+				if (info != null)
+					setInfo(info.getDimensions(), info.getDataType(),
+							info.getHDFType());
+			} finally {
+				session.close();
+			}
+		} catch (H5IO_Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	public long[] getDimensions() {
+		probe();
+		return dims;
+	}
+
+	public String getDataType() {
+		probe();
+		return dataType;
+	}
+
+	public int getHDFType() {
+		probe();
+		return hdfType;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getRank() {
+		probe();
+		return dims == null ? 0 : dims.length;
+	}
+
+	/**
+	 * Prints out the critical data for this object
+	 * */
+	public String toString() {
+		String st = "";
+		st += "Name: " + name + "\n";
+		st += "Path: " + datasetPath + "\n";
+		st += "Loaded: " + isLoaded() + "\n";
+		return st;
+	}
+}
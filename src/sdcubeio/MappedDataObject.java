@@ -0,0 +1,245 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import ncsa.hdf.hdf5lib.HDF5Constants;
+
+/**
+ * Read-only view of a numeric dataset through ByteBuffers, as returned by
+ * H5IO.readDataset_Mapped. The dataset is read once with H5Dread into a
+ * heap buffer and the accessors work on it in place, without boxing. Memory
+ * mapping Data.h5 would need the file offset of the dataset, which the
+ * bundled jhdf5 does not report, so isMapped() is false for now. The
+ * accessors are written for buffers of up to SEGMENT_BYTES each.
+ */
+public class MappedDataObject implements DataObject {
+
+	/** Maximum bytes per mapped segment, a multiple of every element size */
+	static public final long SEGMENT_BYTES = 1L << 30;
+
+	private String name;
+	private String datasetPath;
+	private long[] dims;
+	private String dataType;
+	private int hdfType;
+	private int typeSize;
+	/** The segments, each SEGMENT_BYTES long except the last */
+	private ByteBuffer[] segments;
+
+	MappedDataObject(String datasetPath, long[] dims, String dataType,
+			int hdfType, int typeSize, ByteBuffer[] segments) {
+		this.datasetPath = datasetPath;
+		this.name = H5IO_Session.getDatasetName(datasetPath);
+		this.dims = dims;
+		this.dataType = dataType;
+		this.hdfType = hdfType;
+		this.typeSize = typeSize;
+		this.segments = segments;
+	}
+
+	/**
+	 * Returns true if the buffers map the HDF5 file, false if they hold a
+	 * copy read with H5Dread
+	 * 
+	 * @return boolean mapped
+	 */
+	public boolean isMapped() {
+		return false;
+	}
+
+	/**
+	 * Returns the path of the dataset within the HDF5 file
+	 * 
+	 * @return String datasetPath
+	 */
+	public String getDatasetPath() {
+		return datasetPath;
+	}
+
+	/**
+	 * Returns the total number of elements
+	 * 
+	 * @return long numElements
+	 */
+	public long getNumElements() {
+		long num = 1;
+		for (int i = 0; i < dims.length; i++)
+			num *= dims[i];
+		return num;
+	}
+
+	/**
+	 * Returns the number of buffer segments
+	 * 
+	 * @return int
+	 */
+	public int getNumSegments() {
+		return segments.length;
+	}
+
+	/**
+	 * Returns a read-only duplicate of the given segment, positioned at its
+	 * start
+	 * 
+	 * @param int segment
+	 * @return ByteBuffer
+	 */
+	public ByteBuffer getSegment(int segment) {
+		ByteBuffer bb = segments[segment].duplicate();
+		bb.order(segments[segment].order());
+		return bb;
+	}
+
+	/**
+	 * Returns the whole dataset as a FloatBuffer; only for Float datasets
+	 * that fit in one segment
+	 * 
+	 * @return FloatBuffer
+	 */
+	public FloatBuffer asFloatBuffer() {
+		return getSingleSegment(HDF5Constants.H5T_NATIVE_FLOAT)
+				.asFloatBuffer();
+	}
+
+	/**
+	 * Returns the whole dataset as a DoubleBuffer; only for Double datasets
+	 * that fit in one segment
+	 * 
+	 * @return DoubleBuffer
+	 */
+	public DoubleBuffer asDoubleBuffer() {
+		return getSingleSegment(HDF5Constants.H5T_NATIVE_DOUBLE)
+				.asDoubleBuffer();
+	}
+
+	/**
+	 * Returns the whole dataset as an IntBuffer; only for Integer datasets
+	 * that fit in one segment
+	 * 
+	 * @return IntBuffer
+	 */
+	public IntBuffer asIntBuffer() {
+		return getSingleSegment(HDF5Constants.H5T_NATIVE_INT).asIntBuffer();
+	}
+
+	/**
+	 * Returns the whole dataset as a ShortBuffer; only for Short datasets
+	 * that fit in one segment
+	 * 
+	 * @return ShortBuffer
+	 */
+	public ShortBuffer asShortBuffer() {
+		return getSingleSegment(HDF5Constants.H5T_NATIVE_SHORT)
+				.asShortBuffer();
+	}
+
+	private ByteBuffer getSingleSegment(int type) {
+		if (hdfType != type)
+			throw new IllegalStateException("'" + name + "' holds "
+					+ dataType + " values");
+		if (segments.length != 1)
+			throw new IllegalStateException("'" + name + "' spans "
+					+ segments.length + " segments, use getSegment()");
+		return getSegment(0);
+	}
+
+	/**
+	 * Returns the element at the given flat (row-major) index as a double,
+	 * whatever the numeric type of the dataset
+	 * 
+	 * @param long index
+	 * @return double value
+	 */
+	public double getDouble(long index) {
+		long pos = index * typeSize;
+		ByteBuffer bb = segments[(int) (pos / SEGMENT_BYTES)];
+		int off = (int) (pos % SEGMENT_BYTES);
+		if (hdfType == HDF5Constants.H5T_NATIVE_FLOAT)
+			return bb.getFloat(off);
+		else if (hdfType == HDF5Constants.H5T_NATIVE_DOUBLE)
+			return bb.getDouble(off);
+		else if (hdfType == HDF5Constants.H5T_NATIVE_INT)
+			return bb.getInt(off);
+		else if (hdfType == HDF5Constants.H5T_NATIVE_SHORT)
+			return bb.getShort(off);
+		return bb.get(off);
+	}
+
+	/**
+	 * Returns the element at the given row and column of a 2D dataset as a
+	 * double
+	 * 
+	 * @param long row, long column
+	 * @return double value
+	 */
+	public double getDouble(long row, long col) {
+		return getDouble(row * dims[1] + col);
+	}
+
+	/**
+	 * Returns the element at the given flat index of a Float dataset
+	 * 
+	 * @param long index
+	 * @return float value
+	 */
+	public float getFloat(long index) {
+		long pos = index * 4;
+		return segments[(int) (pos / SEGMENT_BYTES)]
+				.getFloat((int) (pos % SEGMENT_BYTES));
+	}
+
+	/**
+	 * Returns the element at the given row and column of a 2D Float dataset
+	 * 
+	 * @param long row, long column
+	 * @return float value
+	 */
+	public float getFloat(long row, long col) {
+		return getFloat(row * dims[1] + col);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getHDFType() {
+		return hdfType;
+	}
+
+	public long[] getDimensions() {
+		return dims;
+	}
+
+	public String getDataType() {
+		return dataType;
+	}
+
+	public int getRank() {
+		return dims.length;
+	}
+}
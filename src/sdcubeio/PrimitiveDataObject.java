@@ -0,0 +1,152 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5LibraryException;
+
+/**
+ * Base class for DataObjects that hold their values in a single contiguous,
+ * row-major primitive array rather than a boxed T[] or T[][]. The primitive
+ * buffer is handed straight to H5Dwrite/H5Dread, so no boxing happens in
+ * either direction.
+ */
+public abstract class PrimitiveDataObject implements DataObject {
+
+	private String name;
+	private String dataType;
+	private int hdfType;
+	private long[] dims;
+
+	protected PrimitiveDataObject(String dataType, int hdfType, String name,
+			long[] dims) {
+		this.name = name;
+		this.dataType = dataType;
+		this.hdfType = hdfType;
+		this.dims = dims;
+	}
+
+	/**
+	 * Writes the primitive buffer of this object to the given opened dataset
+	 * 
+	 * @param int dataset_id, int memspace_id, int filespace_id
+	 * @throws HDF5LibraryException
+	 */
+	abstract void write(int dataset_id, int memspace_id, int filespace_id)
+			throws HDF5LibraryException;
+
+	/**
+	 * Fills the primitive buffer of this object from the given opened dataset
+	 * 
+	 * @param int dataset_id, int memspace_id, int filespace_id
+	 * @throws HDF5LibraryException
+	 */
+	abstract void read(int dataset_id, int memspace_id, int filespace_id)
+			throws HDF5LibraryException;
+
+	/**
+	 * Returns the total number of elements held in the primitive buffer
+	 * 
+	 * @return int numElements
+	 */
+	public int getNumElements() {
+		long num = 1;
+		for (int i = 0; i < dims.length; i++)
+			num *= dims[i];
+		return (int) num;
+	}
+
+	/**
+	 * Get the HDF type.
+	 * 
+	 * @return int HDF5dataType
+	 */
+	public int getHDFType() {
+		return hdfType;
+	}
+
+	/**
+	 * Returns the name of the "dataType" attribute written next to the dataset
+	 * (Ex: "H5T_NATIVE_FLOAT")
+	 * 
+	 * @return String attributeValue
+	 */
+	public String getHDFTypeName() {
+		if (hdfType == HDF5Constants.H5T_NATIVE_FLOAT)
+			return "H5T_NATIVE_FLOAT";
+		else if (hdfType == HDF5Constants.H5T_NATIVE_DOUBLE)
+			return "H5T_NATIVE_DOUBLE";
+		return "H5T_NATIVE_INTEGER";
+	}
+
+	/**
+	 * Gets the dimensions of the data
+	 * 
+	 * @return long[] dimensions
+	 */
+	public long[] getDimensions() {
+		return dims;
+	}
+
+	/**
+	 * Gets the string description of the data type. Ex: "Integer", "Float",
+	 * "Double"
+	 * 
+	 * @return String DataTypeName
+	 * */
+	public String getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * Returns the name of this DataObject
+	 * 
+	 * @return String name
+	 * */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the dimenionality rank of this dataset
+	 * 
+	 * @return int rank
+	 * */
+	public int getRank() {
+		return dims.length;
+	}
+
+	/**
+	 * Prints out the critical data for this object
+	 * */
+	public String toString() {
+		String st = "";
+		st += "Name: " + name + "\n";
+		st += "DataType: " + dataType + "\n";
+		st += "HDFType: " + hdfType + "\n";
+		st += "Dimensions: " + dims[0];
+		for (int i = 1; i < dims.length; i++)
+			st += " x " + dims[i];
+		st += "\n";
+		return st;
+	}
+}
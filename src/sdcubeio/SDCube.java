@@ -25,6 +25,10 @@ package sdcubeio;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
 
 import ncsa.hdf.hdf5lib.exceptions.HDF5Exception;
 
@@ -46,6 +50,40 @@ public class SDCube {
 
 	private SDCube_DataModule TheRootDataModule;
 
+	/**
+	 * Chunking and compression options of the datasets written by write(),
+	 * null for contiguous, uncompressed datasets
+	 */
+	private H5IO_DatasetOptions datasetOptions;
+
+	/**
+	 * Samples added or marked dirty since the last writeIncremental(), in the
+	 * order they were added
+	 */
+	private LinkedHashSet<SDCube_Sample> TheDirtySamples;
+
+	/**
+	 * If true, load() opens the HDF5 file read-only, see
+	 * H5IO.openHDF5(String, boolean)
+	 */
+	private boolean readOnly;
+
+	/**
+	 * If true, load() reads numeric datasets as PrimitiveDataObjects, see
+	 * SDCube_DataModule.setPrimitive
+	 */
+	private boolean primitive;
+
+	/**
+	 * If true, writeIncremental() stages each sample before moving it to its
+	 * Children group and flushes Data.h5 after it, for SDCube_LiveReaders
+	 * polling the cube
+	 */
+	private boolean live;
+
+	/** Group new samples are written to before live mode moves them */
+	static public final String LIVE_STAGING_GROUP = "./Live";
+
 	/**
 	 * Basic Constructor
 	 * 
@@ -53,6 +91,7 @@ public class SDCube {
 	 * */
 	public SDCube() {
 		TheSamples = new ArrayList<SDCube_Sample>();	
+		TheDirtySamples = new LinkedHashSet<SDCube_Sample>();
 	}
 
 
@@ -67,6 +106,7 @@ public class SDCube {
 	public SDCube(String path) {
 		this.sdcPath = path;
 		TheSamples = new ArrayList<SDCube_Sample>();
+		TheDirtySamples = new LinkedHashSet<SDCube_Sample>();
 	}
 
 	/**
@@ -134,9 +174,130 @@ public class SDCube {
 		sample.getExpDesign().setId(sample.getID());
 		// TheRootDataModule.addDataModule(data);
 		TheSamples.add(sample);
+		TheDirtySamples.add(sample);
 	 }
 
+	/**
+	 * Marks the given sample as changed, so the next writeIncremental()
+	 * writes it again
+	 * 
+	 * @author Bjorn Millard
+	 * @param SDCube_Sample
+	 *            sample
+	 */
+	public void markDirty(SDCube_Sample sample) {
+		TheDirtySamples.add(sample);
+	}
+
+	/**
+	 * Returns the samples added or marked dirty since the last
+	 * writeIncremental()
+	 * 
+	 * @author Bjorn Millard
+	 * @return ArrayList<SDCube_Sample>
+	 */
+	public ArrayList<SDCube_Sample> getDirtySamples() {
+		return new ArrayList<SDCube_Sample>(TheDirtySamples);
+	}
+
 	
+	/**
+	 * Sets the chunking, compression and fill value options of the datasets
+	 * written by write(), for example H5IO_DatasetOptions.compressed(4)
+	 * 
+	 * @author Bjorn Millard
+	 * @param H5IO_DatasetOptions
+	 *            options
+	 */
+	public void setDatasetOptions(H5IO_DatasetOptions options) {
+		datasetOptions = options;
+	}
+
+	/**
+	 * Returns the dataset creation options used by write()
+	 * 
+	 * @author Bjorn Millard
+	 * @return H5IO_DatasetOptions
+	 */
+	public H5IO_DatasetOptions getDatasetOptions() {
+		return datasetOptions;
+	}
+
+	/**
+	 * Sets whether load() opens the HDF5 file read-only. A read-only load
+	 * takes no write lock on the file, so it works on read-only mounts and
+	 * snapshots and many processes can load the same cube at once. The
+	 * samples loaded keep the mode for the datasets they read later.
+	 * 
+	 * @author Bjorn Millard
+	 * @param boolean
+	 *            readOnly
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Returns true if load() opens the HDF5 file read-only
+	 * 
+	 * @author Bjorn Millard
+	 * @return boolean readOnly
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Sets whether load() reads the Float, Double and Integer datasets as
+	 * PrimitiveDataObjects (FloatMatrix2D, FloatArray1D, ...), which hold a
+	 * single primitive array and are never boxed, instead of as Data_1D and
+	 * Data_2D. False (the default) keeps the boxed types.
+	 * 
+	 * @param boolean
+	 *            primitive
+	 */
+	public void setPrimitive(boolean primitive) {
+		this.primitive = primitive;
+	}
+
+	/**
+	 * Returns true if load() reads numeric datasets as PrimitiveDataObjects
+	 * 
+	 * @return boolean primitive
+	 */
+	public boolean isPrimitive() {
+		return primitive;
+	}
+
+	/**
+	 * Sets whether writeIncremental() runs in live mode, for a cube read by
+	 * SDCube_LiveReaders while it is being acquired. In live mode each new
+	 * sample is written to a group under LIVE_STAGING_GROUP and only moved to
+	 * its Children group once complete, and Data.h5 is flushed after every
+	 * sample. This keeps a reader from finding half written Children groups
+	 * in a flushed file, but HDF5 1.8 has no single-writer/multiple-reader
+	 * mode: a reader opening Data.h5 while the next sample is being written
+	 * may fail to read it, or see it inconsistent, and has to try again
+	 * later, as SDCube_LiveReader.poll() does.
+	 * 
+	 * @author Bjorn Millard
+	 * @param boolean
+	 *            live
+	 */
+	public void setLive(boolean live) {
+		this.live = live;
+	}
+
+	/**
+	 * Returns true if writeIncremental() runs in live mode
+	 * 
+	 * @author Bjorn Millard
+	 * @return boolean live
+	 */
+	public boolean isLive() {
+		return live;
+	}
+
 	/**
 	 * Loads the given SDCube/HDF5 file path into the current Java SDCube object 
 	 * 
@@ -145,26 +306,100 @@ public class SDCube {
 	 * @throws H5IO_Exception 
 	 * */
 	public void load(String sdcPath) throws H5IO_Exception {
+		load(sdcPath, false);
+	}
+
+	/**
+	 * Loads the given SDCube/HDF5 file path into the current Java SDCube
+	 * object. If lazy is true, no Data or Meta dataset is read up front: the
+	 * DataModules hold LazyDataObject placeholders that read their dataset on
+	 * first use and may release it again under memory pressure.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            pathToHDF5file, boolean lazy
+	 * @throws H5IO_Exception
+	 * */
+	public void load(String sdcPath, boolean lazy) throws H5IO_Exception {
+		load(sdcPath, lazy, null);
+	}
+
+	/**
+	 * Loads the given SDCube/HDF5 file path into the current Java SDCube
+	 * object, loading the samples as parallel tasks on the given executor.
+	 * HDF5 is still only called from one thread at a time, the tasks overlap
+	 * turning each sample's values into DataObjects with the reading of the
+	 * next ones, which only pays off for the types that are boxed.
+	 * The samples come back in the same order as with a sequential load. A
+	 * null executor loads sequentially.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            pathToHDF5file, boolean lazy, ExecutorService executor
+	 * @throws H5IO_Exception
+	 * */
+	public void load(String sdcPath, boolean lazy, ExecutorService executor)
+			throws H5IO_Exception {
+		load(sdcPath, lazy, executor, null);
+	}
+
+	/**
+	 * Loads the given SDCube/HDF5 file path into the current Java SDCube
+	 * object, reading only the datasets selected by the given projection. The
+	 * other datasets are left as LazyDataObject placeholders.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            pathToHDF5file, SDCube_Projection projection
+	 * @throws H5IO_Exception
+	 * */
+	public void load(String sdcPath, SDCube_Projection projection)
+			throws H5IO_Exception {
+		load(sdcPath, false, null, projection);
+	}
+
+	/**
+	 * Loads the given SDCube/HDF5 file path into the current Java SDCube
+	 * object, see load(String, boolean, ExecutorService) and
+	 * load(String, SDCube_Projection). A null projection reads every dataset.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            pathToHDF5file, boolean lazy, ExecutorService executor,
+	 *            SDCube_Projection projection
+	 * @throws H5IO_Exception
+	 * */
+	public void load(String sdcPath, boolean lazy, ExecutorService executor,
+			SDCube_Projection projection) throws H5IO_Exception {
+		long t = H5IO_Metrics.start();
 		TheSamples = new ArrayList<SDCube_Sample>();
 		this.sdcPath = sdcPath;
 		// Loading the top level DataModule representing the samples
 		String h5Path = sdcPath+ "/Data.h5";
-		H5IO io = new H5IO();
-		io.openHDF5(h5Path);
+		H5IO_Session session = new H5IO_Session(h5Path, readOnly);
 		
 		TheRootDataModule = new SDCube_DataModule(h5Path, ".");
-		TheRootDataModule.load(io);
+		TheRootDataModule.setLazy(lazy);
+		TheRootDataModule.setExecutor(executor);
+		TheRootDataModule.setProjection(projection);
+		TheRootDataModule.setReadOnly(readOnly);
+		TheRootDataModule.setPrimitive(primitive);
+		try {
+			TheRootDataModule.load(session);
+		} finally {
+			session.close();
+		}
+		SDCube_SampleIndex.register(sdcPath,
+				buildSampleIndex(TheRootDataModule));
 
 		ArrayList<ExpDesign_Sample> eps = ExpDesign_IO
 				.parseSamples(sdcPath
 				+ "/ExpDesign.xml");
 
 		// Now putting them all into samples
-		String[] sNames = TheRootDataModule.getSampleNames();
-		
-		if(sNames!=null)
+		if (eps != null)
 		{
-			int len = sNames.length;
+			int len = TheRootDataModule.getDataModules().size();
 			for (int i = 0; i < len; i++) {
 				SDCube_DataModule data = TheRootDataModule.getDataModule(i);
 				//find the expD with same ID
@@ -178,7 +413,7 @@ public class SDCube {
 				}
 			}
 		}
-		io.closeHDF5();
+		H5IO_Metrics.stop(H5IO_Metrics.CUBE_LOAD, t);
 	}
 	/**
 	 * Loads the current SDCube Path into the current Java SDCube object 
@@ -190,6 +425,144 @@ public class SDCube {
 	public void load() throws H5IO_Exception {
 		load(sdcPath);
 	}
+	/**
+	 * Writes only the samples added or marked dirty since the last call to
+	 * the initialized SDCube path
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 * */
+	public void writeIncremental() throws H5IO_Exception {
+		writeIncremental(sdcPath);
+	}
+
+	/**
+	 * Writes only the samples added or marked dirty since the last call to
+	 * the given SDCube path. New samples are written to new Children groups
+	 * and their ExpDesign is appended to ExpDesign.xml and to the copy
+	 * embedded in Data.h5 without rewriting either. Samples that already
+	 * exist in the cube are rewritten in place; as their XML cannot be
+	 * appended, ExpDesign.xml and its embedded copy are then regenerated
+	 * once. The cost of appending samples therefore does not grow with the
+	 * size of the cube, apart from the small ./Meta/Sample_Index table.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            pathToSDCube
+	 * @throws H5IO_Exception
+	 * */
+	public void writeIncremental(String sdcubePath) throws H5IO_Exception {
+		this.sdcPath = sdcubePath;
+		String h5Path = sdcPath + "/Data.h5";
+		String xmlPath = sdcPath + "/ExpDesign.xml";
+
+		File sdcFile = new File(sdcubePath);
+		if (!sdcFile.exists())
+			sdcFile.mkdir();
+		File h5File = new File(h5Path);
+		if (!h5File.exists() || h5File.length() == 0)
+			new H5IO().createHDF5(h5Path);
+		if (TheDirtySamples.isEmpty())
+			return;
+		long t = H5IO_Metrics.start();
+
+		ArrayList<ExpDesign_Sample> newDesigns = new ArrayList<ExpDesign_Sample>();
+		ArrayList<ExpDesign_Sample> changedDesigns = new ArrayList<ExpDesign_Sample>();
+		SDCube_SampleIndex index = null;
+		H5IO h5 = new H5IO();
+		h5.openHDF5(h5Path);
+		h5.setDatasetOptions(datasetOptions);
+		try {
+			// Finding the next free child group
+			int next;
+			H5IO_Session session = new H5IO_Session(h5, h5Path);
+			try {
+				index = SDCube_SampleIndex.get(sdcPath, session);
+				next = session.getGroupChildCount("./Children");
+				while (session.existsGroup("./Children/" + next))
+					next++;
+			} finally {
+				session.close();
+			}
+
+			// Writing only the new and dirty samples
+			Iterator<SDCube_Sample> it = TheDirtySamples.iterator();
+			while (it.hasNext()) {
+				SDCube_Sample sample = it.next();
+				SDCube_DataModule mod = sample.getDataModule();
+				String group = index.getGroupPath(sample.getID());
+				boolean isNew = group == null;
+				if (isNew) {
+					group = "./Children/" + next;
+					next++;
+					newDesigns.add(sample.getExpDesign());
+				} else
+					changedDesigns.add(sample.getExpDesign());
+
+				if (mod.getDatasetOptions() == null)
+					mod.setDatasetOptions(datasetOptions);
+				if (live && isNew) {
+					// Publishing the sample complete with a single link move
+					String staging = LIVE_STAGING_GROUP + "/"
+							+ group.substring(group.lastIndexOf('/') + 1);
+					mod.write(h5Path, staging);
+					h5.move(h5Path, staging, group);
+					mod.setGroupPath(group);
+				} else
+					mod.write(h5Path, group);
+				index.put(sample.getID(), group, getDatasetNames(mod));
+				if (live)
+					h5.flushHDF5();
+			}
+			index.write(h5, h5Path);
+			if (live)
+				h5.flushHDF5();
+		} catch (H5IO_Exception e) {
+			SDCube_SampleIndex.invalidate(sdcPath);
+			throw e;
+		} finally {
+			h5.closeHDF5();
+		}
+
+		// The data is committed, so the index is valid whatever happens next
+		SDCube_SampleIndex.register(sdcPath, index);
+
+		// Patching the XML, or regenerating it if existing samples changed.
+		// If that fails the samples stay dirty, so the call can be retried.
+		try {
+			long patchAt = -1;
+			if (changedDesigns.size() == 0)
+				patchAt = ExpDesign_IO.appendSamples(xmlPath, newDesigns);
+			if (patchAt >= 0)
+				new H5IO().appendFileToHDF5(xmlPath, h5Path,
+						"./Meta/ExpDesign.xml", patchAt);
+			else {
+				// An unreadable XML would be regenerated without its samples
+				if (new File(xmlPath).exists()
+						&& ExpDesign_IO.parseSamples(xmlPath) == null)
+					throw new H5IO_Exception("Cannot parse " + xmlPath);
+				ExpDesign_Model model = new ExpDesign_Model(sdcPath);
+				changedDesigns.addAll(newDesigns);
+				for (int i = 0; i < changedDesigns.size(); i++) {
+					model.removeSample(changedDesigns.get(i).getId());
+					model.addSample(changedDesigns.get(i));
+				}
+				ExpDesign_IO.store(model);
+				H5IO xmlIO = new H5IO();
+				xmlIO.writeFileToHDF5(xmlPath, h5Path, "./Meta/ExpDesign.xml");
+				xmlIO.closeHDF5();
+			}
+		} catch (H5IO_Exception e) {
+			throw e;
+		} catch (Exception e) {
+			throw new H5IO_Exception("Samples written, but not their "
+					+ "ExpDesign to " + xmlPath + ": " + e.getMessage());
+		}
+
+		TheDirtySamples.clear();
+		H5IO_Metrics.stop(H5IO_Metrics.CUBE_WRITE, t);
+	}
+
 	/**
 	 * Writes this Java SDCube object to the intialized SDCube/HDF5 file path
 	 * 
@@ -208,6 +581,7 @@ public class SDCube {
 	 * @throws H5IO_Exception
 	 * */
 	public void write(String sdcubePath) throws H5IO_Exception {
+		long t = H5IO_Metrics.start();
 		this.sdcPath = sdcubePath;
 		String h5Path = sdcPath + "/Data.h5";
 		String xmlPath = sdcPath + "/ExpDesign.xml";
@@ -239,11 +613,16 @@ public class SDCube {
 				}
 			}
 
+			// Index of the samples already in the file, kept in sync below
+			SDCube_SampleIndex index = SDCube_SampleIndex.peek(sdcPath);
+
 			H5IO h5 = new H5IO();
 			h5.openHDF5(h5Path);
+			h5.setDatasetOptions(datasetOptions);
 			
 			//Checking if samples already exist, and if so, rename new samples so dont conflict
 			int numSamples = h5.getGroupChildCount(h5Path, "./Children");
+			int numPriorSamples = numSamples;
 
 			if(numSamples>0)
 			{
@@ -282,12 +661,36 @@ public class SDCube {
 			
 		// Writing all the data samples
 		// TheSamples
-		if (TheRootDataModule != null)
-			TheRootDataModule.write(h5Path);
-		else
-		{
+		if (TheRootDataModule == null)
 			TheRootDataModule = new SDCube_DataModule(h5Path, ".");
-			TheRootDataModule.write(h5Path);
+		TheRootDataModule.setDatasetOptions(datasetOptions);
+		TheRootDataModule.write(h5Path);
+
+		// Updating the sample index with the children just written and
+		// persisting it in the file
+		try {
+			if (index == null && numPriorSamples > 0) {
+				H5IO_Session session = new H5IO_Session(h5, h5Path);
+				try {
+					index = SDCube_SampleIndex.read(session);
+					if (index == null || index.size() != numPriorSamples)
+						index = SDCube_SampleIndex.build(session);
+				} finally {
+					session.close();
+				}
+			}
+			if (index == null)
+				index = new SDCube_SampleIndex();
+			SDCube_SampleIndex written = buildSampleIndex(TheRootDataModule);
+			ArrayList<String> ids = written.getIDs();
+			for (int i = 0; i < ids.size(); i++)
+				index.put(ids.get(i), written.getGroupPath(ids.get(i)),
+						written.getDatasetNames(ids.get(i)));
+			index.write(h5, h5Path);
+		} catch (H5IO_Exception e) {
+			System.err.println("***ERROR writing the sample index***");
+			e.printStackTrace();
+			index = null;
 		}
 
 		// Writing all the ExpDesign for the samples
@@ -303,6 +706,51 @@ public class SDCube {
 		}
 		h5.closeHDF5();	
 
+		if (index != null)
+			SDCube_SampleIndex.register(sdcPath, index);
+		else
+			SDCube_SampleIndex.invalidate(sdcPath);
+		H5IO_Metrics.stop(H5IO_Metrics.CUBE_WRITE, t);
+	}
+
+	/**
+	 * Creates a SDCube_SampleIndex, including the Data/ and Meta/ dataset
+	 * names, from the sub DataModules of the given root DataModule
+	 * 
+	 * @author Bjorn Millard
+	 * @param SDCube_DataModule
+	 *            root
+	 * @return SDCube_SampleIndex
+	 */
+	static private SDCube_SampleIndex buildSampleIndex(SDCube_DataModule root) {
+		SDCube_SampleIndex index = new SDCube_SampleIndex();
+		ArrayList<SDCube_DataModule> mods = root.getDataModules();
+		int len = mods.size();
+		for (int i = 0; i < len; i++) {
+			SDCube_DataModule mod = mods.get(i);
+			if (mod.getId() == null)
+				continue;
+			index.put(mod.getId(), mod.getFilePath_Group(),
+					getDatasetNames(mod));
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the Data/ and Meta/ dataset names of the given DataModule
+	 * 
+	 * @author Bjorn Millard
+	 * @param SDCube_DataModule
+	 *            module
+	 * @return String[] datasetNames
+	 */
+	static private String[] getDatasetNames(SDCube_DataModule mod) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (int j = 0; j < mod.getDataGroup().size(); j++)
+			names.add("Data/" + mod.getDataGroup().get(j).getName());
+		for (int j = 0; j < mod.getMetaGroup().size(); j++)
+			names.add("Meta/" + mod.getMetaGroup().get(j).getName());
+		return names.toArray(new String[names.size()]);
 	}
 
 	/**
@@ -332,12 +780,44 @@ public class SDCube {
 	 * @return SDCube_Sample
 	 */
 	static public SDCube_Sample getSample(String sdcPath, String id) {
+		return getSample(sdcPath, id, null);
+	}
+
+	/**
+	 * Finds, creates, and returns the SDCube_Sample with the given id, reading
+	 * only the datasets selected by the given projection
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, String id, SDCube_Projection projection
+	 * @return SDCube_Sample
+	 */
+	static public SDCube_Sample getSample(String sdcPath, String id,
+			SDCube_Projection projection) {
+		return getSample(sdcPath, id, projection, false);
+	}
+
+	/**
+	 * Finds, creates, and returns the SDCube_Sample with the given id, reading
+	 * only the datasets selected by the given projection (all of them if it
+	 * is null), with the HDF5 file opened read-only if readOnly is true
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, String id, SDCube_Projection projection, boolean
+	 *            readOnly
+	 * @return SDCube_Sample
+	 */
+	static public SDCube_Sample getSample(String sdcPath, String id,
+			SDCube_Projection projection, boolean readOnly) {
 
 		String h5Path = sdcPath + "/Data.h5";
 		String xmlPath = sdcPath + "/ExpDesign.xml";
 		// Extracting the DataModule_Sample
 		SDCube_DataModule data = new SDCube_DataModule(h5Path,
  ".");
+		data.setProjection(projection);
+		data.setReadOnly(readOnly);
 		try {
 			data.loadSample(sdcPath, id);
 		} catch (H5IO_Exception e) {
@@ -364,35 +844,127 @@ public class SDCube {
 	 * @return ArrayList<SDCube_Sample>
 	 */
 	static public ArrayList<SDCube_Sample> getSamples(String sdcPath) {
-		String h5Path = sdcPath + "/Data.h5";
-		String xmlPath = sdcPath + "/ExpDesign.xml";
-		ArrayList<SDCube_Sample> samples = new ArrayList<SDCube_Sample>();
-		// Getting all sample IDs inside this SDCube
-		ArrayList<String> ids = getSampleIDs(sdcPath);
+		return getSamples(sdcPath, (SDCube_Projection) null);
+	}
+
+	/**
+	 * Returns the complete list of Samples from this SDCube, reading only the
+	 * datasets selected by the given projection
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, SDCube_Projection projection
+	 * @return ArrayList<SDCube_Sample>
+	 */
+	static public ArrayList<SDCube_Sample> getSamples(String sdcPath,
+			SDCube_Projection projection) {
+		return getSamples(sdcPath, projection, false);
+	}
+
+	/**
+	 * Returns the complete list of Samples from this SDCube, reading only the
+	 * datasets selected by the given projection (all of them if it is null),
+	 * with the HDF5 file opened read-only if readOnly is true
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, SDCube_Projection projection, boolean readOnly
+	 * @return ArrayList<SDCube_Sample>
+	 */
+	static public ArrayList<SDCube_Sample> getSamples(String sdcPath,
+			SDCube_Projection projection, boolean readOnly) {
+		// Parsing the XML-ExpDesign once for all samples
+		ArrayList<ExpDesign_Sample> all = ExpDesign_IO.parseSamples(sdcPath
+				+ "/ExpDesign.xml");
+		HashMap<String, ExpDesign_Sample> byID = new HashMap<String, ExpDesign_Sample>();
+		if (all != null)
+			for (int i = 0; i < all.size(); i++) {
+				String id = all.get(i).getId().trim();
+				if (!byID.containsKey(id))
+					byID.put(id, all.get(i));
+			}
+
+		// Keeping the order of the samples within the SDCube
+		ArrayList<String> ids = getSampleIDs(sdcPath, readOnly);
+		ArrayList<ExpDesign_Sample> eps = new ArrayList<ExpDesign_Sample>();
 		int len = ids.size();
-		System.out.println(len);
-		
-		// Extracting the DataModule_Sample
 		for (int i = 0; i < len; i++) {
-			SDCube_DataModule data = new SDCube_DataModule(h5Path, ".");
+			ExpDesign_Sample ep = byID.get(ids.get(i));
+			if (ep != null)
+				eps.add(ep);
+			else
+				System.err.println("**ERROR: loading sample with id: "
+						+ ids.get(i));
+		}
+		return loadSamples(sdcPath, eps, projection, readOnly);
+	}
+
+	/**
+	 * Loads the data of each of the given ExpDesign_Samples through one
+	 * session and the SDCube_SampleIndex, and pairs it with its ExpDesign
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, ArrayList<ExpDesign_Sample> expDesigns
+	 * @return ArrayList<SDCube_Sample>
+	 */
+	static private ArrayList<SDCube_Sample> loadSamples(String sdcPath,
+			ArrayList<ExpDesign_Sample> eps) {
+		return loadSamples(sdcPath, eps, null, false);
+	}
+
+	/**
+	 * Like loadSamples(String, ArrayList), reading only the datasets selected
+	 * by the given projection, or all of them if it is null, with the HDF5
+	 * file opened read-only if readOnly is true
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, ArrayList<ExpDesign_Sample> expDesigns,
+	 *            SDCube_Projection projection, boolean readOnly
+	 * @return ArrayList<SDCube_Sample>
+	 */
+	static private ArrayList<SDCube_Sample> loadSamples(String sdcPath,
+			ArrayList<ExpDesign_Sample> eps, SDCube_Projection projection,
+			boolean readOnly) {
+		String h5Path = sdcPath + "/Data.h5";
+		ArrayList<SDCube_Sample> samples = new ArrayList<SDCube_Sample>();
+		if (eps == null)
+			return samples;
+		long t = H5IO_Metrics.start();
+
+		H5IO_Session session = null;
+		try {
+			session = new H5IO_Session(h5Path, readOnly);
+			SDCube_SampleIndex index = SDCube_SampleIndex.get(sdcPath,
+					session);
+			int len = eps.size();
+			for (int i = 0; i < len; i++) {
+				String id = eps.get(i).getId().trim();
+				String group = index.getGroupPath(id);
+				if (group == null) {
+					System.err.println("**ERROR: loading sample with id: "
+							+ id);
+					continue;
+				}
+				SDCube_DataModule data = new SDCube_DataModule(h5Path, group);
+				data.setProjection(projection);
+				data.setReadOnly(readOnly);
+				data.setDatasetNames(index.getDatasetNames(id));
+				data.load(session);
+				samples.add(new SDCube_Sample(data, eps.get(i), id));
+			}
+		} catch (H5IO_Exception e) {
+			e.printStackTrace();
+		} finally {
 			try {
-				data.loadSample(sdcPath, ids.get(i));
+				if (session != null)
+					session.close();
 			} catch (H5IO_Exception e) {
 				e.printStackTrace();
 			}
-
-			// Parsing the XML-ExpDesign_Sample
-			ArrayList<ExpDesign_Sample> expD = ExpDesign_IO
-					.parseSamplesWid(xmlPath, ids.get(i));
-
-			if (data != null && expD != null && expD.size() != 0
-					&& expD.get(0) != null)
-				samples.add(new SDCube_Sample(data, expD.get(0), ids.get(i)));
-			else
-				System.err
-.println("**ERROR: loading sample with id: "
-						+ ids.get(i));
 		}
+		H5IO_Metrics.stop(H5IO_Metrics.CUBE_LOAD, t);
 		return samples;
 	}
 
@@ -403,30 +975,40 @@ public class SDCube {
 	 * @return ArrayList<String>
 	 */
 	static public ArrayList<String> getSampleIDs(String sdcPath) {
+		return getSampleIDs(sdcPath, false);
+	}
+
+	/**
+	 * Returns the complete list of Sample_IDs contained within this SDCube,
+	 * with the HDF5 file opened read-only if readOnly is true and the sample
+	 * index is not cached yet
+	 * 
+	 * @athor Bjorn Millard
+	 * @param String
+	 *            sdcPath, boolean readOnly
+	 * @return ArrayList<String>
+	 */
+	static public ArrayList<String> getSampleIDs(String sdcPath,
+			boolean readOnly) {
 		ArrayList<String> ids = new ArrayList<String>();
-		String h5Path = sdcPath + "/Data.h5";
+		SDCube_SampleIndex index = SDCube_SampleIndex.peek(sdcPath);
+		if (index != null)
+			return index.getIDs();
 
-		H5IO io = new H5IO();
-		String[] names = null;
+		H5IO_Session session = null;
 		try {
-			names = io.getGroupChildNames(h5Path, "./Children");
-		} catch (H5IO_Exception e) {
-			System.out.println("**ERROR getting child count for group: "
-					+ h5Path + "/Children");
-		e.printStackTrace();
-		}
-		
-		int len = names.length;
-		try {
-		for (int i = 0; i < len; i++) {
-				Data_2D dat = (Data_2D) io.readDataset(h5Path, "./Children/"
-						+ names[i] + "/Meta/Sample_ID");
-			String[][] data = (String[][]) dat.getData();
-			ids.add(data[0][0].trim());
-		}
+			session = new H5IO_Session(sdcPath + "/Data.h5", readOnly);
+			ids = SDCube_SampleIndex.get(sdcPath, session).getIDs();
 		} catch (H5IO_Exception e) {
 			System.out.println("**ERROR reading sample IDs**");
 			e.printStackTrace();
+		} finally {
+			try {
+				if (session != null)
+					session.close();
+			} catch (H5IO_Exception e) {
+				e.printStackTrace();
+			}
 		}
 		
 		return ids;
@@ -441,10 +1023,14 @@ public class SDCube {
 	 * @return int numberOfSamples
 	 */
 	static public int getNumSamples(String sdcPath) {
-		H5IO io = new H5IO();
 		int num = 0;
 		try {
-			num = io.getGroupChildCount(sdcPath + "/Data.h5", "./Children");
+			H5IO_Session session = new H5IO_Session(sdcPath + "/Data.h5");
+			try {
+				num = session.getGroupChildCount("./Children");
+			} finally {
+				session.close();
+			}
 		} catch (H5IO_Exception e) {
 			System.err.println("**ERROR counting children for group: "
 					+ sdcPath + "/Children");
@@ -481,6 +1067,29 @@ public class SDCube {
 		}
 	}
 
+	/**
+	 * Returns the samples within the given SDCube that have at least one
+	 * descriptor satisfying all the conditions of the given query
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, ExpDesign_Query query
+	 * @return ArrayList<SDCube_Sample> selectSamples
+	 */
+	static public ArrayList<SDCube_Sample> getSamples(String sdcPath,
+			ExpDesign_Query query) {
+		String xmlPath = sdcPath + "/ExpDesign.xml";
+
+		ExpDesign_Index index = ExpDesign_Index.get(xmlPath);
+		if (index == null)
+			return null;
+		ArrayList<ExpDesign_Sample> eps = index
+				.getSamples(index.select(query));
+
+		// Now retrieving the complete samples
+		return loadSamples(sdcPath, eps);
+	}
+
 	/**
 	 * Returns a list of samples within this SDCube that have the given tags in
 	 * their description in the XML ExpDesign file, NOTE this returns the OR of
@@ -493,23 +1102,18 @@ public class SDCube {
 	 */
 	static public ArrayList<SDCube_Sample> getSamplesWithDescriptorNames_OR(
 			String sdcPath, String[] names) {
-		ArrayList<SDCube_Sample> samples = new ArrayList<SDCube_Sample>();
 		String xmlPath = sdcPath + "/ExpDesign.xml";
 
-		ArrayList<ExpDesign_Sample> eps = ExpDesign_IO
-				.parseSamplesWithDescriptorNames_OR(xmlPath, names);
-		if (eps == null || eps.size() == 0)
+		ExpDesign_Index index = ExpDesign_Index.get(xmlPath);
+		if (index == null)
+			return null;
+		ArrayList<ExpDesign_Sample> eps = index.getSamples(index.matchAny(
+				ExpDesign_Index.NAME, names));
+		if (eps.size() == 0)
 			return null;
 
 		// Now retrieving the complete samples
-		int len = eps.size();
-		for (int i = 0; i < len; i++)
- {
-			SDCube_Sample sam = getSample(sdcPath, eps.get(i).getId());
-			if (sam != null)
-				samples.add(sam);
-		}
-		return samples;
+		return loadSamples(sdcPath, eps);
 	}
 
 	/**
@@ -526,20 +1130,45 @@ public class SDCube {
 	static public ArrayList<SDCube_Sample> getSamplesWithDescriptorNames_AND(String sdcPath,
  String[] names)
 	{
-		ArrayList<SDCube_Sample> samples = new ArrayList<SDCube_Sample>();
 		String xmlPath = sdcPath + "/ExpDesign.xml";
 
-		ArrayList<ExpDesign_Sample> eps = ExpDesign_IO
-				.parseSamplesWithDescriptorNames_AND(xmlPath, names);
-		if (eps == null || eps.size() == 0)
+		ExpDesign_Index index = ExpDesign_Index.get(xmlPath);
+		if (index == null)
+			return null;
+		ArrayList<ExpDesign_Sample> eps = index.getSamples(index.matchAll(
+				ExpDesign_Index.NAME, names));
+		if (eps.size() == 0)
 			return null;
 
 		// Now retrieving the complete samples
-		int len = eps.size();
-		for (int i = 0; i < len; i++)
-			samples.add(getSample(sdcPath, eps.get(i).getId()));
+		return loadSamples(sdcPath, eps);
+	}
 
-		return samples;
+	/**
+	 * Returns a list of samples within this SDCube that have none of the given
+	 * tags in their description in the XML ExpDesign file, NOTE this returns
+	 * the NOT of the OR of the names given, so a sample with any one of them
+	 * is left out
+	 * 
+	 * @author Bjorn Millard
+	 * @return ArrayList<SDCube_Sample> selectSamples
+	 * @param String
+	 *            [] tagNames
+	 */
+	static public ArrayList<SDCube_Sample> getSamplesWithDescriptorNames_NOT(
+			String sdcPath, String[] names) {
+		String xmlPath = sdcPath + "/ExpDesign.xml";
+
+		ExpDesign_Index index = ExpDesign_Index.get(xmlPath);
+		if (index == null)
+			return null;
+		ArrayList<ExpDesign_Sample> eps = index.getSamples(index.matchNone(
+				ExpDesign_Index.NAME, names));
+		if (eps.size() == 0)
+			return null;
+
+		// Now retrieving the complete samples
+		return loadSamples(sdcPath, eps);
 	}
 }
 
@@ -24,7 +24,16 @@ package sdcubeio;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5Exception;
 
 
 public class SDCube_DataModule {
@@ -45,6 +54,42 @@ public class SDCube_DataModule {
 	private String FilePath_Group;
 	/** unique ID of this datamodule */
 	private String id;
+	/**
+	 * If true, loading only creates LazyDataObject placeholders for the Data
+	 * and Meta datasets, which are read on first use
+	 */
+	private boolean lazy;
+	/**
+	 * Chunking and compression options for the datasets written by this
+	 * DataModule, null for the H5IO default of contiguous datasets
+	 */
+	private H5IO_DatasetOptions datasetOptions;
+	/**
+	 * If not null, the child DataModules are loaded as parallel tasks on this
+	 * executor
+	 */
+	private ExecutorService executor;
+	/**
+	 * If not null, only the Data and Meta datasets it selects are read on
+	 * load, the others are left as LazyDataObject placeholders
+	 */
+	private SDCube_Projection projection;
+	/**
+	 * If true, the HDF5 file is opened read-only by the sessions this
+	 * DataModule opens itself
+	 */
+	private boolean readOnly;
+	/**
+	 * If true, numeric datasets are loaded as PrimitiveDataObjects instead of
+	 * boxed Data_1D/Data_2D
+	 */
+	private boolean primitive;
+	/**
+	 * The Data/ and Meta/ dataset names of this group as stored in the
+	 * SDCube_SampleIndex, loaded instead of listing the groups. Null (the
+	 * default) lists them.
+	 */
+	private String[] datasetNames;
 
 
 	/**
@@ -81,6 +126,190 @@ public class SDCube_DataModule {
 		return id;
 	}
 
+	/**
+	 * Sets whether loading this DataModule (and the sub-modules it loads)
+	 * reads its datasets right away or only creates LazyDataObject
+	 * placeholders that read their dataset on first use
+	 * 
+	 * @author Bjorn Millard
+	 * @param boolean lazy
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	/**
+	 * Returns true if this DataModule loads its datasets on demand
+	 * 
+	 * @author Bjorn Millard
+	 * @return boolean lazy
+	 */
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	/**
+	 * Sets the executor used to load the child DataModules in parallel, null
+	 * (the default) loads them one after the other. Each task reads the raw
+	 * values of one child while holding the session, so HDF5 is only ever
+	 * called from one thread at a time, and turns them into DataObjects
+	 * after releasing it. Children are added in file order, so the result is
+	 * the same as a sequential load. The executor is not shut down here.
+	 * 
+	 * @author Bjorn Millard
+	 * @param ExecutorService
+	 *            executor
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the executor used to load the child DataModules, null if they
+	 * are loaded sequentially
+	 * 
+	 * @author Bjorn Millard
+	 * @return ExecutorService
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the datasets that loading this DataModule (and the sub-modules it
+	 * loads) reads right away. The datasets left out are only read on first
+	 * use through LazyDataObject placeholders. Null (the default) reads
+	 * every dataset.
+	 * 
+	 * @author Bjorn Millard
+	 * @param SDCube_Projection
+	 *            projection
+	 */
+	public void setProjection(SDCube_Projection projection) {
+		this.projection = projection;
+	}
+
+	/**
+	 * Returns the datasets read on load, null if all of them are
+	 * 
+	 * @author Bjorn Millard
+	 * @return SDCube_Projection
+	 */
+	public SDCube_Projection getProjection() {
+		return projection;
+	}
+
+	/**
+	 * Sets the Data/ and Meta/ dataset names of this group, as returned by
+	 * SDCube_SampleIndex.getDatasetNames, so loading reads them without
+	 * listing the Data and Meta groups first. Null (the default) lists them.
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            [] datasetNames
+	 */
+	public void setDatasetNames(String[] datasetNames) {
+		this.datasetNames = datasetNames;
+	}
+
+	/**
+	 * Sets whether this DataModule (and the sub-modules it loads) opens its
+	 * HDF5 file read-only, see H5IO.openHDF5(String, boolean). Datasets left
+	 * as placeholders and Raw files take the mode of the session they were
+	 * loaded through.
+	 * 
+	 * @author Bjorn Millard
+	 * @param boolean
+	 *            readOnly
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Returns true if this DataModule opens its HDF5 file read-only
+	 * 
+	 * @author Bjorn Millard
+	 * @return boolean readOnly
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Sets whether this DataModule (and the sub-modules it loads) loads its
+	 * Float, Double and Integer datasets as PrimitiveDataObjects
+	 * (FloatMatrix2D, FloatArray1D, ...) rather than as boxed Data_1D and
+	 * Data_2D. False (the default) boxes them like H5IO.readDataset.
+	 * 
+	 * @param boolean
+	 *            primitive
+	 */
+	public void setPrimitive(boolean primitive) {
+		this.primitive = primitive;
+	}
+
+	/**
+	 * Returns true if this DataModule loads numeric datasets as
+	 * PrimitiveDataObjects
+	 * 
+	 * @return boolean primitive
+	 */
+	public boolean isPrimitive() {
+		return primitive;
+	}
+
+	/**
+	 * Returns true if the dataset of the given name within the given group of
+	 * this DataModule is read on load rather than left as a placeholder
+	 */
+	private boolean isRead(String group, String name) {
+		if (lazy)
+			return group.equals(SDCube_Projection.META)
+					&& name.equals("Sample_ID");
+		return projection == null || projection.isSelected(group, name);
+	}
+
+	/**
+	 * Sets the chunking, compression and fill value options used when this
+	 * DataModule and its sub-modules are written
+	 * 
+	 * @author Bjorn Millard
+	 * @param H5IO_DatasetOptions
+	 *            options
+	 */
+	public void setDatasetOptions(H5IO_DatasetOptions options) {
+		datasetOptions = options;
+	}
+
+	/**
+	 * Returns the dataset creation options of this DataModule, null if the
+	 * H5IO default is used
+	 * 
+	 * @author Bjorn Millard
+	 * @return H5IO_DatasetOptions
+	 */
+	public H5IO_DatasetOptions getDatasetOptions() {
+		return datasetOptions;
+	}
+
+	/**
+	 * Drops the in-memory copy of every lazily loaded dataset of this
+	 * DataModule and its sub-modules. They are read again on next use.
+	 * 
+	 * @author Bjorn Millard
+	 */
+	public void releaseData() {
+		for (int i = 0; i < TheDataGroup.size(); i++)
+			if (TheDataGroup.get(i) instanceof LazyDataObject)
+				((LazyDataObject) TheDataGroup.get(i)).release();
+		for (int i = 0; i < TheMetaGroup.size(); i++)
+			if (TheMetaGroup.get(i) instanceof LazyDataObject)
+				((LazyDataObject) TheMetaGroup.get(i)).release();
+		for (int i = 0; i < TheSubSamples.size(); i++)
+			TheSubSamples.get(i).releaseData();
+	}
+
 	/** 
 	 * Sets the H5 file this DataModule belongs to
 	 * @author Bjorn Millard
@@ -192,21 +421,14 @@ public class SDCube_DataModule {
 	}
 
 	/**
-	 * Adds the given File to the raw file group, but first converts it to a
-	 * byte[]
+	 * Adds the given File to the raw file group. The file is not read now,
+	 * but streamed into the SDCube when this DataModule is written
 	 * 
 	 * @author Bjorn Millard
 	 * @param File
 	 * */
 	public void addRaw(File fileToEncode) {
-		byte[] arr = H5IO.toByteArray(fileToEncode);
-		int len = arr.length;
-		Byte[] arr2 = new Byte[len];
-		for (int i = 0; i < len; i++)
-			arr2[i] = new Byte(arr[i]);
-
-		TheRawFileArrays.add(new Data_1D<Byte>(arr2, "BYTE", fileToEncode
-				.getName()));
+		TheRawFileArrays.add(new SDCube_RawFile(fileToEncode));
 	}
 
 	/**
@@ -274,7 +496,9 @@ public class SDCube_DataModule {
 	}
 
 	/**
-	 * Returns all DataCubes in the DataGroup
+	 * Returns all DataCubes in the DataGroup. NOTE: if this DataModule was
+	 * loaded lazily these are LazyDataObjects, use LazyDataObject.get() or
+	 * LazyDataObject.resolve() to reach the data
 	 * 
 	 * @author Bjorn Millard
 	 * @return ArrayList<SDCube_DataModule>
@@ -284,7 +508,8 @@ public class SDCube_DataModule {
 	}
 
 	/**
-	 * Returns all the DataCubes in the MetaGroup
+	 * Returns all the DataCubes in the MetaGroup. NOTE: if this DataModule was
+	 * loaded lazily these are LazyDataObjects
 	 * 
 	 * @author Bjorn Millard
 	 * @return ArrayList<SDCube_DataModule>
@@ -294,11 +519,11 @@ public class SDCube_DataModule {
 	}
 
 	/**
-	 * Returns all the byte[] arrays where each byte array represents a single
-	 * file
+	 * Returns the raw files of this DataModule: SDCube_RawFiles, or byte
+	 * Data_1Ds added through addRaw(DataObject)
 	 * 
 	 * @author Bjorn Millard
-	 * @return ArrayList<byte[]>
+	 * @return ArrayList<DataObject>
 	 * */
 	public ArrayList<DataObject> getRawFileArrays() {
 		return TheRawFileArrays;
@@ -314,6 +539,7 @@ public class SDCube_DataModule {
 
 		H5IO io = new H5IO();
 		io.openHDF5(FilePath_H5);
+		io.setDatasetOptions(datasetOptions);
 
 		ArrayList<SDCube_DataModule> arr = TheSubSamples;
 		int len = arr.size();
@@ -322,6 +548,8 @@ public class SDCube_DataModule {
 			SDCube_DataModule dm = arr.get(i);
 			String path = dm.getFilePath_Group();
 
+			if (dm.getDatasetOptions() == null)
+				dm.setDatasetOptions(datasetOptions);
 			dm.write(FilePath_H5);
 		}
 
@@ -330,11 +558,13 @@ public class SDCube_DataModule {
 
 		String path = FilePath_Group + "/Data";
 		for (int i = 0; i < numD; i++) {
-			DataObject dc = TheDataGroup.get(i);
+			DataObject dc = LazyDataObject.resolve(TheDataGroup.get(i));
 			String dcPath = path + "/" + dc.getName();
 			int rank = dc.getRank();	
 
-			if(rank==1)
+			if (dc instanceof PrimitiveDataObject)
+				io.writeDataset(FilePath_H5, dcPath, (PrimitiveDataObject) dc);
+			else if(rank==1)
 				io.writeDataset(FilePath_H5, dcPath, dc.getName(),
 						((Data_1D) dc));
 			else if (rank==2)
@@ -346,11 +576,13 @@ public class SDCube_DataModule {
 		int numM = TheMetaGroup.size();
 		path = FilePath_Group + "/Meta";
 		for (int i = 0; i < numM; i++) {
-			DataObject dc = TheMetaGroup.get(i);
+			DataObject dc = LazyDataObject.resolve(TheMetaGroup.get(i));
 			String dcPath = path + "/" + dc.getName();
 
 			int rank = dc.getRank();
-			if (rank == 1)
+			if (dc instanceof PrimitiveDataObject)
+				io.writeDataset(FilePath_H5, dcPath, (PrimitiveDataObject) dc);
+			else if (rank == 1)
 				io.writeDataset(FilePath_H5, dcPath, dc.getName(),
 						((Data_1D) dc));
 			else if (rank == 2)
@@ -358,19 +590,25 @@ public class SDCube_DataModule {
 						((Data_2D) dc));
 		}
 
-//		// Writing the Raw Group
-//		int numR = TheRawFileArrays.size();
-//		System.out.println("** WRITING " + numR + " rawObjects");
-//		path = FilePath_Group + "/Raw";
-//		for (int i = 0; i < numR; i++) {
-//			DataObject dc = TheRawFileArrays.get(i);
-//			String dcPath = path + "/" + dc.getName();
-//			int rank = dc.getRank();
-//			if (rank == 1)
-		// io.writeDataset(FilePath_H5, dcPath, dc.getName(),
-//						((Data_1D) dc));
-		// }
-		
+		// Writing the Raw Group, each distinct file content stored once
+		int numR = TheRawFileArrays.size();
+		path = FilePath_Group + "/Raw";
+		for (int i = 0; i < numR; i++) {
+			DataObject dc = TheRawFileArrays.get(i);
+			String dcPath = path + "/" + dc.getName();
+			try {
+				if (dc instanceof SDCube_RawFile)
+					((SDCube_RawFile) dc).write(io, FilePath_H5, dcPath);
+				else if (dc instanceof Data_1D)
+					io.writeRawBytesToHDF5(toBytes((Data_1D) dc),
+							FilePath_H5, dcPath);
+			} catch (Exception e) {
+				io.closeHDF5();
+				throw new H5IO_Exception("Cannot write raw file '" + dcPath
+						+ "': " + e.getMessage());
+			}
+		}
+
 		io.closeHDF5();
 
 	}
@@ -397,6 +635,17 @@ public class SDCube_DataModule {
 		FilePath_H5 = filePathToSDCube;
 		write();
 	}
+
+	/**
+	 * Unboxes a raw file added as a Data_1D of Bytes
+	 */
+	static private byte[] toBytes(Data_1D<?> dat) {
+		Object[] arr = dat.getData();
+		byte[] bytes = new byte[arr.length];
+		for (int i = 0; i < arr.length; i++)
+			bytes[i] = ((Number) arr[i]).byteValue();
+		return bytes;
+	}
 	/**
 	 * Writes this DataModule object to the given SDCube HDF5 file path and Relative group path
 	 * 
@@ -429,10 +678,27 @@ public class SDCube_DataModule {
 	 * @throws H5IO_Exception 
 	 *  */
 	public void load(H5IO io) throws H5IO_Exception
+	{
+		H5IO_Session session = new H5IO_Session(io, FilePath_H5);
+		try {
+			load(session);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * When reading an SDCube file to create and SDCube Object, this loads all
+	 * groups from the file of the given session into the Java Object.
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 * */
+	public void load(H5IO_Session session) throws H5IO_Exception
 	{
 
 		try {
-			loadSamples(io);
+			loadSamples(session);
 
 		} catch (H5IO_Exception e) {
 System.out.println("**Error loading Samples");
@@ -441,75 +707,57 @@ e.printStackTrace();
 
 
 		try {
-			loadData(io);
+			loadData(session);
 		} catch (H5IO_Exception e) {
 			System.out.println("**Error loading Data");
 			e.printStackTrace();
 		}
 		try {
-			loadMeta(io);
+			loadMeta(session);
 		} catch (H5IO_Exception e) {
 			System.out.println("**Error loading Meta");
 			e.printStackTrace();
 		}
-		
+		loadRaw(session);
 
 	}
 
 	/**
-	 * Loads all groups from the file into the Java Object.
+	 * Loads all groups from the file into the Java Object. The file is
+	 * opened read-only if this DataModule is set read-only.
 	 * 
 	 * @author Bjorn Millard
 	 * @throws H5IO_Exception
 	 * */
 	public void loadSample(String sdcPath, String id) throws H5IO_Exception {
-		H5IO io = new H5IO();
-		// Find which sample refers to this ID, then reset the h5Group path to
-		// that folder
-
-		FilePath_H5 = sdcPath + "/Data.h5";
-		FilePath_Group = null;
-		io.openHDF5(FilePath_H5);
-		int num = io.getGroupChildCount(FilePath_H5, "./Children");
-
-		// Determine number of samples
-		String childPath = "./Children";
-		String[] names = io.getGroupChildNames(FilePath_H5, childPath);
-
-		for (int i = 0; i < num; i++) {
-			Data_2D dat = (Data_2D) io.readDataset(FilePath_H5, "./Children/"
-					+ names[i]
-					+ "/Meta/Sample_ID");
-			String[][] data = (String[][]) dat.getData();
-			if (data[0][0].trim().equalsIgnoreCase(id.trim())) {
-				FilePath_Group = "./Children/" + names[i];
-				break;
-			}
+		H5IO_Session session = new H5IO_Session(sdcPath + "/Data.h5",
+				readOnly);
+		try {
+			loadSample(sdcPath, id, session);
+		} finally {
+			session.close();
 		}
-		io.closeHDF5();
+	}
 
+	/**
+	 * Loads the sample with the given ID through an already open session on
+	 * the SDCube's Data.h5 file. The sample group is looked up in the
+	 * SDCube_SampleIndex rather than by scanning every child group
+	 * 
+	 * @author Bjorn Millard
+	 * @param String
+	 *            sdcPath, String id, H5IO_Session session
+	 * @throws H5IO_Exception
+	 * */
+	public void loadSample(String sdcPath, String id, H5IO_Session session)
+			throws H5IO_Exception {
+		FilePath_H5 = sdcPath + "/Data.h5";
+		SDCube_SampleIndex index = SDCube_SampleIndex.get(sdcPath, session);
+		FilePath_Group = index.getGroupPath(id);
 		if (FilePath_Group == null)
 			return;
-
-		try {
-			loadSamples(io);
-		} catch (H5IO_Exception e) {
-			System.out.println("**Error loading Samples");
-			e.printStackTrace();
-		}
-
-		try {
-			loadData(io);
-		} catch (H5IO_Exception e) {
-			System.out.println("**Error loading Data");
-			e.printStackTrace();
-		}
-		try {
-			loadMeta(io);
-		} catch (H5IO_Exception e) {
-			System.out.println("**Error loading Meta");
-			e.printStackTrace();
-		}
+		datasetNames = index.getDatasetNames(id);
+		load(session);
 	}
 
 	/**
@@ -520,23 +768,208 @@ e.printStackTrace();
 	 * @throws H5IO_Exception
 	 * */
 	public void loadSamples(H5IO io) throws H5IO_Exception
+	{
+		H5IO_Session session = new H5IO_Session(io, FilePath_H5);
+		try {
+			loadSamples(session);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Loads the Sample group from the file of the given session into the Java
+	 * Object.
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 * */
+	public void loadSamples(H5IO_Session session) throws H5IO_Exception
 	{
 		// System.out.println("**Loading Samples for Level: "+FilePath_Group);
 		//Determine number of samples
 		String childPath = FilePath_Group + "/Children";
-		String[] names = io.getGroupChildNames(FilePath_H5, childPath);
+		String[] names = session.getGroupChildNames(childPath);
 
 		if (names == null)
 			return;
+		// Lazy loading reads almost nothing, so there is nothing to fan out
+		if (executor != null && !lazy) {
+			loadSamplesParallel(session, names);
+			return;
+		}
 		int num = names.length;
 		for (int i = 0; i < num; i++) {
 			SDCube_DataModule mod = new SDCube_DataModule(FilePath_H5,
 					FilePath_Group + "/Children/" + names[i]);
-			mod.load(io);
+			mod.setLazy(lazy);
+			mod.setProjection(projection);
+			mod.setReadOnly(readOnly);
+			mod.setPrimitive(primitive);
+			mod.load(session);
 			TheSubSamples.add(mod);
 		}
 	}
 
+	/**
+	 * Loads the given children as one task each on the executor and adds
+	 * them in the given order
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 * */
+	private void loadSamplesParallel(final H5IO_Session session,
+			String[] names) throws H5IO_Exception {
+		ArrayList<Future<SDCube_DataModule>> futures = new ArrayList<Future<SDCube_DataModule>>();
+		for (int i = 0; i < names.length; i++) {
+			final SDCube_DataModule mod = new SDCube_DataModule(FilePath_H5,
+					FilePath_Group + "/Children/" + names[i]);
+			mod.setProjection(projection);
+			mod.setReadOnly(readOnly);
+			mod.setPrimitive(primitive);
+			futures.add(executor.submit(new Callable<SDCube_DataModule>() {
+				public SDCube_DataModule call() {
+					mod.loadConcurrently(session);
+					return mod;
+				}
+			}));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				TheSubSamples.add(futures.get(i).get());
+			} catch (InterruptedException e) {
+				cancel(futures);
+				Thread.currentThread().interrupt();
+				throw new H5IO_Exception("Interrupted loading "
+						+ FilePath_Group + "/Children");
+			} catch (ExecutionException e) {
+				cancel(futures);
+				throw new H5IO_Exception("Cannot load " + FilePath_Group
+						+ "/Children/" + names[i] + ": " + e.getCause());
+			}
+		}
+	}
+
+	static private void cancel(ArrayList<Future<SDCube_DataModule>> futures) {
+		for (int i = 0; i < futures.size(); i++)
+			futures.get(i).cancel(true);
+	}
+
+	/**
+	 * Loads this DataModule like load(session), but only holds the session
+	 * while reading raw values from the file. Turning the values into
+	 * DataObjects happens afterwards so other threads can use the session
+	 * meanwhile.
+	 * 
+	 * @author Bjorn Millard
+	 * */
+	private void loadConcurrently(H5IO_Session session) {
+		ArrayList<RawDataset> data;
+		ArrayList<RawDataset> meta;
+		synchronized (session) {
+			try {
+				loadSamples(session);
+			} catch (H5IO_Exception e) {
+				System.out.println("**Error loading Samples");
+				e.printStackTrace();
+			}
+			data = readRawGroup(session, "Data");
+			meta = readRawGroup(session, "Meta");
+			loadRaw(session);
+		}
+
+		for (int i = 0; i < data.size(); i++)
+			TheDataGroup.add(data.get(i).toDataObject(primitive));
+		for (int i = 0; i < meta.size(); i++) {
+			DataObject dat = meta.get(i).toDataObject(primitive);
+			TheMetaGroup.add(dat);
+			if (meta.get(i).name.equals("Sample_ID"))
+				setId((String) ((Data_2D) dat).getData()[0][0]);
+		}
+	}
+
+	/**
+	 * Reads the raw values of every dataset of the given sub group. Stops at
+	 * the first dataset that cannot be read and keeps the ones read before
+	 * it.
+	 * 
+	 * @author Bjorn Millard
+	 * */
+	private ArrayList<RawDataset> readRawGroup(H5IO_Session session,
+			String group) {
+		ArrayList<RawDataset> raw = new ArrayList<RawDataset>();
+		try {
+			String[] names = session.getGroupChildNames(FilePath_Group + "/"
+					+ group);
+			if (names == null)
+				return raw;
+			for (int i = 0; i < names.length; i++) {
+				String dsPath = FilePath_Group + "/" + group + "/" + names[i];
+				if (!isRead(group, names[i])) {
+					raw.add(new RawDataset(names[i], new LazyDataObject(
+							FilePath_H5, dsPath, session.isReadOnly(),
+							primitive)));
+					continue;
+				}
+				H5IO_DatasetInfo info = session.getDatasetInfo(dsPath);
+				RawDataset ds = new RawDataset(names[i], info);
+				if (info != null) {
+					try {
+						ds.buffer = H5IO.readBuffer(info,
+								info.getDimensions(),
+								HDF5Constants.H5S_ALL, HDF5Constants.H5S_ALL);
+					} catch (HDF5Exception ex) {
+						throw new H5IO_Exception("Cannot read '" + dsPath
+								+ "': " + ex.getMessage());
+					}
+				}
+				raw.add(ds);
+			}
+		} catch (H5IO_Exception e) {
+			System.out.println("**Error loading " + group);
+			e.printStackTrace();
+		}
+		return raw;
+	}
+
+	/**
+	 * The raw values of one dataset read by loadConcurrently, not yet turned
+	 * into a DataObject
+	 */
+	static private class RawDataset {
+		String name;
+		String dataType;
+		long[] dims;
+		Object buffer;
+		/** Placeholder of a dataset left out of the projection */
+		LazyDataObject placeholder;
+
+		RawDataset(String name, LazyDataObject placeholder) {
+			this.name = name;
+			this.placeholder = placeholder;
+		}
+
+		RawDataset(String name, H5IO_DatasetInfo info) {
+			this.name = name;
+			if (info != null) {
+				dataType = info.getDataType();
+				dims = info.getDimensions();
+			}
+		}
+
+		DataObject toDataObject(boolean primitive) {
+			if (placeholder != null)
+				return placeholder;
+			if (buffer == null)
+				return null;
+			if (primitive && H5IO.isPrimitiveType(dataType))
+				return H5IO.toPrimitiveObject(name, dataType, dims, buffer,
+						Array.getLength(buffer));
+			return H5IO.toDataObject(name, dataType, dims, buffer);
+		}
+	}
+
 	/**
 	 * When reading an SDCube file to create and SDCube Object, this loads the
 	 * Meta group from the file into the Java Object.
@@ -545,24 +978,57 @@ e.printStackTrace();
 	 * @throws H5IO_Exception
 	 * */
 	public void loadMeta(H5IO io) throws H5IO_Exception
+	{
+		H5IO_Session session = new H5IO_Session(io, FilePath_H5);
+		try {
+			loadMeta(session);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Loads the Meta group from the file of the given session into the Java
+	 * Object.
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 * */
+	public void loadMeta(H5IO_Session session) throws H5IO_Exception
 	{
 		// System.out.println("**Loading Meta for Level: " + FilePath_Group);
 		// Determine number of samples
-		String childPath = FilePath_Group + "/Meta";
-		String[] names = io.getGroupChildNames(FilePath_H5, childPath);
+		String[] names = getDatasetNames(session, "Meta");
 		if (names == null)
 			return;
 
+		DataObject[] dats = readGroup(session, "Meta", names);
 		for (int i = 0; i < names.length; i++)
  {
-			TheMetaGroup.add(io.readDataset(FilePath_H5, FilePath_Group
-					+ "/Meta/" + names[i]));
+			TheMetaGroup.add(dats[i]);
 			if (names[i].equals("Sample_ID"))
-				setId((String) ((Data_2D) TheMetaGroup.get(i)).getData()[0][0]);
+				setId((String) ((Data_2D) dats[i]).getData()[0][0]);
 		}
 
 	}
 
+	/**
+	 * Lists the Raw group of the file of the given session as SDCube_RawFiles.
+	 * Their content stays in the file until extracted.
+	 * 
+	 * @author Bjorn Millard
+	 * */
+	public void loadRaw(H5IO_Session session)
+	{
+		String childPath = FilePath_Group + "/Raw";
+		String[] names = session.getGroupChildNames(childPath);
+		if (names == null)
+			return;
+		for (int i = 0; i < names.length; i++)
+			TheRawFileArrays.add(new SDCube_RawFile(FilePath_H5, childPath
+					+ "/" + names[i], session.isReadOnly()));
+	}
+
 	/**
 	 * When reading an SDCube file to create and SDCube Object, this loads the
 	 * Data group from the file into the Java Object.
@@ -571,17 +1037,85 @@ e.printStackTrace();
 	 * @throws H5IO_Exception
 	 * */
 	public void loadData(H5IO io) throws H5IO_Exception
+	{
+		H5IO_Session session = new H5IO_Session(io, FilePath_H5);
+		try {
+			loadData(session);
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Loads the Data group from the file of the given session into the Java
+	 * Object.
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 * */
+	public void loadData(H5IO_Session session) throws H5IO_Exception
 	{
 		// Determine number of samples
-		String childPath = FilePath_Group + "/Data";
-		String[] names = io.getGroupChildNames(FilePath_H5, childPath);
+		String[] names = getDatasetNames(session, "Data");
 		if (names == null)
 			return;
 
+		DataObject[] dats = readGroup(session, "Data", names);
+		for (int i = 0; i < names.length; i++)
+			TheDataGroup.add(dats[i]);
+	}
+
+	/**
+	 * Returns the dataset names of the given sub group (Data or Meta), from
+	 * the names set by setDatasetNames if any, else by listing the group.
+	 * Stored names are sorted into the order HDF5 lists them in.
+	 * 
+	 * @author Bjorn Millard
+	 * @param H5IO_Session
+	 *            session, String group
+	 * @return String[] names
+	 * */
+	private String[] getDatasetNames(H5IO_Session session, String group) {
+		if (datasetNames == null)
+			return session.getGroupChildNames(FilePath_Group + "/" + group);
+		String prefix = group + "/";
+		ArrayList<String> names = new ArrayList<String>();
+		for (int i = 0; i < datasetNames.length; i++)
+			if (datasetNames[i].startsWith(prefix))
+				names.add(datasetNames[i].substring(prefix.length()));
+		if (names.size() == 0)
+			return null;
+		String[] arr = names.toArray(new String[names.size()]);
+		Arrays.sort(arr);
+		return arr;
+	}
+
+	/**
+	 * Reads the given datasets of the given sub group with one batch read,
+	 * the ones not to be read on load are returned as LazyDataObject
+	 * placeholders
+	 * 
+	 * @author Bjorn Millard
+	 * @throws H5IO_Exception
+	 * */
+	private DataObject[] readGroup(H5IO_Session session, String group,
+			String[] names) throws H5IO_Exception {
+		DataObject[] dats = new DataObject[names.length];
+		ArrayList<String> paths = new ArrayList<String>();
 		for (int i = 0; i < names.length; i++) {
-			TheDataGroup.add(io.readDataset(FilePath_H5, FilePath_Group
-					+ "/Data/" + names[i]));
+			String dsPath = FilePath_Group + "/" + group + "/" + names[i];
+			if (isRead(group, names[i]))
+				paths.add(dsPath);
+			else
+				dats[i] = new LazyDataObject(FilePath_H5, dsPath, session
+						.isReadOnly(), primitive);
 		}
+		DataObject[] read = session.readDatasets(paths
+				.toArray(new String[paths.size()]), primitive);
+		for (int i = 0, j = 0; i < names.length; i++)
+			if (dats[i] == null)
+				dats[i] = read[j++];
+		return dats;
 	}
 	
 	/**
@@ -592,8 +1126,13 @@ e.printStackTrace();
 	public int getNumSamples()
 	{
 		try {
-			return new H5IO().getGroupChildCount(FilePath_H5, FilePath_Group
-					+ "/Children");
+			H5IO_Session session = new H5IO_Session(FilePath_H5, readOnly);
+			try {
+				return session.getGroupChildCount(FilePath_Group
+						+ "/Children");
+			} finally {
+				session.close();
+			}
 		} catch (H5IO_Exception e) {
 			e.printStackTrace();
 		}
@@ -608,9 +1147,13 @@ e.printStackTrace();
 	public String[] getSampleNames()
 	{
 		  try {
-
-			return new H5IO().getGroupChildNames(FilePath_H5, FilePath_Group
-					+ "/Children");
+			H5IO_Session session = new H5IO_Session(FilePath_H5, readOnly);
+			try {
+				return session.getGroupChildNames(FilePath_Group
+						+ "/Children");
+			} finally {
+				session.close();
+			}
 		} catch (H5IO_Exception e) {
 			System.out.println("**ERROR getting sample names**");
 			e.printStackTrace();
@@ -0,0 +1,238 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follows an SDCube while it is being written in live mode (see
+ * SDCube.setLive) and hands out each sample once it has been published.
+ * poll() first compares the size and modification time of Data.h5 and
+ * ExpDesign.xml with the last poll, so polling an unchanged cube costs two
+ * stat calls. Only when they changed is Data.h5 opened, read-only by
+ * default, to load the Children groups not seen yet. HDF5 1.8 readers do
+ * not see what another process writes to a file they hold open, so the file
+ * is opened per poll rather than kept open. A sample whose ExpDesign is not
+ * in ExpDesign.xml yet is returned by a later poll. Without SWMR, which HDF5
+ * 1.8 lacks, nothing stops a poll from opening Data.h5 while the writer is
+ * changing it; such a poll returns what it could read, or nothing if the
+ * file cannot be opened, and the file is tried again by the next poll.
+ */
+public class SDCube_LiveReader {
+
+	private static final Logger logger = Logger.getLogger("hdf.HDFConnector");
+
+	/** Milliseconds between two polls of waitForSamples */
+	static public int POLL_INTERVAL = 500;
+
+	private String sdcPath;
+	private String h5Path;
+	private String xmlPath;
+	/** True if Data.h5 is opened read-only, the default */
+	private boolean readOnly = true;
+	/** Datasets read for each new sample, null for all of them */
+	private SDCube_Projection projection;
+	/** Children groups already handed out */
+	private HashSet<String> TheSeenGroups;
+	/** Size and modification times seen by the last successful poll */
+	private long h5Length = -1;
+	private long h5Modified = -1;
+	private long xmlLength = -1;
+	private long xmlModified = -1;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param String
+	 *            pathToSDCube
+	 */
+	public SDCube_LiveReader(String sdcPath) {
+		this.sdcPath = sdcPath;
+		h5Path = sdcPath + "/Data.h5";
+		xmlPath = sdcPath + "/ExpDesign.xml";
+		TheSeenGroups = new HashSet<String>();
+	}
+
+	/**
+	 * Sets whether Data.h5 is opened read-only, true by default. A reader
+	 * within the writing process should set it to false, as HDF5 refuses to
+	 * open a file read-write while the same process holds it read-only.
+	 * 
+	 * @param boolean
+	 *            readOnly
+	 */
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Sets the datasets read for each new sample, null (the default) for all
+	 * of them
+	 * 
+	 * @param SDCube_Projection
+	 *            projection
+	 */
+	public void setProjection(SDCube_Projection projection) {
+		this.projection = projection;
+	}
+
+	/**
+	 * Returns the number of samples handed out so far
+	 * 
+	 * @return int numSamples
+	 */
+	public int getNumSamples() {
+		return TheSeenGroups.size();
+	}
+
+	/**
+	 * Returns the samples published since the last poll, in the order they
+	 * were written, or an empty list if there are none. Errors opening a
+	 * cube that is being written are logged and retried on the next poll.
+	 * 
+	 * @return ArrayList<SDCube_Sample> newSamples
+	 */
+	public synchronized ArrayList<SDCube_Sample> poll() {
+		ArrayList<SDCube_Sample> samples = new ArrayList<SDCube_Sample>();
+		File h5 = new File(h5Path);
+		File xml = new File(xmlPath);
+		long hl = h5.length();
+		long hm = h5.lastModified();
+		long xl = xml.length();
+		long xm = xml.lastModified();
+		if (hl == 0 || (hl == h5Length && hm == h5Modified && xl == xmlLength
+				&& xm == xmlModified))
+			return samples;
+
+		boolean pending = false;
+		H5IO_Session session = null;
+		try {
+			session = new H5IO_Session(h5Path, readOnly);
+			String[] names = session.getGroupChildNames("./Children");
+			if (names != null) {
+				sortNumerically(names);
+				HashMap<String, ExpDesign_Sample> designs = null;
+				for (int i = 0; i < names.length; i++) {
+					String group = "./Children/" + names[i];
+					if (TheSeenGroups.contains(group))
+						continue;
+					SDCube_DataModule data = new SDCube_DataModule(h5Path,
+							group);
+					data.setProjection(projection);
+					data.setReadOnly(readOnly);
+					data.load(session);
+					if (designs == null)
+						designs = getDesigns();
+					ExpDesign_Sample design = data.getId() == null ? null
+							: designs.get(data.getId().trim());
+					if (design == null) {
+						// Its ExpDesign is appended after the data
+						pending = true;
+						continue;
+					}
+					TheSeenGroups.add(group);
+					samples.add(new SDCube_Sample(data, design, data.getId()));
+				}
+			}
+		} catch (H5IO_Exception e) {
+			logger.log(Level.FINE, "Live cube not readable yet: " + h5Path,
+					e);
+			return samples;
+		} finally {
+			try {
+				if (session != null)
+					session.close();
+			} catch (H5IO_Exception e) {
+				e.printStackTrace();
+			}
+		}
+		// Polling again right away while an ExpDesign is missing
+		if (!pending) {
+			h5Length = hl;
+			h5Modified = hm;
+			xmlLength = xl;
+			xmlModified = xm;
+		}
+		return samples;
+	}
+
+	/**
+	 * Polls every POLL_INTERVAL milliseconds until new samples are published
+	 * or the timeout elapses, and returns them
+	 * 
+	 * @param long timeoutMillis
+	 * @return ArrayList<SDCube_Sample> newSamples, empty on timeout
+	 * @throws InterruptedException
+	 */
+	public ArrayList<SDCube_Sample> waitForSamples(long timeout)
+			throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		while (true) {
+			ArrayList<SDCube_Sample> samples = poll();
+			long left = end - System.currentTimeMillis();
+			if (samples.size() > 0 || left <= 0)
+				return samples;
+			Thread.sleep(Math.min(POLL_INTERVAL, left));
+		}
+	}
+
+	/**
+	 * Returns the ExpDesign_Samples of the cube by Sample_ID
+	 */
+	private HashMap<String, ExpDesign_Sample> getDesigns() {
+		HashMap<String, ExpDesign_Sample> byID = new HashMap<String, ExpDesign_Sample>();
+		ArrayList<ExpDesign_Sample> all = ExpDesign_IO.parseSamples(xmlPath);
+		if (all != null)
+			for (int i = 0; i < all.size(); i++) {
+				String id = all.get(i).getId().trim();
+				if (!byID.containsKey(id))
+					byID.put(id, all.get(i));
+			}
+		return byID;
+	}
+
+	/**
+	 * Sorts the Children group names, which are sample numbers, in numeric
+	 * rather than alphabetical order
+	 */
+	static private void sortNumerically(String[] names) {
+		Arrays.sort(names, new Comparator<String>() {
+			public int compare(String a, String b) {
+				if (a.length() != b.length())
+					return a.length() - b.length();
+				return a.compareTo(b);
+			}
+		});
+	}
+
+	public String toString() {
+		return "Live SDCube: " + sdcPath + " samples: "
+				+ TheSeenGroups.size();
+	}
+}
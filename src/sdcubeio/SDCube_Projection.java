@@ -0,0 +1,163 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+
+/**
+ * The datasets to read when loading samples, given per group ("Data",
+ * "Meta") as dataset names or glob patterns where '*' matches any run of
+ * characters and '?' any single character. Datasets that are not selected
+ * are not read: the DataModule holds a LazyDataObject placeholder for them
+ * instead, so they can still be read on first use. A group without any
+ * pattern has none of its datasets read. The Sample_ID Meta dataset is
+ * always read as it is needed to match a sample with its ExpDesign.
+ */
+public class SDCube_Projection {
+
+	/** Group holding the measurements of a sample */
+	static public final String DATA = "Data";
+	/** Group holding the metadata of a sample */
+	static public final String META = "Meta";
+
+	/** Plain dataset names, per group */
+	private HashMap<String, HashSet<String>> TheNames;
+	/** Compiled glob patterns, per group */
+	private HashMap<String, ArrayList<Pattern>> ThePatterns;
+
+	/**
+	 * Constructor, selecting no dataset
+	 */
+	public SDCube_Projection() {
+		TheNames = new HashMap<String, HashSet<String>>();
+		ThePatterns = new HashMap<String, ArrayList<Pattern>>();
+	}
+
+	/**
+	 * Constructor selecting the given Data dataset names or patterns
+	 * 
+	 * @param String
+	 *            [] dataNamesOrPatterns
+	 */
+	public SDCube_Projection(String[] data) {
+		this();
+		for (int i = 0; i < data.length; i++)
+			add(DATA, data[i]);
+	}
+
+	/**
+	 * Selects the datasets of the given group matching the given name or glob
+	 * pattern
+	 * 
+	 * @param String
+	 *            group, String nameOrPattern
+	 */
+	public void add(String group, String pattern) {
+		if (pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0) {
+			HashSet<String> names = TheNames.get(group);
+			if (names == null) {
+				names = new HashSet<String>();
+				TheNames.put(group, names);
+			}
+			names.add(pattern);
+			return;
+		}
+		ArrayList<Pattern> patterns = ThePatterns.get(group);
+		if (patterns == null) {
+			patterns = new ArrayList<Pattern>();
+			ThePatterns.put(group, patterns);
+		}
+		patterns.add(compile(pattern));
+	}
+
+	/**
+	 * Selects the Data datasets matching the given name or glob pattern
+	 * 
+	 * @param String
+	 *            nameOrPattern
+	 */
+	public void addData(String pattern) {
+		add(DATA, pattern);
+	}
+
+	/**
+	 * Selects the Meta datasets matching the given name or glob pattern
+	 * 
+	 * @param String
+	 *            nameOrPattern
+	 */
+	public void addMeta(String pattern) {
+		add(META, pattern);
+	}
+
+	/**
+	 * Returns true if the dataset of the given name within the given group is
+	 * to be read
+	 * 
+	 * @param String
+	 *            group, String datasetName
+	 * @return boolean selected
+	 */
+	public boolean isSelected(String group, String name) {
+		if (group.equals(META) && name.equals("Sample_ID"))
+			return true;
+		HashSet<String> names = TheNames.get(group);
+		if (names != null && names.contains(name))
+			return true;
+		ArrayList<Pattern> patterns = ThePatterns.get(group);
+		if (patterns != null)
+			for (int i = 0; i < patterns.size(); i++)
+				if (patterns.get(i).matcher(name).matches())
+					return true;
+		return false;
+	}
+
+	/**
+	 * Turns a glob pattern into a regular expression matching the whole name
+	 */
+	static private Pattern compile(String glob) {
+		StringBuffer regex = new StringBuffer();
+		StringBuffer literal = new StringBuffer();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c != '*' && c != '?') {
+				literal.append(c);
+				continue;
+			}
+			if (literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+				literal.setLength(0);
+			}
+			regex.append(c == '*' ? ".*" : ".");
+		}
+		if (literal.length() > 0)
+			regex.append(Pattern.quote(literal.toString()));
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+
+	public String toString() {
+		return "Names: " + TheNames + " Patterns: " + ThePatterns;
+	}
+}
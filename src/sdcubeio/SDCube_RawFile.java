@@ -0,0 +1,245 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+import ncsa.hdf.hdf5lib.HDF5Constants;
+import ncsa.hdf.hdf5lib.exceptions.HDF5Exception;
+
+/**
+ * A file attached to a DataModule's Raw group. Raw files are never held in
+ * memory: one added from disc is streamed into the SDCube when the
+ * DataModule is written, and one loaded from an SDCube only records where
+ * it is, to be streamed out with extract() or writeTo(). Within an SDCube
+ * each distinct content is stored once, under ./Raw/Blobs/&lt;SHA-1&gt;, and
+ * every &lt;group&gt;/Raw/&lt;name&gt; is a hard link to its blob, so a
+ * flat-field image or protocol shared by every well costs its size once.
+ */
+public class SDCube_RawFile implements DataObject {
+
+	private String name;
+	/** File on disc to store, null if only stored in an SDCube */
+	private File sourceFile;
+	/** SDCube(HDF5) file and link path where it is stored, if any */
+	private String h5Path;
+	private String datasetPath;
+	/** True if the SDCube file is to be opened read-only */
+	private boolean readOnly;
+	/** Hex SHA-1 of the content, known once written */
+	private String hash;
+	private long size = -1;
+
+	/**
+	 * Creates the raw file of the given file on disc, stored under its file
+	 * name
+	 * 
+	 * @param File
+	 *            file
+	 */
+	public SDCube_RawFile(File file) {
+		sourceFile = file;
+		name = file.getName();
+	}
+
+	/**
+	 * Creates the raw file stored at the given path within the given SDCube
+	 * HDF5 file
+	 * 
+	 * @param String
+	 *            h5FilePath, String datasetPathWithinHDF5
+	 */
+	public SDCube_RawFile(String h5Path, String datasetPath) {
+		this(h5Path, datasetPath, false);
+	}
+
+	/**
+	 * Creates the raw file stored at the given path within the given SDCube
+	 * HDF5 file, which is opened read-only if readOnly is true
+	 * 
+	 * @param String
+	 *            h5FilePath, String datasetPathWithinHDF5, boolean readOnly
+	 */
+	public SDCube_RawFile(String h5Path, String datasetPath, boolean readOnly) {
+		this.h5Path = h5Path;
+		this.datasetPath = datasetPath;
+		this.readOnly = readOnly;
+		name = H5IO_Session.getDatasetName(datasetPath);
+	}
+
+	/**
+	 * Stores this file at the given path of the open HDF5 file, streaming
+	 * its content in unless a blob with the same content is already there
+	 */
+	void write(H5IO<?> io, String h5FilePath, String linkPath)
+			throws IOException, H5IO_Exception, HDF5Exception {
+		if (sourceFile != null)
+			hash = io.writeRawFileToHDF5(sourceFile.getPath(), h5FilePath,
+					linkPath);
+		else if (new File(h5FilePath).getCanonicalPath().equals(
+				new File(h5Path).getCanonicalPath())) {
+			// Already within this SDCube, only linking it if moved
+			if (!linkPath.equals(datasetPath))
+				io.linkHard(h5FilePath, datasetPath, linkPath);
+		} else {
+			// Stored in another SDCube, staging it through a temp file
+			File tmp = File.createTempFile("sdcube_raw", null);
+			try {
+				extract(tmp.getPath());
+				hash = io.writeRawFileToHDF5(tmp.getPath(), h5FilePath,
+						linkPath);
+			} finally {
+				tmp.delete();
+			}
+		}
+		h5Path = h5FilePath;
+		datasetPath = linkPath;
+	}
+
+	/**
+	 * Streams the content of this file to the given file path
+	 * 
+	 * @param String
+	 *            destinationFilePath
+	 * @throws IOException
+	 * @throws H5IO_Exception
+	 */
+	public void extract(String destinationPath) throws IOException,
+			H5IO_Exception {
+		if (datasetPath == null) {
+			H5IO.copyFile(sourceFile.getPath(), destinationPath);
+			return;
+		}
+		H5IO<?> io = new H5IO<Object>();
+		io.openHDF5(h5Path, readOnly);
+		try {
+			io.readFileFromHDF5(h5Path, datasetPath, destinationPath);
+		} catch (HDF5Exception e) {
+			throw new H5IO_Exception("Cannot extract '" + datasetPath
+					+ "': " + e.getMessage());
+		} finally {
+			io.closeHDF5();
+		}
+	}
+
+	/**
+	 * Streams the content of this file, as stored in its SDCube, to the given
+	 * channel and returns the number of bytes written
+	 * 
+	 * @param WritableByteChannel
+	 *            out
+	 * @return long bytesWritten
+	 * @throws IOException
+	 * @throws H5IO_Exception
+	 */
+	public long writeTo(WritableByteChannel out) throws IOException,
+			H5IO_Exception {
+		if (datasetPath == null)
+			throw new H5IO_Exception("'" + name
+					+ "' is not stored in an SDCube yet");
+		H5IO<?> io = new H5IO<Object>();
+		io.openHDF5(h5Path, readOnly);
+		try {
+			return io.readChannelFromHDF5(h5Path, datasetPath, out);
+		} catch (HDF5Exception e) {
+			throw new H5IO_Exception("Cannot read '" + datasetPath + "': "
+					+ e.getMessage());
+		} finally {
+			io.closeHDF5();
+		}
+	}
+
+	/**
+	 * Returns the size in bytes of the content
+	 * 
+	 * @return long size
+	 */
+	public synchronized long getSize() {
+		if (size < 0) {
+			if (datasetPath == null)
+				return sourceFile.length();
+			try {
+				H5IO_Session session = new H5IO_Session(h5Path, readOnly);
+				try {
+					size = session.getDimensions(datasetPath)[0];
+				} finally {
+					session.close();
+				}
+			} catch (H5IO_Exception e) {
+				e.printStackTrace();
+				return -1;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the hex SHA-1 of the content if this file was written in this
+	 * session, otherwise null
+	 * 
+	 * @return String sha1
+	 */
+	public String getHash() {
+		return hash;
+	}
+
+	/**
+	 * Returns the file on disc this raw file was created from, or null
+	 * 
+	 * @return File
+	 */
+	public File getFile() {
+		return sourceFile;
+	}
+
+	/**
+	 * Returns the path of the link to this file within its SDCube, or null if
+	 * not stored yet
+	 * 
+	 * @return String datasetPath
+	 */
+	public String getDatasetPath() {
+		return datasetPath;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getHDFType() {
+		return HDF5Constants.H5T_NATIVE_CHAR;
+	}
+
+	public long[] getDimensions() {
+		return new long[] { getSize() };
+	}
+
+	public String getDataType() {
+		return Data_1D.BYTE;
+	}
+
+	public int getRank() {
+		return 1;
+	}
+}
@@ -0,0 +1,357 @@
+/**
+   SDCube Programming Library
+   Software for the creation and manipulation of semantically-typed
+   data hypercubes
+
+   This program is free software: you can redistribute it and/or modify
+   it under the terms of the GNU Lesser General Public License as
+   published by the Free Software Foundation, either version 3 of the
+   License, or (at your option) any later version.
+
+   This program is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU Lesser General Public License for more details.
+
+   You should have received a copy of the GNU Lesser General Public
+   License along with this program.  If not, see
+   <http://www.gnu.org/licenses/>.
+ */
+
+
+package sdcubeio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index from Sample_ID to the HDF5 group path of that sample within an
+ * SDCube, so a sample can be found without scanning every
+ * Children/&#42;/Meta/Sample_ID dataset. An index is built once per cube and
+ * cached process-wide, keyed by the canonical path of the Data.h5 file. The
+ * cached copy is dropped automatically when the file size or modification
+ * time changes, and SDCube.write keeps it in sync with the children it
+ * writes. SDCube.write also persists the index as the String dataset
+ * ./Meta/Sample_Index, one row per sample sorted by ID:
+ * 
+ * <pre>
+ * Sample_ID \t ChildGroupName \t Data/name,Meta/name,...
+ * </pre>
+ * 
+ * so a new JVM reads that one dataset instead of every child's Sample_ID.
+ * Cubes written before the index existed fall back to the scan.
+ */
+public class SDCube_SampleIndex {
+
+	/** Path of the persisted index dataset within Data.h5 */
+	static public final String DATASET_PATH = "./Meta/Sample_Index";
+
+	/** Maximum number of cubes whose index is kept in memory */
+	static public int MAX_CACHED_CUBES = 32;
+
+	static private LinkedHashMap<String, SDCube_SampleIndex> TheCache = new LinkedHashMap<String, SDCube_SampleIndex>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(
+				Map.Entry<String, SDCube_SampleIndex> eldest) {
+			return size() > MAX_CACHED_CUBES;
+		}
+	};
+
+	/** Sample IDs in the order of the Children groups */
+	private ArrayList<String> TheIDs;
+	/** Normalized Sample_ID to relative group path */
+	private HashMap<String, String> TheGroupPaths;
+	/** Normalized Sample_ID to the Data/ and Meta/ dataset names, if known */
+	private HashMap<String, String[]> TheDatasetNames;
+	/** Data.h5 modification time and size this index was built against */
+	private long lastModified;
+	private long length;
+
+	/**
+	 * Creates an empty index
+	 */
+	public SDCube_SampleIndex() {
+		TheIDs = new ArrayList<String>();
+		TheGroupPaths = new HashMap<String, String>();
+		TheDatasetNames = new HashMap<String, String[]>();
+	}
+
+	/**
+	 * Builds the index of the cube open in the given session from the
+	 * persisted ./Meta/Sample_Index dataset, or if that is missing or out of
+	 * date, by reading each Children/&#42;/Meta/Sample_ID dataset once
+	 * 
+	 * @param H5IO_Session
+	 *            session
+	 * @return SDCube_SampleIndex
+	 * @throws H5IO_Exception
+	 */
+	static public SDCube_SampleIndex build(H5IO_Session session)
+			throws H5IO_Exception {
+		String[] names = session.getGroupChildNames("./Children");
+		int len = names == null ? 0 : names.length;
+		SDCube_SampleIndex index = read(session);
+		if (index != null && index.size() == len)
+			return index;
+
+		index = new SDCube_SampleIndex();
+		for (int i = 0; i < len; i++) {
+			String group = "./Children/" + names[i];
+			Data_2D<?> dat = (Data_2D<?>) session.readDataset(group
+					+ "/Meta/Sample_ID");
+			if (dat == null)
+				continue;
+			String[][] data = (String[][]) dat.getData();
+			index.put(data[0][0], group);
+		}
+		return index;
+	}
+
+	/**
+	 * Reads the persisted ./Meta/Sample_Index dataset of the cube open in the
+	 * given session, returns null if the cube has none
+	 * 
+	 * @param H5IO_Session
+	 *            session
+	 * @return SDCube_SampleIndex
+	 * @throws H5IO_Exception
+	 */
+	static public SDCube_SampleIndex read(H5IO_Session session)
+			throws H5IO_Exception {
+		if (!session.existsDataset(DATASET_PATH))
+			return null;
+		Data_2D<?> dat = (Data_2D<?>) session.readDataset(DATASET_PATH);
+		if (dat == null)
+			return null;
+		String[][] rows = (String[][]) dat.getData();
+		int len = rows.length;
+
+		// Rows are sorted by ID, restoring the order of the Children groups
+		String[][] fields = new String[len][];
+		for (int i = 0; i < len; i++)
+			fields[i] = rows[i][0].trim().split("\t", -1);
+		Arrays.sort(fields, new Comparator<String[]>() {
+			public int compare(String[] a, String[] b) {
+				return compareChildNames(a.length > 1 ? a[1] : "",
+						b.length > 1 ? b[1] : "");
+			}
+		});
+
+		SDCube_SampleIndex index = new SDCube_SampleIndex();
+		for (int i = 0; i < len; i++) {
+			if (fields[i].length < 2)
+				continue;
+			String[] dsNames = null;
+			if (fields[i].length > 2 && fields[i][2].length() > 0)
+				dsNames = fields[i][2].split(",");
+			index.put(fields[i][0], "./Children/" + fields[i][1], dsNames);
+		}
+		return index;
+	}
+
+	/**
+	 * Writes this index as the ./Meta/Sample_Index dataset through the given
+	 * open H5IO, replacing any prior one
+	 * 
+	 * @param H5IO
+	 *            io, String h5Path
+	 * @throws H5IO_Exception
+	 */
+	public synchronized void write(H5IO<?> io, String h5Path)
+			throws H5IO_Exception {
+		int len = TheIDs.size();
+		if (len == 0)
+			return;
+		String[] rows = new String[len];
+		for (int i = 0; i < len; i++) {
+			String key = normalize(TheIDs.get(i));
+			String group = TheGroupPaths.get(key);
+			StringBuffer row = new StringBuffer(TheIDs.get(i));
+			row.append('\t');
+			row.append(group.substring(group.lastIndexOf('/') + 1));
+			row.append('\t');
+			String[] dsNames = TheDatasetNames.get(key);
+			for (int j = 0; dsNames != null && j < dsNames.length; j++) {
+				if (j > 0)
+					row.append(',');
+				row.append(dsNames[j]);
+			}
+			rows[i] = row.toString();
+		}
+		Arrays.sort(rows);
+		io.writeDataset(h5Path, DATASET_PATH, rows);
+	}
+
+	/**
+	 * Orders child group names numerically when both are numbers
+	 */
+	static private int compareChildNames(String a, String b) {
+		try {
+			return Integer.valueOf(a).compareTo(Integer.valueOf(b));
+		} catch (NumberFormatException e) {
+			return a.compareTo(b);
+		}
+	}
+
+	/**
+	 * Returns the index of the given SDCube, building it through the given
+	 * open session if there is no up to date cached copy
+	 * 
+	 * @param String
+	 *            sdcPath, H5IO_Session sessionOnDataH5
+	 * @return SDCube_SampleIndex
+	 * @throws H5IO_Exception
+	 */
+	static public SDCube_SampleIndex get(String sdcPath, H5IO_Session session)
+			throws H5IO_Exception {
+		SDCube_SampleIndex index = peek(sdcPath);
+		if (index != null)
+			return index;
+		index = build(session);
+		register(sdcPath, index);
+		return index;
+	}
+
+	/**
+	 * Returns the cached index of the given SDCube if it is still up to date,
+	 * otherwise null
+	 * 
+	 * @param String
+	 *            sdcPath
+	 * @return SDCube_SampleIndex
+	 */
+	static public SDCube_SampleIndex peek(String sdcPath) {
+		File f = new File(sdcPath + "/Data.h5");
+		String key = getKey(f);
+		synchronized (TheCache) {
+			SDCube_SampleIndex index = TheCache.get(key);
+			if (index == null)
+				return null;
+			if (index.lastModified != f.lastModified()
+					|| index.length != f.length()) {
+				TheCache.remove(key);
+				return null;
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Caches the given index as the up to date index of the given SDCube
+	 * 
+	 * @param String
+	 *            sdcPath, SDCube_SampleIndex index
+	 */
+	static public void register(String sdcPath, SDCube_SampleIndex index) {
+		File f = new File(sdcPath + "/Data.h5");
+		synchronized (TheCache) {
+			index.lastModified = f.lastModified();
+			index.length = f.length();
+			TheCache.put(getKey(f), index);
+		}
+	}
+
+	/**
+	 * Drops the cached index of the given SDCube
+	 * 
+	 * @param String
+	 *            sdcPath
+	 */
+	static public void invalidate(String sdcPath) {
+		synchronized (TheCache) {
+			TheCache.remove(getKey(new File(sdcPath + "/Data.h5")));
+		}
+	}
+
+	static private String getKey(File f) {
+		try {
+			return f.getCanonicalPath();
+		} catch (IOException e) {
+			return f.getAbsolutePath();
+		}
+	}
+
+	static private String normalize(String id) {
+		return id.trim().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Adds or replaces the group path of the given Sample_ID
+	 * 
+	 * @param String
+	 *            sampleID, String relativeGroupPath
+	 */
+	public void put(String id, String groupPath) {
+		put(id, groupPath, null);
+	}
+
+	/**
+	 * Adds or replaces the group path and Data/ and Meta/ dataset names of
+	 * the given Sample_ID
+	 * 
+	 * @param String
+	 *            sampleID, String relativeGroupPath, String[] datasetNames
+	 */
+	public synchronized void put(String id, String groupPath,
+			String[] datasetNames) {
+		String key = normalize(id);
+		if (!TheGroupPaths.containsKey(key))
+			TheIDs.add(id.trim());
+		TheGroupPaths.put(key, groupPath);
+		if (datasetNames != null)
+			TheDatasetNames.put(key, datasetNames);
+		else
+			TheDatasetNames.remove(key);
+	}
+
+	/**
+	 * Returns the relative HDF5 group path of the sample with the given ID,
+	 * or null if there is no such sample
+	 * 
+	 * @param String
+	 *            sampleID
+	 * @return String groupPath
+	 */
+	public synchronized String getGroupPath(String id) {
+		return TheGroupPaths.get(normalize(id));
+	}
+
+	/**
+	 * Returns the Data/ and Meta/ dataset names of the sample with the given
+	 * ID relative to its group, or null if they are not known
+	 * 
+	 * @param String
+	 *            sampleID
+	 * @return String[] datasetNames
+	 */
+	public synchronized String[] getDatasetNames(String id) {
+		return TheDatasetNames.get(normalize(id));
+	}
+
+	/**
+	 * Returns the Sample_IDs of this index in Children group order
+	 * 
+	 * @return ArrayList<String> sampleIDs
+	 */
+	public synchronized ArrayList<String> getIDs() {
+		return new ArrayList<String>(TheIDs);
+	}
+
+	/**
+	 * Returns the number of samples in this index
+	 * 
+	 * @return int numSamples
+	 */
+	public synchronized int size() {
+		return TheIDs.size();
+	}
+}